@@ -0,0 +1,65 @@
+package bench;
+
+import database.DataGenerator;
+import database.DatabaseConnection;
+import database.DatabaseInitializer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * The database a benchmark fork runs against. By default a throwaway embedded
+ * Postgres is started; pass -Dcms.bench.jdbcUrl (and -Dcms.bench.username /
+ * -Dcms.bench.password) to use an existing server instead. Either way the app's
+ * schema is created and a synthetic college of the requested size is loaded.
+ */
+final class BenchmarkDatabase {
+    private static EmbeddedPostgres embedded;
+
+    private BenchmarkDatabase() {
+    }
+
+    static void start() throws IOException, SQLException, ClassNotFoundException {
+        start("");
+    }
+
+    // Driver settings such as "prepareThreshold=0" are appended to the JDBC URL
+    static synchronized void start(String driverSettings) throws IOException, SQLException, ClassNotFoundException {
+        String url = System.getProperty("cms.bench.jdbcUrl");
+        if (url == null) {
+            embedded = EmbeddedPostgres.builder().start();
+            url = embedded.getJdbcUrl("postgres", "postgres");
+            System.setProperty("cms.db.username", "postgres");
+            System.setProperty("cms.db.password", "postgres");
+        } else {
+            System.setProperty("cms.db.username", System.getProperty("cms.bench.username", "postgres"));
+            System.setProperty("cms.db.password", System.getProperty("cms.bench.password", ""));
+        }
+        if (!driverSettings.isEmpty()) {
+            url += (url.contains("?") ? "&" : "?") + driverSettings;
+        }
+        // Must be set before DatabaseConnection is first touched
+        System.setProperty("cms.db.url", url);
+        DatabaseInitializer.initialize();
+    }
+
+    // Replaces all college data with a synthetic college of the given size; the fixed seed keeps runs comparable
+    static void seed(int students, int courses, int enrollmentsPerStudent) throws SQLException, ClassNotFoundException {
+        new DataGenerator()
+                .seed(42)
+                .students(students)
+                .courses(courses)
+                .enrollments((long) students * enrollmentsPerStudent)
+                .schedules(courses)
+                .generate();
+    }
+
+    static synchronized void stop() throws IOException {
+        DatabaseConnection.shutdown();
+        if (embedded != null) {
+            embedded.close();
+            embedded = null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package bench;
+
+import dao.ClassScheduleDao;
+import dao.EnrollmentDao;
+import dao.StudentDao;
+import dao.TranscriptDao;
+import model.Enrollment;
+import model.ScheduleDetail;
+import model.Student;
+import model.TermGpa;
+import model.Transcript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of the DAO calls behind the student, enrollment, schedule and transcript screens.
+ * The college size is set with -p students=N -p courses=N -p enrollmentsPerStudent=N.
+ * -p statements=unprepared turns off the pool's statement cache and the driver's
+ * server-side prepare, so every call has its SQL parsed and planned again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+    @Param("10000")
+    public int students;
+
+    @Param("200")
+    public int courses;
+
+    @Param("5")
+    public int enrollmentsPerStudent;
+
+    @Param({"cached", "unprepared"})
+    public String statements;
+
+    private final StudentDao studentDao = new StudentDao();
+    private final EnrollmentDao enrollmentDao = new EnrollmentDao();
+    private final ClassScheduleDao classScheduleDao = new ClassScheduleDao();
+    private final TranscriptDao transcriptDao = new TranscriptDao();
+    // Each saved enrollment gets its own semester so the unique key never collides
+    private final AtomicLong saveCounter = new AtomicLong();
+    private static final String[] SEMESTERS = {
+        "First Semester", "Second Semester", "Third Semester", "Fourth Semester",
+        "Fifth Semester", "Sixth Semester", "Seventh Semester", "Eighth Semester"
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (statements.equals("unprepared")) {
+            System.setProperty("cms.db.statementCacheSize", "0");
+            BenchmarkDatabase.start("prepareThreshold=0");
+        } else {
+            BenchmarkDatabase.start();
+        }
+        BenchmarkDatabase.seed(students, courses, enrollmentsPerStudent);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Student studentFindById() throws Exception {
+        return studentDao.findById(randomStudentId());
+    }
+
+    // The duplicate check run before every enrollment is saved
+    @Benchmark
+    public boolean enrollmentExists() throws Exception {
+        return enrollmentDao.existsEnrollment(randomStudentId(), 1L + ThreadLocalRandom.current().nextInt(courses),
+            SEMESTERS[ThreadLocalRandom.current().nextInt(SEMESTERS.length)]);
+    }
+
+    @Benchmark
+    public List<Enrollment> enrollmentsByStudentId() throws Exception {
+        return enrollmentDao.getEnrollmentsByStudentId(randomStudentId());
+    }
+
+    @Benchmark
+    public void enrollmentSave() throws Exception {
+        long n = saveCounter.incrementAndGet();
+        enrollmentDao.save(new Enrollment(randomStudentId(), 1 + n % courses, "Bench " + n, "A"));
+    }
+
+    @Benchmark
+    public int scheduleJoin() throws Exception {
+        return classScheduleDao.getAllDetails().size();
+    }
+
+    // Room clash check for a random 90-minute class; served from the in-memory index once it is built
+    @Benchmark
+    public List<ScheduleDetail> scheduleRoomConflicts() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalTime start = LocalTime.of(7 + random.nextInt(10), random.nextInt(4) * 15);
+        return classScheduleDao.getConflicts().roomConflicts(1L + random.nextInt(100), start, start.plusMinutes(90), null);
+    }
+
+    // Reads the stored term GPAs off the (semester, gpa) index; nothing is aggregated per call
+    @Benchmark
+    public List<TermGpa> deansList() throws Exception {
+        return transcriptDao.getDeansList(SEMESTERS[ThreadLocalRandom.current().nextInt(SEMESTERS.length)], 3.5, 0);
+    }
+
+    @Benchmark
+    public Transcript transcript() throws Exception {
+        return transcriptDao.getTranscript(randomStudentId());
+    }
+
+    private long randomStudentId() {
+        return 1 + ThreadLocalRandom.current().nextInt(students);
+    }
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import model.Room;
+import model.TimeSlot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.TimetableSolver;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to solve a whole term timetable, by number of sections and solver workers.
+ * Runs in memory only. The synthetic college has eight back-to-back 90-minute slots
+ * plus four that straddle them, rooms for about 15% more classes than there are
+ * sections, four sections per teacher, and one preferred slot per section.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimetableBenchmark {
+    @Param({"250", "500", "1000", "2000"})
+    public int sections;
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    private List<Room> rooms;
+    private List<TimeSlot> timeSlots;
+    private List<TimetableSolver.Section> sectionList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        timeSlots = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            LocalTime start = LocalTime.of(8, 0).plusMinutes(i * 90L);
+            timeSlots.add(new TimeSlot((long) timeSlots.size() + 1, start, start.plusMinutes(90)));
+        }
+        for (int i = 0; i < 4; i++) {
+            LocalTime start = LocalTime.of(8, 45).plusMinutes(i * 180L);
+            timeSlots.add(new TimeSlot((long) timeSlots.size() + 1, start, start.plusMinutes(90)));
+        }
+        int roomCount = (int) Math.ceil(sections * 1.15 / 8);
+        rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(new Room((long) i + 1, String.valueOf(100 + i), 20 + 10 * (i % 10)));
+        }
+        // Mostly small classes with a tail of large lectures
+        sectionList = new ArrayList<>(sections);
+        int teachers = Math.max(1, sections / 4);
+        for (int i = 0; i < sections; i++) {
+            int enrollment = Math.min(110, 10 + (int) Math.abs(random.nextGaussian() * 40));
+            long preferred = 1 + random.nextInt(timeSlots.size());
+            sectionList.add(new TimetableSolver.Section(null, (long) i + 1, (long) (i % teachers) + 1, enrollment,
+                List.of(preferred)));
+        }
+    }
+
+    @Benchmark
+    public TimetableSolver.Timetable solve() {
+        return new TimetableSolver(rooms, timeSlots).workers(workers).solve(sectionList);
+    }
+}
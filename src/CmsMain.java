@@ -1,10 +1,14 @@
+import database.ChangeFeed;
 import database.DatabaseConnection;
 import database.DatabaseInitializer;
+import database.QueryPlanChecker;
+import dao.QueryPlans;
 import gui.MainFrame;
 
 import javax.swing.*;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 public class CmsMain {
     public static void main(String[] args) {
@@ -17,6 +21,13 @@ public class CmsMain {
 
             DatabaseInitializer.initialize();
             System.out.println("Database initialization successful...");
+            if (Boolean.parseBoolean(System.getProperty("cms.checkQueryPlans", "true"))) {
+                checkQueryPlans();
+            }
+            // Other clients' changes reach the open panels without a refresh; off, they rely on refreshes and TTLs
+            if (Boolean.parseBoolean(System.getProperty("cms.liveUpdates", "true"))) {
+                ChangeFeed.start();
+            }
             if (conn != null) {
                 conn.close();
             }
@@ -28,11 +39,10 @@ public class CmsMain {
                 e.printStackTrace();
             }
 
-            // Create the main frame
-            MainFrame frame = new MainFrame();
-
-            // Start the Swing application
+            // Create the main frame and start the Swing application; panels start
+            // their background loads from the EDT
             SwingUtilities.invokeLater(() -> {
+                MainFrame frame = new MainFrame();
                 frame.setVisible(true);
             });
         } catch (SQLException | ClassNotFoundException e) {
@@ -43,4 +53,21 @@ public class CmsMain {
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+
+    // EXPLAINs the DAO lookups off the startup path and warns about full scans of large tables
+    private static void checkQueryPlans() {
+        long rowThreshold = Long.getLong("cms.seqScanWarnRows", 10_000);
+        Thread thread = new Thread(() -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                List<String> warnings = new QueryPlanChecker(rowThreshold).check(conn, QueryPlans.all());
+                for (String warning : warnings) {
+                    System.out.println("WARNING: " + warning);
+                }
+            } catch (SQLException | ClassNotFoundException e) {
+                System.err.println("Query plan check failed: " + e.getMessage());
+            }
+        }, "cms-plan-check");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
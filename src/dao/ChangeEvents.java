@@ -0,0 +1,178 @@
+package dao;
+
+import database.ChangeFeed;
+import database.ChangeFeed.Operation;
+import model.ClassSchedule;
+import model.Courses;
+import model.Department;
+import model.Enrollment;
+import model.Room;
+import model.Student;
+import model.Teacher;
+import model.TimeSlot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Typed bus of row changes inside this client, so a write in one panel reaches the
+ * other panels without them reloading anything. The DAOs publish every write once
+ * it has committed, carrying the rows as stored; changes other clients make are
+ * bridged in from {@link ChangeFeed} with their ids only. Events are delivered in
+ * the order they were published, on one background thread, so a subscriber must
+ * not block; GUI subscribers move to the EDT themselves. A write whose rows are not
+ * known, such as a cascaded delete or a bulk load, is published as a change to the
+ * whole table.
+ */
+public final class ChangeEvents {
+    public static final Topic<Department> DEPARTMENTS = new Topic<>("departments", Department::getId);
+    public static final Topic<Student> STUDENTS = new Topic<>("students", Student::getId);
+    public static final Topic<Teacher> TEACHERS = new Topic<>("teachers", Teacher::getId);
+    public static final Topic<Courses> COURSES = new Topic<>("courses", Courses::getId);
+    public static final Topic<Room> ROOMS = new Topic<>("rooms", Room::getId);
+    public static final Topic<TimeSlot> TIMESLOTS = new Topic<>("timeslots", TimeSlot::getId);
+    public static final Topic<Enrollment> ENROLLMENTS = new Topic<>("enrollments", Enrollment::getId);
+    public static final Topic<ClassSchedule> CLASS_SCHEDULES = new Topic<>("class_schedules", ClassSchedule::getId);
+
+    private static final ExecutorService DISPATCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cms-change-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        for (Topic<?> topic : List.of(DEPARTMENTS, STUDENTS, TEACHERS, COURSES, ROOMS, TIMESLOTS, ENROLLMENTS,
+                CLASS_SCHEDULES)) {
+            bridge(topic);
+        }
+    }
+
+    // One table's changes; the type is the model class its rows are read into
+    public static final class Topic<T> {
+        private final String table;
+        private final Function<T, Long> idOf;
+        private final List<Consumer<Event<T>>> listeners = new CopyOnWriteArrayList<>();
+
+        private Topic(String table, Function<T, Long> idOf) {
+            this.table = table;
+            this.idOf = idOf;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        @Override
+        public String toString() {
+            return table;
+        }
+    }
+
+    public static final class Event<T> {
+        private final Topic<T> topic;
+        private final Operation operation;
+        // Empty when the whole table may have changed
+        private final List<Long> ids;
+        // The rows as stored, by id; only known for inserts and updates made by this client
+        private final Map<Long, T> rows;
+
+        private Event(Topic<T> topic, Operation operation, List<Long> ids, Map<Long, T> rows) {
+            this.topic = topic;
+            this.operation = operation;
+            this.ids = Collections.unmodifiableList(ids);
+            this.rows = Collections.unmodifiableMap(rows);
+        }
+
+        public Topic<T> getTopic() {
+            return topic;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        // The row as stored, or null when it has to be read back (another client's change, or a delete)
+        public T getRow(Long id) {
+            return rows.get(id);
+        }
+
+        // True when the ids are not known and anything in the table may have changed
+        public boolean isWholeTable() {
+            return ids.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return topic + " " + operation + " " + (ids.isEmpty() ? "*" : ids.toString());
+        }
+    }
+
+    private ChangeEvents() {
+    }
+
+    public static <T> void subscribe(Topic<T> topic, Consumer<Event<T>> listener) {
+        topic.listeners.add(listener);
+    }
+
+    static <T> void inserted(Topic<T> topic, T row) {
+        inserted(topic, List.of(row));
+    }
+
+    static <T> void inserted(Topic<T> topic, List<T> rows) {
+        publishRows(topic, Operation.INSERT, rows);
+    }
+
+    static <T> void updated(Topic<T> topic, T row) {
+        publishRows(topic, Operation.UPDATE, List.of(row));
+    }
+
+    static void deleted(Topic<?> topic, Long id) {
+        post(new Event<>(topic, Operation.DELETE, List.of(id), Map.of()));
+    }
+
+    // Rows changed but which ones is not known, e.g. after a cascade or a bulk insert
+    static void tableChanged(Topic<?> topic, Operation operation) {
+        post(new Event<>(topic, operation, List.of(), Map.of()));
+    }
+
+    private static <T> void publishRows(Topic<T> topic, Operation operation, List<T> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<Long, T> byId = new LinkedHashMap<>();
+        for (T row : rows) {
+            byId.put(topic.idOf.apply(row), row);
+        }
+        post(new Event<>(topic, operation, new ArrayList<>(byId.keySet()), byId));
+    }
+
+    // ChangeFeed leaves out this client's own writes, so nothing reaches a subscriber twice
+    private static <T> void bridge(Topic<T> topic) {
+        ChangeFeed.subscribe(topic.table, change ->
+            post(new Event<>(topic, change.getOperation(), change.getIds(), Map.of())));
+    }
+
+    private static <T> void post(Event<T> event) {
+        DISPATCHER.execute(() -> {
+            for (Consumer<Event<T>> listener : event.topic.listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    System.err.println("Change listener failed on " + event + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+}
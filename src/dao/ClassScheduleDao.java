@@ -0,0 +1,301 @@
+package dao;
+
+import database.ChangeFeed;
+import database.ChangeFeed.Operation;
+import database.DatabaseConnection;
+import database.Metrics;
+import model.ClassSchedule;
+import model.ScheduleDetail;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import service.EnrollmentCounts;
+import service.ScheduleConflicts;
+import service.TimetableSolver;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class ClassScheduleDao {
+    // Feeds the conflict index; deletes that cascade from courses, teachers, rooms and timeslots invalidate it too
+    private static final ReferenceCache<ScheduleDetail> CACHE = new ReferenceCache<>("class_schedules");
+    private static volatile ScheduleConflicts conflicts;
+    private static final int BATCH_SIZE = 1_000;
+    // What the clash triggers (migration 8) raise for a booking that overlaps another of its room or teacher
+    private static final String CLASH_STATE = "23P01";
+    // Column order here is what mapDetail reads by index
+    private static final String SELECT_DETAILS =
+            "SELECT cs.id, cs.course_id, c.name, cs.teacher_id, t.name, " +
+            "cs.timeslot_id, ts.start_time, ts.end_time, cs.room_id, r.room_number, r.capacity " +
+            "FROM class_schedules cs " +
+            "JOIN courses c ON cs.course_id = c.id " +
+            "JOIN teachers t ON cs.teacher_id = t.id " +
+            "JOIN timeslots ts ON cs.timeslot_id = ts.id " +
+            "JOIN rooms r ON cs.room_id = r.id ";
+
+    static {
+        // The details carry names and times from these tables, so another client's edit to them changes the cache too
+        for (String table : List.of("courses", "teachers", "timeslots", "rooms")) {
+            ChangeFeed.subscribe(table, change -> invalidateCache());
+        }
+    }
+
+    // Schedules with their course, teacher, timeslot and room, in timetable order
+    public List<ScheduleDetail> getAllDetails() throws SQLException, ClassNotFoundException {
+        List<ScheduleDetail> details = new ArrayList<>();
+        getAllDetails(details::add);
+        return details;
+    }
+
+    public void getAllDetails(Consumer<ScheduleDetail> consumer) throws SQLException, ClassNotFoundException {
+        Metrics.run("ClassScheduleDao.getAllDetails", () -> {
+            String sql = SELECT_DETAILS + "ORDER BY ts.start_time, c.name";
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(mapDetail(rs));
+                }
+            }
+        });
+    }
+
+    // The schedule as last loaded, in timetable order and shared with the clash index; read-only
+    public List<ScheduleDetail> getCachedDetails() throws SQLException, ClassNotFoundException {
+        return Metrics.time("ClassScheduleDao.getCachedDetails", () -> CACHE.get(this::getAllDetails));
+    }
+
+    // Clash index over the current schedule, rebuilt only when the cached schedule is reloaded
+    public ScheduleConflicts getConflicts() throws SQLException, ClassNotFoundException {
+        return Metrics.time("ClassScheduleDao.getConflicts", () -> {
+            List<ScheduleDetail> schedules = CACHE.get(this::getAllDetails);
+            ScheduleConflicts current = conflicts;
+            if (current == null || !current.isBuiltFrom(schedules)) {
+                current = new ScheduleConflicts(schedules);
+                conflicts = current;
+                if (!current.getInvalid().isEmpty()) {
+                    System.err.println("Left " + current.getInvalid().size() + " class schedules out of clash checks, " +
+                        "their time slot does not end after it starts: " + scheduleIds(current.getInvalid()));
+                }
+            }
+            return current;
+        });
+    }
+
+    private static List<Long> scheduleIds(List<ScheduleDetail> schedules) {
+        List<Long> ids = new ArrayList<>(schedules.size());
+        for (ScheduleDetail schedule : schedules) {
+            ids.add(schedule.getId());
+        }
+        return ids;
+    }
+
+    // Whether the database refused a write for double-booking a room or teacher; the message says which
+    public static boolean isClash(SQLException e) {
+        return CLASH_STATE.equals(e.getSQLState());
+    }
+
+    // A clash with just the trigger's message, without the "ERROR:" prefix and PL/pgSQL context the driver adds
+    static SQLException clashMessage(SQLException e) {
+        if (isClash(e) && e instanceof PSQLException) {
+            ServerErrorMessage server = ((PSQLException) e).getServerErrorMessage();
+            if (server != null && server.getMessage() != null) {
+                return new SQLException(server.getMessage(), e.getSQLState(), e);
+            }
+        }
+        return e;
+    }
+
+    public static void invalidateCache() {
+        CACHE.invalidate();
+    }
+
+    // Schedules changed as a side effect of a write to another table, e.g. a cascaded delete
+    static void schedulesCascaded(Operation operation) {
+        CACHE.invalidate();
+        ChangeEvents.tableChanged(ChangeEvents.CLASS_SCHEDULES, operation);
+    }
+
+    public void save(ClassSchedule schedule) throws SQLException, ClassNotFoundException {
+        Metrics.run("ClassScheduleDao.save", () -> {
+            String sql = "INSERT INTO class_schedules (course_id, teacher_id, timeslot_id, room_id) VALUES (?, ?, ?, ?) " +
+                    "RETURNING id";
+            Long id;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, schedule.getCourseId());
+                ps.setLong(2, schedule.getTeacherId());
+                ps.setLong(3, schedule.getTimeSlotId());
+                ps.setLong(4, schedule.getRoomId());
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    id = rs.getLong(1);
+                }
+            } catch (SQLException e) {
+                throw clashMessage(e);
+            }
+            CACHE.invalidate();
+            ChangeEvents.inserted(ChangeEvents.CLASS_SCHEDULES, new ClassSchedule(id, schedule.getCourseId(),
+                schedule.getTeacherId(), schedule.getTimeSlotId(), schedule.getRoomId()));
+        });
+    }
+
+    public void update(ClassSchedule schedule) throws SQLException, ClassNotFoundException {
+        Metrics.run("ClassScheduleDao.update", () -> {
+            String sql = "UPDATE class_schedules SET course_id = ?, teacher_id = ?, timeslot_id = ?, room_id = ? WHERE id = ?";
+            int updated;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, schedule.getCourseId());
+                ps.setLong(2, schedule.getTeacherId());
+                ps.setLong(3, schedule.getTimeSlotId());
+                ps.setLong(4, schedule.getRoomId());
+                ps.setLong(5, schedule.getId());
+                updated = ps.executeUpdate();
+            } catch (SQLException e) {
+                throw clashMessage(e);
+            }
+            CACHE.invalidate();
+            if (updated > 0) {
+                ChangeEvents.updated(ChangeEvents.CLASS_SCHEDULES, schedule);
+            }
+        });
+    }
+
+    public void delete(Long id) throws SQLException, ClassNotFoundException {
+        Metrics.run("ClassScheduleDao.delete", () -> {
+            String sql = "DELETE FROM class_schedules WHERE id = ?";
+            int deleted;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, id);
+                deleted = ps.executeUpdate();
+            }
+            CACHE.invalidate();
+            if (deleted > 0) {
+                ChangeEvents.deleted(ChangeEvents.CLASS_SCHEDULES, id);
+            }
+        });
+    }
+
+    /**
+     * The current schedule as sections for the timetable solver. Each keeps its course
+     * and teacher and prefers the slot it has now, so a re-solve moves as few classes
+     * as it can. A course's students, from the running enrollment counts, are shared
+     * evenly between the course's sections.
+     */
+    public List<TimetableSolver.Section> getSections() throws SQLException, ClassNotFoundException {
+        return Metrics.time("ClassScheduleDao.getSections", () -> {
+            String sql = "SELECT id, course_id, teacher_id, timeslot_id, count(*) OVER (PARTITION BY course_id) " +
+                    "FROM class_schedules ORDER BY id";
+            EnrollmentCounts counts = new EnrollmentDao().getCounts();
+            List<TimetableSolver.Section> sections = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long courseId = rs.getLong(2);
+                    sections.add(new TimetableSolver.Section(
+                        rs.getLong(1),
+                        courseId,
+                        rs.getLong(3),
+                        counts.seatsPerSection(courseId, rs.getInt(5)),
+                        Set.of(rs.getLong(4))
+                    ));
+                }
+            }
+            return sections;
+        });
+    }
+
+    /**
+     * Replaces the schedule rows of the solved sections with the timetable's placements
+     * in one transaction, so the schedule is never seen half moved. Rows are deleted and
+     * re-inserted rather than updated in place, since swapping two classes' slots row by
+     * row would trip the unique (timeslot, room) and (teacher, timeslot) keys midway.
+     * A row someone added meanwhile that overlaps a placement, in the same slot or another
+     * one sharing some of its time, makes the clash trigger refuse the insert and rolls it
+     * all back.
+     * Returns the number of rows inserted.
+     */
+    public int saveTimetable(TimetableSolver.Timetable timetable) throws SQLException, ClassNotFoundException {
+        return Metrics.time("ClassScheduleDao.saveTimetable", () -> {
+            // The unplaced sections' old rows would stay behind and clash with the new ones
+            if (!timetable.isComplete()) {
+                throw new IllegalArgumentException(timetable.getUnplaced().size() + " sections have no place in this timetable");
+            }
+            String deleteSql = "DELETE FROM class_schedules WHERE id = ANY(?::bigint[])";
+            String insertSql = "INSERT INTO class_schedules (course_id, teacher_id, timeslot_id, room_id) " +
+                    "SELECT * FROM unnest(?::bigint[], ?::bigint[], ?::bigint[], ?::bigint[])";
+            List<TimetableSolver.Placement> placements = timetable.getPlacements();
+            List<Long> replaced = new ArrayList<>();
+            for (TimetableSolver.Placement placement : placements) {
+                if (placement.getSection().getScheduleId() != null) {
+                    replaced.add(placement.getSection().getScheduleId());
+                }
+            }
+            int inserted = 0;
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement delete = conn.prepareStatement(deleteSql);
+                     PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                    delete.setArray(1, conn.createArrayOf("bigint", replaced.toArray()));
+                    delete.executeUpdate();
+                    for (int start = 0; start < placements.size(); start += BATCH_SIZE) {
+                        List<TimetableSolver.Placement> chunk =
+                            placements.subList(start, Math.min(start + BATCH_SIZE, placements.size()));
+                        Long[] courseIds = new Long[chunk.size()];
+                        Long[] teacherIds = new Long[chunk.size()];
+                        Long[] timeSlotIds = new Long[chunk.size()];
+                        Long[] roomIds = new Long[chunk.size()];
+                        for (int i = 0; i < chunk.size(); i++) {
+                            TimetableSolver.Placement placement = chunk.get(i);
+                            courseIds[i] = placement.getSection().getCourseId();
+                            teacherIds[i] = placement.getSection().getTeacherId();
+                            timeSlotIds[i] = placement.getTimeSlot().getId();
+                            roomIds[i] = placement.getRoom().getId();
+                        }
+                        insert.setArray(1, conn.createArrayOf("bigint", courseIds));
+                        insert.setArray(2, conn.createArrayOf("bigint", teacherIds));
+                        insert.setArray(3, conn.createArrayOf("bigint", timeSlotIds));
+                        insert.setArray(4, conn.createArrayOf("bigint", roomIds));
+                        inserted += insert.executeUpdate();
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw clashMessage(e);
+                } catch (RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    CACHE.invalidate();
+                }
+            }
+            // Every moved class has a new row, so the ids the panels hold are all stale
+            ChangeEvents.tableChanged(ChangeEvents.CLASS_SCHEDULES, Operation.UPDATE);
+            return inserted;
+        });
+    }
+
+    private ScheduleDetail mapDetail(ResultSet rs) throws SQLException {
+        return new ScheduleDetail(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getString(3),
+            rs.getLong(4),
+            rs.getString(5),
+            rs.getLong(6),
+            rs.getTime(7).toLocalTime(),
+            rs.getTime(8).toLocalTime(),
+            rs.getLong(9),
+            rs.getString(10),
+            rs.getInt(11)
+        );
+    }
+}
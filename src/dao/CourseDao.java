@@ -1,93 +1,194 @@
 package dao;
 
+import database.ChangeFeed.Operation;
 import database.DatabaseConnection;
+import database.Metrics;
+import database.StatementCache;
 import model.Courses;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class CourseDao {
+    private static final ReferenceCache<Courses> CACHE = new ReferenceCache<>("courses");
+    // Column order here is what mapRow reads by index
+    private static final String SELECT_COLUMNS = "select id, name, credit, dept_id from courses";
+    private static final String RETURNING_COLUMNS = " returning id, name, credit, dept_id";
+    // Lookups whose plans QueryPlans checks at startup, prepared on the server on first use
+    static final String FIND_BY_ID = StatementCache.onServer(SELECT_COLUMNS + " where id = ?");
+    static final String FIND_BY_NAME = StatementCache.onServer(SELECT_COLUMNS + " where name = ?");
 
-    public void addCourse(Courses courses) throws SQLException, ClassNotFoundException {
-        String sql = "insert into courses(name,credit,dept_id) values(?,?,?)";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, courses.getName());
-        ps.setString(2, courses.getCredit());
-        ps.setLong(3, courses.getDeptId());
-        ps.executeUpdate();
-        conn.close();
-        ps.close();
+    // Returns the stored row, with its generated id
+    public Courses addCourse(Courses courses) throws SQLException, ClassNotFoundException {
+        return Metrics.time("CourseDao.addCourse", () -> {
+            String sql = "insert into courses(name,credit,dept_id) values(?,?,?)" + RETURNING_COLUMNS;
+            Courses added;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, courses.getName());
+                ps.setString(2, courses.getCredit());
+                ps.setLong(3, courses.getDeptId());
+                try (ResultSet rs = ps.executeQuery()) {
+                    added = getCourses(rs);
+                }
+            }
+            CACHE.invalidate();
+            ChangeEvents.inserted(ChangeEvents.COURSES, added);
+            return added;
+        });
     }
 
     public Courses getCourseById(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "select * from courses where id = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setLong(1, id);
-        ResultSet rs = ps.executeQuery();
-        return getCourses(rs);
+        return Metrics.time("CourseDao.getCourseById", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(FIND_BY_ID)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return getCourses(rs);
+                }
+            }
+        });
     }
 
     public Courses getCourseByName(String name) throws SQLException, ClassNotFoundException {
-        String sql = "select * from courses where name = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, name);
-        ResultSet rs = ps.executeQuery();
-        return getCourses(rs);
+        return Metrics.time("CourseDao.getCourseByName", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(FIND_BY_NAME)) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return getCourses(rs);
+                }
+            }
+        });
     }
 
     public Courses getCourses(ResultSet rs) throws SQLException {
         if (rs.next()) {
-            Courses courses = new Courses();
-            courses.setId(rs.getLong("id"));
-            courses.setName(rs.getString("name"));
-            courses.setCredit(rs.getString("credit"));
-            courses.setDeptId(rs.getLong("dept_id"));
-            return courses;
+            return mapRow(rs);
         } else {
             return null;
         }
     }
 
-    public void getAllCourses() throws SQLException, ClassNotFoundException {
-        String sql = "select * from courses";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            System.out.println("\nID: " + rs.getLong("id"));
-            System.out.println("Name: " + rs.getString("name"));
-            System.out.println("Credit: " + rs.getString("credit"));
-            System.out.println("DeptId: " + rs.getLong("dept_id"));
+    // Served from the shared cache; the returned list is read-only
+    public List<Courses> getAllCourses() throws SQLException, ClassNotFoundException {
+        return Metrics.time("CourseDao.getAllCourses", () -> CACHE.get(this::queryAll));
+    }
+
+    public void getAllCourses(Consumer<Courses> consumer) throws SQLException, ClassNotFoundException {
+        getAllCourses().forEach(consumer);
+    }
+
+    private List<Courses> queryAll() throws SQLException, ClassNotFoundException {
+        String sql = SELECT_COLUMNS + " order by name";
+        List<Courses> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                rows.add(mapRow(rs));
+            }
         }
-        conn.close();
-        ps.close();
+        return rows;
     }
 
-    public void updateCourse(Courses courses) throws SQLException, ClassNotFoundException {
-        String sql = "update courses set name = ?, credit = ?, dept_id = ? where id = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, courses.getName());
-        ps.setString(2, courses.getCredit());
-        ps.setLong(3, courses.getDeptId());
-        ps.setLong(4, courses.getId());
-        ps.executeUpdate();
-        conn.close();
-        ps.close();
+    // Ranked, typo-tolerant search on the course name or its department's name
+    public List<Courses> search(String term, int limit) throws SQLException, ClassNotFoundException {
+        return Metrics.time("CourseDao.search", () -> {
+            TextSearch search = new TextSearch(term, limit);
+            List<Courses> courses = new ArrayList<>();
+            if (search.isBlank()) {
+                return courses;
+            }
+            String columns = "id, name, credit, dept_id";
+            String byName = search.nearest(columns, "courses", "name");
+            // Courses of the closest departments rank by how well the department name matched
+            String byDepartment = "(select c.id, c.name, c.credit, c.dept_id, d.distance from courses c join " +
+                    search.nearest("id", "departments", "name") + " d on c.dept_id = d.id " +
+                    "order by d.distance " + search.limit() + ")";
+            String sql = search.best(columns, byName, byDepartment);
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = search.prepare(conn, sql)) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        courses.add(mapRow(rs));
+                    }
+                }
+            }
+            return courses;
+        });
     }
-    public void deleteCourse(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "delete from courses where id = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setLong(1, id);
-        ps.executeUpdate();
-        conn.close();
-        ps.close();
+
+    // A change of credits re-weighs every term GPA that includes the course, in the same transaction.
+    // Returns the row as stored, or null if it no longer exists.
+    public Courses updateCourse(Courses courses) throws SQLException, ClassNotFoundException {
+        return Metrics.time("CourseDao.updateCourse", () -> {
+            String sql = "update courses c set name = ?, credit = ?, dept_id = ? from courses old " +
+                    "where c.id = ? and old.id = c.id returning c.id, c.name, c.credit, c.dept_id, old.credit";
+            Courses updated = null;
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, courses.getName());
+                    ps.setString(2, courses.getCredit());
+                    ps.setLong(3, courses.getDeptId());
+                    ps.setLong(4, courses.getId());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            updated = mapRow(rs);
+                            if (!updated.getCredit().equals(rs.getString(5))) {
+                                TranscriptDao.refreshCourse(conn, courses.getId());
+                            }
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            CACHE.invalidate();
+            if (updated != null) {
+                ChangeEvents.updated(ChangeEvents.COURSES, updated);
+                // Cached schedule details carry the old course names
+                ClassScheduleDao.schedulesCascaded(Operation.UPDATE);
+            }
+            return updated;
+        });
     }
 
+    // Whether the row was still there to delete
+    public boolean deleteCourse(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("CourseDao.deleteCourse", () -> {
+            String sql = "delete from courses where id = ?";
+            int deleted;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, id);
+                deleted = ps.executeUpdate();
+            }
+            CACHE.invalidate();
+            if (deleted > 0) {
+                ChangeEvents.deleted(ChangeEvents.COURSES, id);
+                // Schedules of this row went with it (ON DELETE CASCADE)
+                ClassScheduleDao.schedulesCascaded(Operation.DELETE);
+            }
+            return deleted > 0;
+        });
+    }
+
+    private Courses mapRow(ResultSet rs) throws SQLException {
+        long deptId = rs.getLong(4);
+        return new Courses(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.wasNull() ? null : deptId
+        );
+    }
 }
@@ -1,95 +1,133 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.Metrics;
 import model.Department;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class DepartmentDao {
-    public void save(Department department) throws SQLException, ClassNotFoundException {
-        String sql = "insert into departments(name) values(?)";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, department.getName());
-        ps.executeUpdate();
-        ps.close();
-        conn.close();
+    private static final ReferenceCache<Department> CACHE = new ReferenceCache<>("departments");
+    private static final String SELECT_COLUMNS = "select id, name from departments";
+    private static final String RETURNING_COLUMNS = " returning id, name";
+
+    // Returns the stored row, with its generated id
+    public Department save(Department department) throws SQLException, ClassNotFoundException {
+        return Metrics.time("DepartmentDao.save", () -> {
+            String sql = "insert into departments(name) values(?)" + RETURNING_COLUMNS;
+            Department saved;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, department.getName());
+                try (ResultSet rs = ps.executeQuery()) {
+                    saved = getDepartment(rs);
+                }
+            }
+            CACHE.invalidate();
+            ChangeEvents.inserted(ChangeEvents.DEPARTMENTS, saved);
+            return saved;
+        });
     }
 
     public Department findDepartmentById(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "select * from departments where id =?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setLong(1, id);
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) {
-            Department department = new Department();
-            department.setId(rs.getLong("id"));
-            department.setName(rs.getString("name"));
-            return department;
-        } else {
-            return null;
-        }
-
+        return Metrics.time("DepartmentDao.findDepartmentById", () -> {
+            String sql = SELECT_COLUMNS + " where id =?";
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return getDepartment(rs);
+                }
+            }
+        });
     }
 
     public Department findDepartmentByName(String name) throws SQLException, ClassNotFoundException {
-        String sql = "select * from departments where name =?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, name);
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) {
-            Department department = new Department();
-            department.setId(rs.getLong("id"));
-            department.setName(rs.getString("name"));
-            return department;
-        } else {
-            return null;
-        }
+        return Metrics.time("DepartmentDao.findDepartmentByName", () -> {
+            String sql = SELECT_COLUMNS + " where name =?";
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return getDepartment(rs);
+                }
+            }
+        });
     }
 
-    public void findAll() throws SQLException, ClassNotFoundException {
-        String sql = "select * from departments";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ResultSet rs = ps.executeQuery();
-        System.out.println("\nDepartment List");
-        while (rs.next()) {
-            System.out.println("\nID: " + rs.getLong("id"));
-            System.out.println("Name: " + rs.getString("name"));
+    // Served from the shared cache; the returned list is read-only
+    public List<Department> findAll() throws SQLException, ClassNotFoundException {
+        return Metrics.time("DepartmentDao.findAll", () -> CACHE.get(this::queryAll));
+    }
 
-        }
-        System.out.println("\n✔ Done");
-        rs.close();
-        ps.close();
-        conn.close();
+    public void findAll(Consumer<Department> consumer) throws SQLException, ClassNotFoundException {
+        findAll().forEach(consumer);
+    }
 
+    private List<Department> queryAll() throws SQLException, ClassNotFoundException {
+        String sql = SELECT_COLUMNS + " order by name";
+        List<Department> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                rows.add(new Department(rs.getLong(1), rs.getString(2)));
+            }
+        }
+        return rows;
     }
 
-    public void update(Long id, Department department) throws SQLException, ClassNotFoundException {
-        String sql = "update departments set name = ? where id = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, department.getName());
-        ps.setLong(2, id);
-        ps.executeUpdate();
-        ps.close();
-        conn.close();
+    // Returns the row as stored, or null if it no longer exists
+    public Department update(Long id, Department department) throws SQLException, ClassNotFoundException {
+        return Metrics.time("DepartmentDao.update", () -> {
+            String sql = "update departments set name = ? where id = ?" + RETURNING_COLUMNS;
+            Department updated;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, department.getName());
+                ps.setLong(2, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    updated = getDepartment(rs);
+                }
+            }
+            CACHE.invalidate();
+            if (updated != null) {
+                ChangeEvents.updated(ChangeEvents.DEPARTMENTS, updated);
+            }
+            return updated;
+        });
     }
 
-    public  void delete(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "delete from departments where id = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setLong(1, id);
-        ps.executeUpdate();
-        ps.close();
-        conn.close();
+    // Whether the row was still there to delete
+    public  boolean delete(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("DepartmentDao.delete", () -> {
+            String sql = "delete from departments where id = ?";
+            int deleted;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, id);
+                deleted = ps.executeUpdate();
+            }
+            CACHE.invalidate();
+            if (deleted > 0) {
+                ChangeEvents.deleted(ChangeEvents.DEPARTMENTS, id);
+            }
+            return deleted > 0;
+        });
     }
 
+    private Department getDepartment(ResultSet rs) throws SQLException {
+        if (rs.next()) {
+            return new Department(rs.getLong(1), rs.getString(2));
+        } else {
+            return null;
+        }
+    }
 
 }
@@ -1,64 +1,288 @@
 package dao;
 
+import database.ChangeFeed;
 import database.DatabaseConnection;
+import database.Metrics;
+import database.StatementCache;
 import model.Enrollment;
+import model.EnrollmentDetail;
+import service.EnrollmentCounts;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class EnrollmentDao {
+    // Column order here is what mapRow reads by index
+    private static final String SELECT_COLUMNS = "SELECT id, student_id, course_id, semester, grade FROM enrollments";
+    private static final String RETURNING_COLUMNS = " RETURNING id, student_id, course_id, semester, grade";
+    private static final String SELECT_DETAILS =
+            "SELECT e.id, e.student_id, s.name, e.course_id, c.name, e.semester, e.grade " +
+            "FROM enrollments e " +
+            "JOIN students s ON e.student_id = s.id " +
+            "JOIN courses c ON e.course_id = c.id ";
+    private static final int FETCH_SIZE = 1000;
+    // Lookups whose plans QueryPlans checks at startup, prepared on the server on first use
+    static final String FIND_BY_ID = StatementCache.onServer(SELECT_COLUMNS + " WHERE id = ?");
+    static final String FIND_DETAIL_BY_ID = StatementCache.onServer(SELECT_DETAILS + "WHERE e.id = ?");
+    static final String FIND_BY_STUDENT = StatementCache.onServer(SELECT_COLUMNS + " WHERE student_id = ?");
+    static final String FIND_BY_COURSE = StatementCache.onServer(SELECT_COLUMNS + " WHERE course_id = ?");
+    static final String EXISTS = StatementCache.onServer(
+            "SELECT COUNT(*) FROM enrollments WHERE student_id = ? AND course_id = ? AND semester = ?");
+    // Rows sent per INSERT by saveAll
+    private static final int BATCH_SIZE = 5000;
+    // Writes from other clients drop the counts through the change feed; without it they are only seen when
+    // the counts are reloaded, and 0 keeps them until restart
+    private static final long COUNTS_TTL_MILLIS = Long.getLong("cms.enrollmentCountsTtlSeconds", 300) * 1000;
+    private static final Object COUNTS_LOCK = new Object();
+    // Guards publishing a reload against a write's delta; held only for the swap, never across a query
+    private static final Object COUNTS_PUBLISH_LOCK = new Object();
+    // Bumped before every write commits and again when it is counted, so a reload that raced with one is not kept
+    private static final AtomicLong countsGeneration = new AtomicLong();
+    private static volatile EnrollmentCounts counts;
+    // The generation the published counts were loaded at
+    private static long countsLoadedGeneration;
+    private static volatile long countsLoadedAt;
+
+    static {
+        // Another client's write has no delta to apply here, so the next check reloads the totals
+        ChangeFeed.subscribe("enrollments", change -> {
+            countsGeneration.incrementAndGet();
+            counts = null;
+        });
+    }
+
+    // Columns an enrollment page can be ordered by, with the value the keyset seek compares against
+    public enum SortColumn {
+        ID("e.id", EnrollmentDetail::getId),
+        STUDENT("s.name", EnrollmentDetail::getStudentName),
+        COURSE("c.name", EnrollmentDetail::getCourseName),
+        SEMESTER("e.semester", EnrollmentDetail::getSemester),
+        GRADE("e.grade", EnrollmentDetail::getGrade);
+
+        private final String column;
+        private final Function<EnrollmentDetail, Object> key;
+
+        SortColumn(String column, Function<EnrollmentDetail, Object> key) {
+            this.column = column;
+            this.key = key;
+        }
+    }
 
 //    Enroll Student in Course:
 //    Assign students to specific courses.
 
-    public void save(Enrollment enrollment) throws SQLException, ClassNotFoundException {
-        String sql = "INSERT INTO enrollments (student_id, course_id, semester, grade) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, enrollment.getStudentId());
-            ps.setLong(2, enrollment.getCourseId());
-            ps.setString(3, enrollment.getSemester());
-            ps.setString(4, enrollment.getGrade());
-            ps.executeUpdate();
-        }
+    // Returns the stored row, with its generated id
+    public Enrollment save(Enrollment enrollment) throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.save", () -> {
+            String sql = "INSERT INTO enrollments (student_id, course_id, semester, grade) VALUES (?, ?, ?, ?)" +
+                    RETURNING_COLUMNS;
+            long writeStarted = countsWriteStarting();
+            Enrollment saved = inTransaction(conn -> {
+                Enrollment inserted;
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setLong(1, enrollment.getStudentId());
+                    ps.setLong(2, enrollment.getCourseId());
+                    ps.setString(3, enrollment.getSemester());
+                    ps.setString(4, enrollment.getGrade());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        inserted = mapRow(rs);
+                    }
+                }
+                TranscriptDao.refresh(conn, new Long[]{enrollment.getStudentId()}, new String[]{enrollment.getSemester()});
+                return inserted;
+            });
+            countChanged(writeStarted, enrollment.getCourseId(), enrollment.getSemester(), 1);
+            ChangeEvents.inserted(ChangeEvents.ENROLLMENTS, saved);
+            return saved;
+        });
+    }
+
+    /**
+     * Inserts many enrollments in one transaction and returns how many rows were added.
+     * Rows are sent as array parameters, one INSERT per chunk, and rows that already
+     * exist (the student/course/semester unique key) or name an unknown student or
+     * course are skipped instead of failing the whole import. The term GPAs of the
+     * added rows are refreshed chunk by chunk in the same transaction.
+     */
+    public int saveAll(List<Enrollment> enrollments) throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.saveAll", () -> {
+            String sql = "INSERT INTO enrollments (student_id, course_id, semester, grade) " +
+                    "SELECT u.student_id, u.course_id, u.semester, u.grade " +
+                    "FROM unnest(?::bigint[], ?::bigint[], ?::varchar[], ?::varchar[]) " +
+                    "AS u(student_id, course_id, semester, grade) " +
+                    "WHERE EXISTS (SELECT 1 FROM students s WHERE s.id = u.student_id) " +
+                    "AND EXISTS (SELECT 1 FROM courses c WHERE c.id = u.course_id) " +
+                    "ON CONFLICT (student_id, course_id, semester) DO NOTHING " +
+                    RETURNING_COLUMNS;
+            List<Enrollment> added = new ArrayList<>();
+            long writeStarted = countsWriteStarting();
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (int start = 0; start < enrollments.size(); start += BATCH_SIZE) {
+                        List<Enrollment> chunk = enrollments.subList(start, Math.min(start + BATCH_SIZE, enrollments.size()));
+                        Long[] studentIds = new Long[chunk.size()];
+                        Long[] courseIds = new Long[chunk.size()];
+                        String[] semesters = new String[chunk.size()];
+                        String[] grades = new String[chunk.size()];
+                        for (int i = 0; i < chunk.size(); i++) {
+                            Enrollment enrollment = chunk.get(i);
+                            studentIds[i] = enrollment.getStudentId();
+                            courseIds[i] = enrollment.getCourseId();
+                            semesters[i] = enrollment.getSemester();
+                            grades[i] = enrollment.getGrade();
+                        }
+                        ps.setArray(1, conn.createArrayOf("bigint", studentIds));
+                        ps.setArray(2, conn.createArrayOf("bigint", courseIds));
+                        ps.setArray(3, conn.createArrayOf("varchar", semesters));
+                        ps.setArray(4, conn.createArrayOf("varchar", grades));
+                        // Only the rows actually inserted come back, so skipped duplicates are not counted
+                        int addedBefore = added.size();
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                added.add(mapRow(rs));
+                            }
+                        }
+                        List<Enrollment> chunkAdded = added.subList(addedBefore, added.size());
+                        TranscriptDao.refresh(conn,
+                            chunkAdded.stream().map(Enrollment::getStudentId).toArray(Long[]::new),
+                            chunkAdded.stream().map(Enrollment::getSemester).toArray(String[]::new));
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            for (Enrollment enrollment : added) {
+                countChanged(writeStarted, enrollment.getCourseId(), enrollment.getSemester(), 1);
+            }
+            ChangeEvents.inserted(ChangeEvents.ENROLLMENTS, added);
+            return added.size();
+        });
     }
 
 //    View Student Enrollments
 
-    public void getAll() throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM enrollments";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            
-            while (rs.next()) {
-                System.out.println("\nID: " + rs.getLong("id"));
-                System.out.println("Student ID: " + rs.getLong("student_id"));
-                System.out.println("Course ID: " + rs.getLong("course_id"));
-                System.out.println("Semester: " + rs.getString("semester"));
-                System.out.println("Grade: " + rs.getString("grade"));
+    public List<Enrollment> getAll() throws SQLException, ClassNotFoundException {
+        List<Enrollment> enrollments = new ArrayList<>();
+        getAll(enrollments::add);
+        return enrollments;
+    }
+
+    public void getAll(Consumer<Enrollment> consumer) throws SQLException, ClassNotFoundException {
+        Metrics.run("EnrollmentDao.getAll", () -> {
+            stream(SELECT_COLUMNS + " ORDER BY id", rs -> consumer.accept(mapRow(rs)));
+        });
+    }
+
+    // Enrollments with student and course names, newest semester first
+    public List<EnrollmentDetail> getAllDetails() throws SQLException, ClassNotFoundException {
+        List<EnrollmentDetail> details = new ArrayList<>();
+        getAllDetails(details::add);
+        return details;
+    }
+
+    public void getAllDetails(Consumer<EnrollmentDetail> consumer) throws SQLException, ClassNotFoundException {
+        Metrics.run("EnrollmentDao.getAllDetails", () -> {
+            stream(SELECT_DETAILS + "ORDER BY e.semester DESC, s.name", rs -> consumer.accept(mapDetail(rs)));
+        });
+    }
+
+    public int countAll() throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.countAll", () -> {
+            String sql = "SELECT COUNT(*) FROM enrollments e " +
+                    "JOIN students s ON e.student_id = s.id " +
+                    "JOIN courses c ON e.course_id = c.id";
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
             }
+        });
+    }
+
+    /**
+     * One page of enrollment details in the given order, ties broken by id. When
+     * {@code after} (the last row of the previous page) is known the query seeks past
+     * it instead of using OFFSET, so scrolling deep into the table stays cheap.
+     */
+    public List<EnrollmentDetail> getDetailsPage(SortColumn sort, boolean ascending, int offset, int limit,
+                                                 EnrollmentDetail after) throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.getDetailsPage", () -> {
+            // A NULL sort value can't be compared in a row constructor, so those pages fall back to OFFSET
+            Object seekKey = after != null ? sort.key.apply(after) : null;
+            List<EnrollmentDetail> details = new ArrayList<>(limit);
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(detailsPageSql(sort, ascending, seekKey != null))) {
+                int index = 1;
+                if (seekKey != null) {
+                    ps.setObject(index++, seekKey);
+                    ps.setLong(index++, after.getId());
+                    ps.setInt(index, limit);
+                } else {
+                    ps.setInt(index++, limit);
+                    ps.setInt(index, offset);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        details.add(mapDetail(rs));
+                    }
+                }
+            }
+            return details;
+        });
+    }
+
+    // Parameters are (sort value, id, limit) when seeking, otherwise (limit, offset)
+    static String detailsPageSql(SortColumn sort, boolean ascending, boolean seek) {
+        String direction = ascending ? "ASC" : "DESC";
+        StringBuilder sql = new StringBuilder(SELECT_DETAILS);
+        if (seek) {
+            sql.append("WHERE (").append(sort.column).append(", e.id) ")
+               .append(ascending ? ">" : "<").append(" (?, ?) ");
         }
+        sql.append("ORDER BY ").append(sort.column).append(' ').append(direction)
+           .append(", e.id ").append(direction);
+        sql.append(seek ? " LIMIT ?" : " LIMIT ? OFFSET ?");
+        return sql.toString();
     }
 
     public Enrollment getEnrollmentById(long id) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM enrollments WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return new Enrollment(
-                    rs.getLong("id"),
-                    rs.getLong("student_id"),
-                    rs.getLong("course_id"),
-                    rs.getString("semester"),
-                    rs.getString("grade")
-                );
+        return Metrics.time("EnrollmentDao.getEnrollmentById", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(FIND_BY_ID)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return mapRow(rs);
+                    }
+                }
             }
-        }
-        return null;
+            return null;
+        });
+    }
+
+    // The enrollment with its student and course names, e.g. to show another client's change; null if it is gone
+    public EnrollmentDetail getDetailById(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.getDetailById", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(FIND_DETAIL_BY_ID)) {
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return mapDetail(rs);
+                    }
+                }
+            }
+            return null;
+        });
     }
 
 //    Update Enrollment:
@@ -71,108 +295,284 @@ public class EnrollmentDao {
 //    Update or assign grades for completed courses.
 
     public Enrollment getEnrollmentByStudentId(long studentId) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM enrollments WHERE student_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, studentId);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return new Enrollment(
-                    rs.getLong("id"),
-                    rs.getLong("student_id"),
-                    rs.getLong("course_id"),
-                    rs.getString("semester"),
-                    rs.getString("grade")
-                );
+        return Metrics.time("EnrollmentDao.getEnrollmentByStudentId", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(FIND_BY_STUDENT)) {
+                ps.setLong(1, studentId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return mapRow(rs);
+                    }
+                }
             }
-        }
-        return null;
+            return null;
+        });
     }
 
     public void update(Long id, Enrollment enrollment) throws SQLException, ClassNotFoundException {
-        String sql = "UPDATE enrollments SET student_id = ?, course_id = ?, semester = ?, grade = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, enrollment.getStudentId());
-            ps.setLong(2, enrollment.getCourseId());
-            ps.setString(3, enrollment.getSemester());
-            ps.setString(4, enrollment.getGrade());
-            ps.setLong(5, id);
-            ps.executeUpdate();
-        }
+        Metrics.run("EnrollmentDao.update", () -> {
+            // The self-join reads the row as it was before the update, so its old course and term can be counted down
+            String sql = "UPDATE enrollments e SET student_id = ?, course_id = ?, semester = ?, grade = ? " +
+                    "FROM enrollments old WHERE e.id = ? AND old.id = e.id " +
+                    "RETURNING old.student_id, old.course_id, old.semester";
+            long writeStarted = countsWriteStarting();
+            Enrollment old = inTransaction(conn -> {
+                Enrollment previous;
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setLong(1, enrollment.getStudentId());
+                    ps.setLong(2, enrollment.getCourseId());
+                    ps.setString(3, enrollment.getSemester());
+                    ps.setString(4, enrollment.getGrade());
+                    ps.setLong(5, id);
+                    previous = returnedRow(ps);
+                }
+                if (previous != null) {
+                    TranscriptDao.refresh(conn,
+                        new Long[]{previous.getStudentId(), enrollment.getStudentId()},
+                        new String[]{previous.getSemester(), enrollment.getSemester()});
+                }
+                return previous;
+            });
+            if (old != null) {
+                countChanged(writeStarted, old.getCourseId(), old.getSemester(), -1);
+                countChanged(writeStarted, enrollment.getCourseId(), enrollment.getSemester(), 1);
+                ChangeEvents.updated(ChangeEvents.ENROLLMENTS, new Enrollment(id, enrollment.getStudentId(),
+                    enrollment.getCourseId(), enrollment.getSemester(), enrollment.getGrade()));
+            }
+        });
     }
 
-    public void updateGrade(Long id, String grade) throws SQLException, ClassNotFoundException {
-        String sql = "UPDATE enrollments SET grade = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, grade);
-            ps.setLong(2, id);
-            ps.executeUpdate();
-        }
+    // Only the one term the enrollment belongs to is re-aggregated, not the student's whole record.
+    // Returns the row as stored, or null if it no longer exists.
+    public Enrollment updateGrade(Long id, String grade) throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.updateGrade", () -> {
+            String sql = "UPDATE enrollments SET grade = ? WHERE id = ?" + RETURNING_COLUMNS;
+            Enrollment stored = inTransaction(conn -> {
+                Enrollment updated = null;
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, grade);
+                    ps.setLong(2, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            updated = mapRow(rs);
+                        }
+                    }
+                }
+                if (updated != null) {
+                    TranscriptDao.refresh(conn, new Long[]{updated.getStudentId()}, new String[]{updated.getSemester()});
+                }
+                return updated;
+            });
+            if (stored != null) {
+                ChangeEvents.updated(ChangeEvents.ENROLLMENTS, stored);
+            }
+            return stored;
+        });
     }
 
-    public void delete(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "DELETE FROM enrollments WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, id);
-            ps.executeUpdate();
+    // Whether the row was still there to delete
+    public boolean delete(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.delete", () -> {
+            String sql = "DELETE FROM enrollments WHERE id = ? RETURNING student_id, course_id, semester";
+            long writeStarted = countsWriteStarting();
+            Enrollment deleted = inTransaction(conn -> {
+                Enrollment removed;
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setLong(1, id);
+                    removed = returnedRow(ps);
+                }
+                if (removed != null) {
+                    TranscriptDao.refresh(conn, new Long[]{removed.getStudentId()}, new String[]{removed.getSemester()});
+                }
+                return removed;
+            });
+            if (deleted == null) {
+                return false;
+            }
+            countChanged(writeStarted, deleted.getCourseId(), deleted.getSemester(), -1);
+            ChangeEvents.deleted(ChangeEvents.ENROLLMENTS, id);
+            return true;
+        });
+    }
+
+    /**
+     * Students per course and semester, for room capacity checks. Loaded with one
+     * GROUP BY the first time and whenever the TTL runs out; in between, this DAO's
+     * own writes move the totals, so a check never has to count enrollments.
+     */
+    public EnrollmentCounts getCounts() throws SQLException, ClassNotFoundException {
+        return Metrics.time("EnrollmentDao.getCounts", () -> {
+            EnrollmentCounts current = counts;
+            if (current != null && !countsExpired()) {
+                return current;
+            }
+            synchronized (COUNTS_LOCK) {
+                current = counts;
+                if (current != null && !countsExpired()) {
+                    return current;
+                }
+                long requested = countsGeneration.get();
+                EnrollmentCounts loaded = new EnrollmentCounts();
+                String sql = "SELECT course_id, semester, count(*) FROM enrollments GROUP BY course_id, semester";
+                try (Connection conn = DatabaseConnection.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(sql);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        loaded.set(rs.getLong(1), rs.getString(2), rs.getInt(3));
+                    }
+                }
+                synchronized (COUNTS_PUBLISH_LOCK) {
+                    if (requested == countsGeneration.get()) {
+                        countsLoadedAt = System.currentTimeMillis();
+                        countsLoadedGeneration = requested;
+                        counts = loaded;
+                    }
+                }
+                return loaded;
+            }
+        });
+    }
+
+    // Called before a write commits; a reload started after this may or may not see the write
+    private static long countsWriteStarting() {
+        return countsGeneration.incrementAndGet();
+    }
+
+    // Moves the totals by a committed write, unless they were loaded after it began and may already include it
+    private static void countChanged(long writeStarted, Long courseId, String semester, int delta) {
+        synchronized (COUNTS_PUBLISH_LOCK) {
+            countsGeneration.incrementAndGet();
+            EnrollmentCounts current = counts;
+            if (current == null) {
+                return;
+            }
+            if (countsLoadedGeneration >= writeStarted) {
+                counts = null;
+            } else {
+                current.add(courseId, semester, delta);
+            }
         }
     }
 
+    private static boolean countsExpired() {
+        return COUNTS_TTL_MILLIS > 0 && System.currentTimeMillis() - countsLoadedAt > COUNTS_TTL_MILLIS;
+    }
+
     public boolean existsEnrollment(Long studentId, Long courseId, String semester) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT COUNT(*) FROM enrollments WHERE student_id = ? AND course_id = ? AND semester = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, studentId);
-            ps.setLong(2, courseId);
-            ps.setString(3, semester);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+        return Metrics.time("EnrollmentDao.existsEnrollment", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(EXISTS)) {
+                ps.setLong(1, studentId);
+                ps.setLong(2, courseId);
+                ps.setString(3, semester);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt(1) > 0;
+                    }
+                }
             }
-        }
-        return false;
+            return false;
+        });
     }
 
     public List<Enrollment> getEnrollmentsByStudentId(Long studentId) throws SQLException, ClassNotFoundException {
-        List<Enrollment> enrollments = new ArrayList<>();
-        String sql = "SELECT * FROM enrollments WHERE student_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, studentId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                enrollments.add(new Enrollment(
-                    rs.getLong("id"),
-                    rs.getLong("student_id"),
-                    rs.getLong("course_id"),
-                    rs.getString("semester"),
-                    rs.getString("grade")
-                ));
+        return Metrics.time("EnrollmentDao.getEnrollmentsByStudentId", () -> {
+            List<Enrollment> enrollments = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(FIND_BY_STUDENT)) {
+                ps.setLong(1, studentId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        enrollments.add(mapRow(rs));
+                    }
+                }
             }
-        }
-        return enrollments;
+            return enrollments;
+        });
     }
 
     public List<Enrollment> getEnrollmentsByCourseId(Long courseId) throws SQLException, ClassNotFoundException {
-        List<Enrollment> enrollments = new ArrayList<>();
-        String sql = "SELECT * FROM enrollments WHERE course_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, courseId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                enrollments.add(new Enrollment(
-                    rs.getLong("id"),
-                    rs.getLong("student_id"),
-                    rs.getLong("course_id"),
-                    rs.getString("semester"),
-                    rs.getString("grade")
-                ));
+        return Metrics.time("EnrollmentDao.getEnrollmentsByCourseId", () -> {
+            List<Enrollment> enrollments = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(FIND_BY_COURSE)) {
+                ps.setLong(1, courseId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        enrollments.add(mapRow(rs));
+                    }
+                }
+            }
+            return enrollments;
+        });
+    }
+
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private interface Write<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    // Runs a write and the transcript refresh it needs as one transaction
+    private <T> T inTransaction(Write<T> write) throws SQLException, ClassNotFoundException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                T result = write.run(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
             }
         }
-        return enrollments;
+    }
+
+    // The student, course and semester a write's RETURNING clause gave back, or null if no row matched
+    private Enrollment returnedRow(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? new Enrollment(rs.getLong(1), rs.getLong(2), rs.getString(3), null) : null;
+        }
+    }
+
+    // Cursor-based read so large result sets are not materialised by the driver all at once
+    private void stream(String sql, RowHandler handler) throws SQLException, ClassNotFoundException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // The Postgres driver only honours the fetch size inside a transaction
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handle(rs);
+                    }
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    private Enrollment mapRow(ResultSet rs) throws SQLException {
+        return new Enrollment(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getLong(3),
+            rs.getString(4),
+            rs.getString(5)
+        );
+    }
+
+    private EnrollmentDetail mapDetail(ResultSet rs) throws SQLException {
+        return new EnrollmentDetail(
+            rs.getLong(1),
+            rs.getLong(2),
+            rs.getString(3),
+            rs.getLong(4),
+            rs.getString(5),
+            rs.getString(6),
+            rs.getString(7)
+        );
     }
 }
@@ -0,0 +1,49 @@
+package dao;
+
+import database.QueryPlanChecker.PlannedQuery;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The selective queries the DAOs run, for the startup plan check. Full-table reads
+ * are left out because scanning the whole table is the right plan for them. The
+ * foreign-key probes stand in for the lookups Postgres makes when a referenced
+ * row is deleted.
+ */
+public final class QueryPlans {
+
+    private QueryPlans() {
+    }
+
+    public static List<PlannedQuery> all() {
+        return List.of(
+            new PlannedQuery("StudentDao.findById", StudentDao.FIND_BY_ID, 1L),
+            new PlannedQuery("StudentDao.existsByEmail", StudentDao.EXISTS_BY_EMAIL, "someone@college.edu"),
+            new PlannedQuery("StudentDao.findPage by name",
+                StudentDao.pageSql(StudentDao.SortColumn.NAME, true, true), "M", 1L, 200),
+            new PlannedQuery("StudentDao.findPage by date of birth",
+                StudentDao.pageSql(StudentDao.SortColumn.DOB, false, true), LocalDate.of(2000, 1, 1), 1L, 200),
+            new PlannedQuery("EnrollmentDao.getEnrollmentById", EnrollmentDao.FIND_BY_ID, 1L),
+            new PlannedQuery("EnrollmentDao.getDetailById", EnrollmentDao.FIND_DETAIL_BY_ID, 1L),
+            new PlannedQuery("EnrollmentDao.getEnrollmentsByStudentId", EnrollmentDao.FIND_BY_STUDENT, 1L),
+            new PlannedQuery("EnrollmentDao.getEnrollmentsByCourseId", EnrollmentDao.FIND_BY_COURSE, 1L),
+            new PlannedQuery("EnrollmentDao.existsEnrollment", EnrollmentDao.EXISTS, 1L, 1L, "First Semester"),
+            new PlannedQuery("EnrollmentDao.getDetailsPage by semester",
+                EnrollmentDao.detailsPageSql(EnrollmentDao.SortColumn.SEMESTER, false, true), "Fifth Semester", 1L, 200),
+            new PlannedQuery("CourseDao.getCourseById", CourseDao.FIND_BY_ID, 1L),
+            new PlannedQuery("CourseDao.getCourseByName", CourseDao.FIND_BY_NAME, "Databases"),
+            new PlannedQuery("TeacherDao.getTeacherById", TeacherDao.FIND_BY_ID, 1L),
+            new PlannedQuery("TeacherDao.getTeacherByEmail", TeacherDao.FIND_BY_EMAIL, "someone@college.edu"),
+            new PlannedQuery("TranscriptDao.getTranscript terms", TranscriptDao.FIND_TERMS_BY_STUDENT, 1L),
+            new PlannedQuery("TranscriptDao.getTranscript entries", TranscriptDao.FIND_ENTRIES_BY_STUDENT, 1L),
+            new PlannedQuery("TranscriptDao.getDeansList", TranscriptDao.DEANS_LIST, "First Semester", 3.5, 0.0),
+            new PlannedQuery("courses by department", "SELECT id FROM courses WHERE dept_id = ?", 1L),
+            new PlannedQuery("enrollments of a deleted course", "SELECT 1 FROM enrollments WHERE course_id = ?", 1L),
+            new PlannedQuery("schedules of a deleted course", "SELECT 1 FROM class_schedules WHERE course_id = ?", 1L),
+            new PlannedQuery("schedules of a deleted room", "SELECT 1 FROM class_schedules WHERE room_id = ?", 1L),
+            new PlannedQuery("schedules of a deleted teacher", "SELECT 1 FROM class_schedules WHERE teacher_id = ?", 1L),
+            new PlannedQuery("schedules of a deleted timeslot", "SELECT 1 FROM class_schedules WHERE timeslot_id = ?", 1L)
+        );
+    }
+}
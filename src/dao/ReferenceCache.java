@@ -0,0 +1,106 @@
+package dao;
+
+import database.ChangeFeed;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a whole reference table (rooms, timeslots, departments, teachers, courses)
+ * in memory. The owning DAO invalidates it on every write, and {@link ChangeFeed}
+ * invalidates it when another client writes the table it is named after; the
+ * optional TTL is a backstop for when live updates are off. Safe to share between
+ * threads; only one thread reloads an expired cache while the others wait for its
+ * result.
+ */
+public class ReferenceCache<T> {
+    // Set -Dcms.referenceCacheTtlSeconds=0 to rely on write and change feed invalidation alone
+    private static final long DEFAULT_TTL_MILLIS =
+            Long.getLong("cms.referenceCacheTtlSeconds", 300) * 1000;
+    private static final List<ReferenceCache<?>> ALL = new CopyOnWriteArrayList<>();
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        List<T> load() throws SQLException, ClassNotFoundException;
+    }
+
+    private final String name;
+    private final long ttlMillis;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // Bumped by invalidate so a load that raced with a write is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private volatile List<T> rows;
+    private volatile long loadedAt;
+
+    // The name is the table the cache holds, so changes to it from other clients invalidate the cache
+    public ReferenceCache(String name) {
+        this(name, DEFAULT_TTL_MILLIS);
+    }
+
+    public ReferenceCache(String name, long ttlMillis) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        ALL.add(this);
+        ChangeFeed.subscribe(name, change -> invalidate());
+    }
+
+    public static List<ReferenceCache<?>> getAll() {
+        return Collections.unmodifiableList(ALL);
+    }
+
+    // The cached rows, loading them first if the cache is empty or expired. The list is read-only.
+    public List<T> get(Loader<T> loader) throws SQLException, ClassNotFoundException {
+        List<T> current = rows;
+        if (current != null && !isExpired()) {
+            hits.incrementAndGet();
+            return current;
+        }
+        synchronized (this) {
+            current = rows;
+            if (current != null && !isExpired()) {
+                hits.incrementAndGet();
+                return current;
+            }
+            misses.incrementAndGet();
+            long requested = generation.get();
+            List<T> loaded = Collections.unmodifiableList(new ArrayList<>(loader.load()));
+            if (requested == generation.get()) {
+                loadedAt = System.currentTimeMillis();
+                rows = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        rows = null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + " cache: " + hits.get() + " hits, " + misses.get() + " misses"
+                + (rows != null ? ", " + rows.size() + " rows" : ", empty");
+    }
+
+    private boolean isExpired() {
+        return ttlMillis > 0 && System.currentTimeMillis() - loadedAt > ttlMillis;
+    }
+}
@@ -1,86 +1,131 @@
 package dao;
 
+import database.ChangeFeed.Operation;
 import database.DatabaseConnection;
+import database.Metrics;
 import model.Room;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class RoomDao {
-    public void add(Room room) throws SQLException, ClassNotFoundException {
-        String sql = "INSERT INTO rooms (room_number, capacity) VALUES (?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setString(1, room.getRoomNumber());
-            stmt.setInt(2, room.getCapacity());
-            stmt.executeUpdate();
+    private static final ReferenceCache<Room> CACHE = new ReferenceCache<>("rooms");
+    // Column order here is what mapRow reads by index
+    private static final String SELECT_COLUMNS = "SELECT id, room_number, capacity FROM rooms";
+    private static final String RETURNING_COLUMNS = " RETURNING id, room_number, capacity";
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    room.setId(generatedKeys.getLong(1));
-                }
+    // Returns the stored row; the generated id is also set on the room passed in
+    public Room add(Room room) throws SQLException, ClassNotFoundException {
+        return Metrics.time("RoomDao.add", () -> {
+            String sql = "INSERT INTO rooms (room_number, capacity) VALUES (?, ?)" + RETURNING_COLUMNS;
+            Room added;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+                stmt.setString(1, room.getRoomNumber());
+                stmt.setInt(2, room.getCapacity());
+                added = returnedRow(stmt);
             }
-        }
+            room.setId(added.getId());
+            CACHE.invalidate();
+            ChangeEvents.inserted(ChangeEvents.ROOMS, added);
+            return added;
+        });
     }
 
-    public void update(Room room) throws SQLException, ClassNotFoundException {
-        String sql = "UPDATE rooms SET room_number = ?, capacity = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Returns the row as stored, or null if it no longer exists
+    public Room update(Room room) throws SQLException, ClassNotFoundException {
+        return Metrics.time("RoomDao.update", () -> {
+            String sql = "UPDATE rooms SET room_number = ?, capacity = ? WHERE id = ?" + RETURNING_COLUMNS;
+            Room updated;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setString(1, room.getRoomNumber());
-            stmt.setInt(2, room.getCapacity());
-            stmt.setLong(3, room.getId());
-            stmt.executeUpdate();
-        }
+                stmt.setString(1, room.getRoomNumber());
+                stmt.setInt(2, room.getCapacity());
+                stmt.setLong(3, room.getId());
+                updated = returnedRow(stmt);
+            }
+            CACHE.invalidate();
+            if (updated != null) {
+                ChangeEvents.updated(ChangeEvents.ROOMS, updated);
+                // Cached schedule details carry the old room numbers and capacities
+                ClassScheduleDao.schedulesCascaded(Operation.UPDATE);
+            }
+            return updated;
+        });
     }
 
-    public void delete(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "DELETE FROM rooms WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Whether the row was still there to delete
+    public boolean delete(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("RoomDao.delete", () -> {
+            String sql = "DELETE FROM rooms WHERE id = ?";
+            int deleted;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setLong(1, id);
-            stmt.executeUpdate();
-        }
+                stmt.setLong(1, id);
+                deleted = stmt.executeUpdate();
+            }
+            CACHE.invalidate();
+            if (deleted > 0) {
+                ChangeEvents.deleted(ChangeEvents.ROOMS, id);
+                // Schedules of this row went with it (ON DELETE CASCADE)
+                ClassScheduleDao.schedulesCascaded(Operation.DELETE);
+            }
+            return deleted > 0;
+        });
     }
 
     public Room getById(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM rooms WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        return Metrics.time("RoomDao.getById", () -> {
+            String sql = SELECT_COLUMNS + " WHERE id = ?";
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setLong(1, id);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
+                stmt.setLong(1, id);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return mapRow(rs);
+                    }
                 }
             }
-        }
-        return null;
+            return null;
+        });
     }
 
+    // Served from the shared cache; the returned list is read-only
     public List<Room> getAll() throws SQLException, ClassNotFoundException {
-        List<Room> rooms = new ArrayList<>();
-        String sql = "SELECT * FROM rooms ORDER BY room_number";
+        return Metrics.time("RoomDao.getAll", () -> CACHE.get(this::queryAll));
+    }
+
+    public void getAll(Consumer<Room> consumer) throws SQLException, ClassNotFoundException {
+        getAll().forEach(consumer);
+    }
+
+    private List<Room> queryAll() throws SQLException, ClassNotFoundException {
+        String sql = SELECT_COLUMNS + " ORDER BY room_number";
+        List<Room> rows = new ArrayList<>();
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
-                rooms.add(mapRow(rs));
+                rows.add(mapRow(rs));
             }
         }
-        return rooms;
+        return rows;
+    }
+
+    private Room returnedRow(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? mapRow(rs) : null;
+        }
     }
 
     private Room mapRow(ResultSet rs) throws SQLException {
-        Room room = new Room();
-        room.setId(rs.getLong("id"));
-        room.setRoomNumber(rs.getString("room_number"));
-        room.setCapacity(rs.getInt("capacity"));
-        return room;
+        return new Room(rs.getLong(1), rs.getString(2), rs.getInt(3));
     }
-} 
\ No newline at end of file
+}
@@ -1,103 +1,243 @@
 package dao;
 
 import database.DatabaseConnection;
+import database.Metrics;
+import database.StatementCache;
 import model.Student;
 
 import java.sql.*;
-import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class StudentDao {
+    // Column order here is what mapRow reads by index
+    private static final String SELECT_COLUMNS = "SELECT id, name, dob, email FROM students";
+    private static final String RETURNING_COLUMNS = " RETURNING id, name, dob, email";
+    // Lookups whose plans QueryPlans checks at startup, prepared on the server on first use
+    static final String FIND_BY_ID = StatementCache.onServer(SELECT_COLUMNS + " WHERE id = ?");
+    static final String EXISTS_BY_EMAIL = StatementCache.onServer("SELECT 1 FROM students WHERE email = ?");
+    private static final int FETCH_SIZE = 1000;
+
+    // Columns a student page can be ordered by, with the value the keyset seek compares against
+    public enum SortColumn {
+        ID("id", Student::getId),
+        NAME("name", Student::getName),
+        DOB("dob", Student::getDob),
+        EMAIL("email", Student::getEmail);
+
+        private final String column;
+        private final Function<Student, Object> key;
+
+        SortColumn(String column, Function<Student, Object> key) {
+            this.column = column;
+            this.key = key;
+        }
+    }
 
-    public void save(Student student) {
-        String sql = "INSERT INTO students(name, dob, email) VALUES(?,?,?)";
+    // Returns the stored row, with its generated id
+    public Student save(Student student) {
+        String sql = "INSERT INTO students(name, dob, email) VALUES(?,?,?)" + RETURNING_COLUMNS;
         try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql);
-
-
-            stmt.setString(1, student.getName());
-            stmt.setDate(2, Date.valueOf(student.getDob()));
-            stmt.setString(3, student.getEmail());
-            stmt.executeUpdate();
-            System.out.println("\n✔ Done");
-
-
+            return Metrics.time("StudentDao.save", () -> {
+                try (Connection conn = DatabaseConnection.getConnection();
+                     PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                    stmt.setString(1, student.getName());
+                    stmt.setDate(2, Date.valueOf(student.getDob()));
+                    stmt.setString(3, student.getEmail());
+                    Student saved = returnedRow(stmt);
+                    ChangeEvents.inserted(ChangeEvents.STUDENTS, saved);
+                    return saved;
+                }
+            });
         } catch (SQLException | ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
     }
 
     public Student findById(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM students WHERE id = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        stmt.setLong(1, id);
-        ResultSet rs = stmt.executeQuery();
-        if (rs.next()) {
-            Student student = new Student();
-            student.setId(rs.getLong("id"));
-            student.setName(rs.getString("name"));
-            student.setDob(LocalDate.parse(rs.getString("dob")));
-            student.setEmail(rs.getString("email"));
-            return student;
-
-        } else {
+        return Metrics.time("StudentDao.findById", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(FIND_BY_ID)) {
+                stmt.setLong(1, id);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return mapRow(rs);
+                    }
+                }
+            }
             return null;
-        }
+        });
+    }
 
+    public List<Student> findAll() throws SQLException, ClassNotFoundException {
+        List<Student> students = new ArrayList<>();
+        findAll(students::add);
+        return students;
+    }
 
+    // Streams every student, ordered by name, to the consumer without holding the whole table in memory
+    public void findAll(Consumer<Student> consumer) throws SQLException, ClassNotFoundException {
+        Metrics.run("StudentDao.findAll", () -> {
+            String sql = SELECT_COLUMNS + " ORDER BY name, id";
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                // The Postgres driver only honours the fetch size inside a transaction
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setFetchSize(FETCH_SIZE);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            consumer.accept(mapRow(rs));
+                        }
+                    }
+                }
+                conn.commit();
+            }
+        });
     }
 
-    public void findAll() throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM students";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        ResultSet rs = stmt.executeQuery();
-        System.out.println("Students List");
-        while (rs.next()) {
-            System.out.println("\nID: " + rs.getLong("id"));
-            System.out.println("Name: " + rs.getString("name"));
-            System.out.println("DOB: " + rs.getString("dob"));
-            System.out.println("Email: " + rs.getString("email"));
-        }
-        System.out.println("\n✔ Done");
+    public int countAll() throws SQLException, ClassNotFoundException {
+        return Metrics.time("StudentDao.countAll", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM students");
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        });
     }
 
-    public void update(Long id, Student student) throws SQLException, ClassNotFoundException {
-        String sql = "UPDATE students SET name = ?, dob = ?,email=? WHERE id = ?";
-
-        Connection connection = DatabaseConnection.getConnection();
-        PreparedStatement stmt = connection.prepareStatement(sql);
-        stmt.setString(1, student.getName());
-        stmt.setDate(2, Date.valueOf(student.getDob()));
-        stmt.setString(3, student.getEmail());
-        stmt.setLong(4, id);
-        int i = stmt.executeUpdate();
-        if (i > 0) {
-            System.out.println("\n✔ Done");
+    /**
+     * One page of students in the given order, ties broken by id. When {@code after}
+     * (the last row of the previous page) is known the query seeks past it instead of
+     * using OFFSET, so scrolling deep into the table stays as cheap as the first page.
+     */
+    public List<Student> findPage(SortColumn sort, boolean ascending, int offset, int limit, Student after)
+            throws SQLException, ClassNotFoundException {
+        return Metrics.time("StudentDao.findPage", () -> {
+            // A NULL sort value can't be compared in a row constructor, so those pages fall back to OFFSET
+            Object seekKey = after != null ? sort.key.apply(after) : null;
+            List<Student> students = new ArrayList<>(limit);
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(pageSql(sort, ascending, seekKey != null))) {
+                int index = 1;
+                if (seekKey != null) {
+                    stmt.setObject(index++, seekKey);
+                    stmt.setLong(index++, after.getId());
+                    stmt.setInt(index, limit);
+                } else {
+                    stmt.setInt(index++, limit);
+                    stmt.setInt(index, offset);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        students.add(mapRow(rs));
+                    }
+                }
+            }
+            return students;
+        });
+    }
+
+    // Parameters are (sort value, id, limit) when seeking, otherwise (limit, offset)
+    static String pageSql(SortColumn sort, boolean ascending, boolean seek) {
+        String direction = ascending ? "ASC" : "DESC";
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS);
+        if (seek) {
+            sql.append(" WHERE (").append(sort.column).append(", id) ")
+               .append(ascending ? ">" : "<").append(" (?, ?)");
         }
+        sql.append(" ORDER BY ").append(sort.column).append(' ').append(direction)
+           .append(", id ").append(direction);
+        sql.append(seek ? " LIMIT ?" : " LIMIT ? OFFSET ?");
+        return sql.toString();
+    }
 
+    // Ranked, typo-tolerant search on name, plus email prefix matches
+    public List<Student> search(String term, int limit) throws SQLException, ClassNotFoundException {
+        return Metrics.time("StudentDao.search", () -> {
+            TextSearch search = new TextSearch(term, limit);
+            List<Student> students = new ArrayList<>();
+            if (search.isBlank()) {
+                return students;
+            }
+            String columns = "id, name, dob, email";
+            String sql = search.best(columns,
+                    search.nearest(columns, "students", "name"),
+                    search.prefix(columns, "students", "email"));
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = search.prepare(conn, sql)) {
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        students.add(mapRow(rs));
+                    }
+                }
+            }
+            return students;
+        });
     }
 
-    public void delete(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "DELETE FROM students WHERE id = ?";
-        Connection connection = DatabaseConnection.getConnection();
-        PreparedStatement stmt = connection.prepareStatement(sql);
-        stmt.setLong(1, id);
-        int i = stmt.executeUpdate();
-        if (i > 0) {
-            System.out.println("\n✔ Done");
+    // Returns the row as stored, or null if it no longer exists
+    public Student update(Long id, Student student) throws SQLException, ClassNotFoundException {
+        return Metrics.time("StudentDao.update", () -> {
+            String sql = "UPDATE students SET name = ?, dob = ?,email=? WHERE id = ?" + RETURNING_COLUMNS;
+            try (Connection connection = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, student.getName());
+                stmt.setDate(2, Date.valueOf(student.getDob()));
+                stmt.setString(3, student.getEmail());
+                stmt.setLong(4, id);
+                Student updated = returnedRow(stmt);
+                if (updated != null) {
+                    ChangeEvents.updated(ChangeEvents.STUDENTS, updated);
+                }
+                return updated;
+            }
+        });
+    }
 
-        }
+    // Whether the row was still there to delete
+    public boolean delete(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("StudentDao.delete", () -> {
+            String sql = "DELETE FROM students WHERE id = ?";
+            try (Connection connection = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setLong(1, id);
+                int i = stmt.executeUpdate();
+                if (i > 0) {
+                    ChangeEvents.deleted(ChangeEvents.STUDENTS, id);
+                }
+                return i > 0;
+            }
+        });
     }
 
     public boolean existsByEmail(String email) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM students WHERE email = ?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        stmt.setString(1, email);
-        ResultSet rs = stmt.executeQuery();
-        return rs.next();
+        return Metrics.time("StudentDao.existsByEmail", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(EXISTS_BY_EMAIL)) {
+                stmt.setString(1, email);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        });
     }
 
+    private Student returnedRow(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? mapRow(rs) : null;
+        }
+    }
+
+    private Student mapRow(ResultSet rs) throws SQLException {
+        return new Student(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getDate(3).toLocalDate(),
+            rs.getString(4)
+        );
+    }
 }
@@ -1,95 +1,164 @@
 package dao;
 
+import database.ChangeFeed.Operation;
 import database.DatabaseConnection;
+import database.Metrics;
+import database.StatementCache;
 import model.Teacher;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class TeacherDao {
-    public void addTeacher(Teacher teacher) throws SQLException, ClassNotFoundException {
-        String sql = "INSERT INTO teachers(name,email) VALUES(?,?)";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, teacher.getName());
-        ps.setString(2, teacher.getEmail());
-        ps.executeUpdate();
-        ps.close();
-        conn.close();
+    private static final ReferenceCache<Teacher> CACHE = new ReferenceCache<>("teachers");
+    private static final String SELECT_COLUMNS = "select id, name, email from teachers";
+    private static final String RETURNING_COLUMNS = " returning id, name, email";
+    // Lookups whose plans QueryPlans checks at startup, prepared on the server on first use
+    static final String FIND_BY_ID = StatementCache.onServer(SELECT_COLUMNS + " where id=?");
+    static final String FIND_BY_EMAIL = StatementCache.onServer(SELECT_COLUMNS + " where email=?");
 
+    // Returns the stored row, with its generated id
+    public Teacher addTeacher(Teacher teacher) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TeacherDao.addTeacher", () -> {
+            String sql = "INSERT INTO teachers(name,email) VALUES(?,?)" + RETURNING_COLUMNS;
+            Teacher added;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, teacher.getName());
+                ps.setString(2, teacher.getEmail());
+                added = getTeacher(ps);
+            }
+            CACHE.invalidate();
+            ChangeEvents.inserted(ChangeEvents.TEACHERS, added);
+            return added;
+        });
     }
 
     public Teacher getTeacherById(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "select * from teachers where id=?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement preparedStatement = conn.prepareStatement(sql);
-        preparedStatement.setLong(1, id);
-        return getTeacher(preparedStatement);
+        return Metrics.time("TeacherDao.getTeacherById", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement preparedStatement = conn.prepareStatement(FIND_BY_ID)) {
+                preparedStatement.setLong(1, id);
+                return getTeacher(preparedStatement);
+            }
+        });
     }
 
     public Teacher getTeacherByEmail(String email) throws SQLException, ClassNotFoundException {
-        String sql = "select * from teachers where email=?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement preparedStatement = conn.prepareStatement(sql);
-        preparedStatement.setString(1, email);
-        return getTeacher(preparedStatement);
+        return Metrics.time("TeacherDao.getTeacherByEmail", () -> {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement preparedStatement = conn.prepareStatement(FIND_BY_EMAIL)) {
+                preparedStatement.setString(1, email);
+                return getTeacher(preparedStatement);
+            }
+        });
     }
 
-    public void getAllTeachers() throws SQLException, ClassNotFoundException {
+    // Served from the shared cache; the returned list is read-only
+    public List<Teacher> getAllTeachers() throws SQLException, ClassNotFoundException {
+        return Metrics.time("TeacherDao.getAllTeachers", () -> CACHE.get(this::queryAll));
+    }
+
+    public void getAllTeachers(Consumer<Teacher> consumer) throws SQLException, ClassNotFoundException {
+        getAllTeachers().forEach(consumer);
+    }
 
-        String sql = "select * from teachers";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement preparedStatement = conn.prepareStatement(sql);
-        ResultSet rs = preparedStatement.executeQuery();
-        System.out.println("Teachers List");
-        while (rs.next()) {
-            System.out.println("\nID: "+rs.getLong("id"));
-            System.out.println("Name: "+rs.getString("name"));
-            System.out.println("Email: "+rs.getString("email"));
+    private List<Teacher> queryAll() throws SQLException, ClassNotFoundException {
+        String sql = SELECT_COLUMNS + " order by name";
+        List<Teacher> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement preparedStatement = conn.prepareStatement(sql);
+             ResultSet rs = preparedStatement.executeQuery()) {
+            while (rs.next()) {
+                rows.add(mapRow(rs));
+            }
         }
-        rs.close();
-        preparedStatement.close();
-        conn.close();
+        return rows;
+    }
 
+    // Ranked, typo-tolerant search on name, plus email prefix matches
+    public List<Teacher> search(String term, int limit) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TeacherDao.search", () -> {
+            TextSearch search = new TextSearch(term, limit);
+            List<Teacher> teachers = new ArrayList<>();
+            if (search.isBlank()) {
+                return teachers;
+            }
+            String columns = "id, name, email";
+            String sql = search.best(columns,
+                    search.nearest(columns, "teachers", "name"),
+                    search.prefix(columns, "teachers", "email"));
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement preparedStatement = search.prepare(conn, sql)) {
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        teachers.add(mapRow(rs));
+                    }
+                }
+            }
+            return teachers;
+        });
     }
 
-    public void updateTeacher(Teacher teacher) throws SQLException, ClassNotFoundException {
-        String sql = "update teachers set name=?,email=? where id=?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement preparedStatement = conn.prepareStatement(sql);
-        preparedStatement.setString(1, teacher.getName());
-        preparedStatement.setString(2, teacher.getEmail());
-        preparedStatement.setLong(3, teacher.getId());
-        preparedStatement.executeUpdate();
-        preparedStatement.close();
-        conn.close();
+    // Returns the row as stored, or null if it no longer exists
+    public Teacher updateTeacher(Teacher teacher) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TeacherDao.updateTeacher", () -> {
+            String sql = "update teachers set name=?,email=? where id=?" + RETURNING_COLUMNS;
+            Teacher updated;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement preparedStatement = conn.prepareStatement(sql)) {
+                preparedStatement.setString(1, teacher.getName());
+                preparedStatement.setString(2, teacher.getEmail());
+                preparedStatement.setLong(3, teacher.getId());
+                updated = getTeacher(preparedStatement);
+            }
+            CACHE.invalidate();
+            if (updated != null) {
+                ChangeEvents.updated(ChangeEvents.TEACHERS, updated);
+                // Cached schedule details carry the old teacher names
+                ClassScheduleDao.schedulesCascaded(Operation.UPDATE);
+            }
+            return updated;
+        });
     }
 
-    public void deleteTeacher(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "delete from teachers where id=?";
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement preparedStatement = conn.prepareStatement(sql);
-        preparedStatement.setLong(1, id);
-        preparedStatement.executeUpdate();
-        preparedStatement.close();
-        conn.close();
+    // Whether the row was still there to delete
+    public boolean deleteTeacher(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TeacherDao.deleteTeacher", () -> {
+            String sql = "delete from teachers where id=?";
+            int deleted;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement preparedStatement = conn.prepareStatement(sql)) {
+                preparedStatement.setLong(1, id);
+                deleted = preparedStatement.executeUpdate();
+            }
+            CACHE.invalidate();
+            if (deleted > 0) {
+                ChangeEvents.deleted(ChangeEvents.TEACHERS, id);
+                // Schedules of this row went with it (ON DELETE CASCADE)
+                ClassScheduleDao.schedulesCascaded(Operation.DELETE);
+            }
+            return deleted > 0;
+        });
     }
 
 
     private Teacher getTeacher(PreparedStatement preparedStatement) throws SQLException {
-        ResultSet rs = preparedStatement.executeQuery();
-        if (rs.next()) {
-            Teacher teacher = new Teacher();
-            teacher.setId(rs.getLong("id"));
-            teacher.setName(rs.getString("name"));
-            teacher.setEmail(rs.getString("email"));
-            return teacher;
-        } else {
-            return null;
+        try (ResultSet rs = preparedStatement.executeQuery()) {
+            if (rs.next()) {
+                return mapRow(rs);
+            } else {
+                return null;
+            }
         }
     }
 
-
+    private Teacher mapRow(ResultSet rs) throws SQLException {
+        return new Teacher(rs.getLong(1), rs.getString(2), rs.getString(3));
+    }
 }
@@ -0,0 +1,83 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds ranked, typo-tolerant searches on the pg_trgm indexes and collects their
+ * parameters in the order they appear, so fragments must be built in the same
+ * order they are spliced into the statement. Name columns are nearest-neighbour
+ * scans on a GiST index ({@code term <<-> column}, ordered by word distance), so
+ * the index hands back the best K rows directly instead of every row that shares
+ * a trigram with the term. Email columns are matched by prefix on a
+ * {@code text_pattern_ops} index instead: addresses are too alike for trigrams to
+ * tell them apart cheaply. The candidates are merged, rows too far from the term
+ * are dropped and the closest K are kept.
+ */
+class TextSearch {
+    // Word similarity of at least 0.4 still catches a swapped or missing letter. The <% operator prunes
+    // with pg_trgm.word_similarity_threshold, which DatabaseConnection sets to the same 0.4 on every connection
+    private static final double MAX_DISTANCE = 0.6;
+
+    private final String term;
+    private final int limit;
+    private final List<Object> parameters = new ArrayList<>();
+
+    TextSearch(String term, int limit) {
+        this.term = term.trim();
+        this.limit = limit;
+    }
+
+    boolean isBlank() {
+        return term.isEmpty();
+    }
+
+    // The K rows of table nearest the term on column, with the distance in a "distance" column
+    String nearest(String columns, String table, String column) {
+        parameters.add(term);
+        parameters.add(term);
+        return "(SELECT " + columns + ", ? <<-> " + column + " AS distance FROM " + table +
+                " WHERE ? <% " + column + " ORDER BY distance " + limit() + ")";
+    }
+
+    // The first K rows of table whose column starts with the term, case-insensitively; columns must include column
+    String prefix(String columns, String table, String column) {
+        parameters.add(term);
+        parameters.add(term);
+        parameters.add(term);
+        // Explicit bounds and the ~<~ ordering keep the index usable once the driver switches to a generic plan
+        return "(SELECT " + columns + ", ? <<-> " + column + " AS distance FROM (" +
+                "SELECT " + columns + " FROM " + table +
+                " WHERE lower(" + column + ") ~>=~ lower(?) AND lower(" + column + ") ~<~ (lower(?) || chr(1114111))" +
+                " ORDER BY lower(" + column + ") USING ~<~ " + limit() + ") prefixed)";
+    }
+
+    String limit() {
+        parameters.add(limit);
+        return "LIMIT ?";
+    }
+
+    // Merges candidate queries that all return columns plus distance; columns must include id and name
+    String best(String columns, String... candidates) {
+        String sql = "SELECT " + columns + " FROM (" +
+                "SELECT DISTINCT ON (id) " + columns + ", distance FROM (" +
+                String.join(" UNION ALL ", candidates) +
+                ") candidates ORDER BY id, distance) best " +
+                "WHERE distance <= ? ORDER BY distance, name, id LIMIT ?";
+        parameters.add(MAX_DISTANCE);
+        parameters.add(limit);
+        return sql;
+    }
+
+    // Prepares sql with the collected parameters bound
+    PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql);
+        for (int i = 0; i < parameters.size(); i++) {
+            ps.setObject(i + 1, parameters.get(i));
+        }
+        return ps;
+    }
+}
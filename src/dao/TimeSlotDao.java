@@ -1,89 +1,138 @@
 package dao;
 
+import database.ChangeFeed.Operation;
 import database.DatabaseConnection;
+import database.Metrics;
 import model.TimeSlot;
 
 import java.sql.*;
-import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class TimeSlotDao {
-    public void add(TimeSlot timeSlot) throws SQLException, ClassNotFoundException {
-        String sql = "INSERT INTO timeslots (start_time, end_time) VALUES (?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setTime(1, Time.valueOf(timeSlot.getStartTime()));
-            stmt.setTime(2, Time.valueOf(timeSlot.getEndTime()));
-            stmt.executeUpdate();
+    private static final ReferenceCache<TimeSlot> CACHE = new ReferenceCache<>("timeslots");
+    // Column order here is what mapRow reads by index
+    private static final String SELECT_COLUMNS = "SELECT id, start_time, end_time FROM timeslots";
+    private static final String RETURNING_COLUMNS = " RETURNING id, start_time, end_time";
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    timeSlot.setId(generatedKeys.getLong(1));
-                }
+    // Returns the stored row; the generated id is also set on the slot passed in
+    public TimeSlot add(TimeSlot timeSlot) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TimeSlotDao.add", () -> {
+            String sql = "INSERT INTO timeslots (start_time, end_time) VALUES (?, ?)" + RETURNING_COLUMNS;
+            TimeSlot added;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+                stmt.setTime(1, Time.valueOf(timeSlot.getStartTime()));
+                stmt.setTime(2, Time.valueOf(timeSlot.getEndTime()));
+                added = returnedRow(stmt);
             }
-        }
+            timeSlot.setId(added.getId());
+            CACHE.invalidate();
+            ChangeEvents.inserted(ChangeEvents.TIMESLOTS, added);
+            return added;
+        });
     }
 
-    public void update(TimeSlot timeSlot) throws SQLException, ClassNotFoundException {
-        String sql = "UPDATE timeslots SET start_time = ?, end_time = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Returns the row as stored, or null if it no longer exists
+    public TimeSlot update(TimeSlot timeSlot) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TimeSlotDao.update", () -> {
+            String sql = "UPDATE timeslots SET start_time = ?, end_time = ? WHERE id = ?" + RETURNING_COLUMNS;
+            TimeSlot updated;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setTime(1, Time.valueOf(timeSlot.getStartTime()));
-            stmt.setTime(2, Time.valueOf(timeSlot.getEndTime()));
-            stmt.setLong(3, timeSlot.getId());
-            stmt.executeUpdate();
-        }
+                stmt.setTime(1, Time.valueOf(timeSlot.getStartTime()));
+                stmt.setTime(2, Time.valueOf(timeSlot.getEndTime()));
+                stmt.setLong(3, timeSlot.getId());
+                updated = returnedRow(stmt);
+            } catch (SQLException e) {
+                // New times that would double-book a room or teacher booked into this slot
+                throw ClassScheduleDao.clashMessage(e);
+            }
+            CACHE.invalidate();
+            if (updated != null) {
+                ChangeEvents.updated(ChangeEvents.TIMESLOTS, updated);
+                // Schedules in this slot now occupy different times
+                ClassScheduleDao.schedulesCascaded(Operation.UPDATE);
+            }
+            return updated;
+        });
     }
 
-    public void delete(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "DELETE FROM timeslots WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Whether the row was still there to delete
+    public boolean delete(Long id) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TimeSlotDao.delete", () -> {
+            String sql = "DELETE FROM timeslots WHERE id = ?";
+            int deleted;
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setLong(1, id);
-            stmt.executeUpdate();
-        }
+                stmt.setLong(1, id);
+                deleted = stmt.executeUpdate();
+            }
+            CACHE.invalidate();
+            if (deleted > 0) {
+                ChangeEvents.deleted(ChangeEvents.TIMESLOTS, id);
+                // Schedules of this row went with it (ON DELETE CASCADE)
+                ClassScheduleDao.schedulesCascaded(Operation.DELETE);
+            }
+            return deleted > 0;
+        });
     }
 
     public TimeSlot getById(Long id) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT * FROM timeslots WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        return Metrics.time("TimeSlotDao.getById", () -> {
+            String sql = SELECT_COLUMNS + " WHERE id = ?";
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setLong(1, id);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapRow(rs);
+                stmt.setLong(1, id);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return mapRow(rs);
+                    }
                 }
             }
-        }
-        return null;
+            return null;
+        });
     }
 
+    // Served from the shared cache; the returned list is read-only
     public List<TimeSlot> getAll() throws SQLException, ClassNotFoundException {
-        List<TimeSlot> timeSlots = new ArrayList<>();
-        String sql = "SELECT * FROM timeslots ORDER BY start_time";
+        return Metrics.time("TimeSlotDao.getAll", () -> CACHE.get(this::queryAll));
+    }
+
+    public void getAll(Consumer<TimeSlot> consumer) throws SQLException, ClassNotFoundException {
+        getAll().forEach(consumer);
+    }
+
+    private List<TimeSlot> queryAll() throws SQLException, ClassNotFoundException {
+        String sql = SELECT_COLUMNS + " ORDER BY start_time";
+        List<TimeSlot> rows = new ArrayList<>();
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
-                timeSlots.add(mapRow(rs));
+                rows.add(mapRow(rs));
             }
         }
-        return timeSlots;
+        return rows;
+    }
+
+    private TimeSlot returnedRow(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? mapRow(rs) : null;
+        }
     }
 
     private TimeSlot mapRow(ResultSet rs) throws SQLException {
-        TimeSlot timeSlot = new TimeSlot();
-        timeSlot.setId(rs.getLong("id"));
-        Time startTime = rs.getTime("start_time");
-        Time endTime = rs.getTime("end_time");
-        timeSlot.setStartTime(startTime.toLocalTime());
-        timeSlot.setEndTime(endTime.toLocalTime());
-        return timeSlot;
+        return new TimeSlot(
+            rs.getLong(1),
+            rs.getTime(2).toLocalTime(),
+            rs.getTime(3).toLocalTime()
+        );
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,216 @@
+package dao;
+
+import database.DatabaseConnection;
+import database.Metrics;
+import database.StatementCache;
+import model.CohortGpa;
+import model.TermGpa;
+import model.Transcript;
+import model.TranscriptEntry;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Transcripts and GPAs, read from student_term_gpa: one stored row per student and
+ * semester holding the credit-weighted grade points, with the GPA as a generated
+ * column. The rows are never re-aggregated on read. EnrollmentDao and CourseDao
+ * refresh the rows a write touches in the write's own transaction, and
+ * {@link #rebuild()} recomputes them all in one set-based pass.
+ */
+public class TranscriptDao {
+    private static final int FETCH_SIZE = 1000;
+    // Column order here is what mapTerm reads by index
+    private static final String SELECT_TERMS =
+            "SELECT t.student_id, s.name, t.semester, t.credits, t.quality_points, t.gpa " +
+            "FROM student_term_gpa t JOIN students s ON s.id = t.student_id ";
+    // Lookups whose plans QueryPlans checks at startup; the hot ones are prepared on the server on first use
+    static final String FIND_TERMS_BY_STUDENT =
+            StatementCache.onServer(SELECT_TERMS + "WHERE t.student_id = ? ORDER BY t.semester");
+    static final String FIND_ENTRIES_BY_STUDENT =
+            StatementCache.onServer("SELECT e.semester, c.name, c.credit, e.grade, g.points " +
+            "FROM enrollments e " +
+            "JOIN courses c ON c.id = e.course_id " +
+            "LEFT JOIN grade_points g ON g.grade = e.grade " +
+            "WHERE e.student_id = ? ORDER BY e.semester, c.name");
+    static final String DEANS_LIST = SELECT_TERMS +
+            "WHERE t.semester = ? AND t.gpa >= ? AND t.credits >= ? ORDER BY t.gpa DESC, t.student_id";
+
+    // The terms to refresh are every semester in the second array for every student in the first. Filtering
+    // on the view's grouping columns with constant arrays lets Postgres push the filter below its GROUP BY,
+    // so only those students' enrollments are read; a join or LATERAL against the pairs would not be pushed.
+    // Writers refreshing the same student are serialized on the student's row first, in id order so two of them
+    // cannot deadlock, so the second one's refresh reads the first one's committed enrollments. NO KEY UPDATE
+    // does not conflict with the KEY SHARE lock an enrollment insert's foreign key check takes.
+    private static final String REFRESH_LOCK =
+            "SELECT id FROM students WHERE id = ANY(%1$s) AND cardinality(%2$s) > 0 ORDER BY id FOR NO KEY UPDATE";
+    // Upserted rather than deleted and re-inserted: under READ COMMITTED a DELETE cannot see a term row another
+    // writer has just inserted, so the INSERT after it would fail on the primary key
+    private static final String REFRESH_UPSERT =
+            "INSERT INTO student_term_gpa (student_id, semester, credits, quality_points) " +
+            "SELECT student_id, semester, credits, quality_points FROM student_term_grades " +
+            "WHERE student_id = ANY(%1$s) AND semester = ANY(%2$s) " +
+            "ON CONFLICT (student_id, semester) DO UPDATE " +
+            "SET credits = EXCLUDED.credits, quality_points = EXCLUDED.quality_points";
+    // Terms left with no graded enrollment at all
+    private static final String REFRESH_DELETE_EMPTY =
+            "DELETE FROM student_term_gpa WHERE student_id = ANY(%1$s) AND semester = ANY(%2$s) " +
+            "AND (student_id, semester) NOT IN (SELECT student_id, semester FROM student_term_grades " +
+            "WHERE student_id = ANY(%1$s) AND semester = ANY(%2$s))";
+    private static final String[] LISTED_TERMS = {"?::bigint[]", "?::varchar[]"};
+    private static final String[] COURSE_TERMS = {
+        "ARRAY(SELECT student_id FROM enrollments WHERE course_id = ?)",
+        "ARRAY(SELECT DISTINCT semester FROM enrollments WHERE course_id = ?)"
+    };
+
+    // Binds the two term arrays' parameters starting at the given index
+    private interface Parameters {
+        void bind(PreparedStatement ps, int first) throws SQLException;
+    }
+
+    // Recomputes the stored GPAs of these students' terms; runs on the caller's connection so it commits with the write
+    static void refresh(Connection conn, Long[] studentIds, String[] semesters) throws SQLException {
+        refresh(conn, LISTED_TERMS, (ps, first) -> {
+            ps.setArray(first, conn.createArrayOf("bigint", studentIds));
+            ps.setArray(first + 1, conn.createArrayOf("varchar", semesters));
+        });
+    }
+
+    // Recomputes every term that includes the course, e.g. after its credits changed
+    static void refreshCourse(Connection conn, Long courseId) throws SQLException {
+        refresh(conn, COURSE_TERMS, (ps, first) -> {
+            ps.setLong(first, courseId);
+            ps.setLong(first + 1, courseId);
+        });
+    }
+
+    private static void refresh(Connection conn, String[] terms, Parameters parameters) throws SQLException {
+        try (PreparedStatement lock = conn.prepareStatement(String.format(REFRESH_LOCK, terms[0], terms[1]));
+             PreparedStatement upsert = conn.prepareStatement(String.format(REFRESH_UPSERT, terms[0], terms[1]));
+             PreparedStatement delete = conn.prepareStatement(
+                     String.format(REFRESH_DELETE_EMPTY, terms[0], terms[1]))) {
+            parameters.bind(lock, 1);
+            lock.executeQuery().close();
+            parameters.bind(upsert, 1);
+            upsert.executeUpdate();
+            parameters.bind(delete, 1);
+            parameters.bind(delete, 3);
+            delete.executeUpdate();
+        }
+    }
+
+    // Recomputes every stored term GPA in one pass over the enrollments, e.g. after a bulk load outside the app
+    public int rebuild() throws SQLException, ClassNotFoundException {
+        return Metrics.time("TranscriptDao.rebuild", () -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM student_term_gpa");
+                    int rows = stmt.executeUpdate("INSERT INTO student_term_gpa (student_id, semester, credits, quality_points) " +
+                            "SELECT student_id, semester, credits, quality_points FROM student_term_grades");
+                    conn.commit();
+                    return rows;
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        });
+    }
+
+    public Transcript getTranscript(Long studentId) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TranscriptDao.getTranscript", () -> {
+            List<TranscriptEntry> entries = new ArrayList<>();
+            List<TermGpa> terms = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                try (PreparedStatement ps = conn.prepareStatement(FIND_ENTRIES_BY_STUDENT)) {
+                    ps.setLong(1, studentId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            double points = rs.getDouble(5);
+                            entries.add(new TranscriptEntry(
+                                rs.getString(1),
+                                rs.getString(2),
+                                rs.getString(3),
+                                rs.getString(4),
+                                rs.wasNull() ? null : points
+                            ));
+                        }
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(FIND_TERMS_BY_STUDENT)) {
+                    ps.setLong(1, studentId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            terms.add(mapTerm(rs));
+                        }
+                    }
+                }
+            }
+            return new Transcript(studentId, entries, terms);
+        });
+    }
+
+    public List<TermGpa> getDeansList(String semester, double minGpa, double minCredits)
+            throws SQLException, ClassNotFoundException {
+        List<TermGpa> list = new ArrayList<>();
+        getDeansList(semester, minGpa, minCredits, list::add);
+        return list;
+    }
+
+    // Streams the semester's students with at least minGpa over at least minCredits, best first, off the (semester, gpa) index
+    public void getDeansList(String semester, double minGpa, double minCredits, Consumer<TermGpa> consumer)
+            throws SQLException, ClassNotFoundException {
+        Metrics.run("TranscriptDao.getDeansList", () -> {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                // The Postgres driver only honours the fetch size inside a transaction
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(DEANS_LIST)) {
+                    ps.setFetchSize(FETCH_SIZE);
+                    ps.setString(1, semester);
+                    ps.setDouble(2, minGpa);
+                    ps.setDouble(3, minCredits);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            consumer.accept(mapTerm(rs));
+                        }
+                    }
+                }
+                conn.commit();
+            }
+        });
+    }
+
+    // Per-semester head count, mean term GPA and dean's list size, in one pass over the stored GPAs
+    public List<CohortGpa> getCohorts(double minGpa, double minCredits) throws SQLException, ClassNotFoundException {
+        return Metrics.time("TranscriptDao.getCohorts", () -> {
+            String sql = "SELECT semester, count(*), avg(gpa), count(*) FILTER (WHERE gpa >= ? AND credits >= ?) " +
+                    "FROM student_term_gpa GROUP BY semester ORDER BY semester";
+            List<CohortGpa> cohorts = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setDouble(1, minGpa);
+                ps.setDouble(2, minCredits);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        cohorts.add(new CohortGpa(rs.getString(1), rs.getInt(2), rs.getDouble(3), rs.getInt(4)));
+                    }
+                }
+            }
+            return cohorts;
+        });
+    }
+
+    private TermGpa mapTerm(ResultSet rs) throws SQLException {
+        return new TermGpa(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getDouble(4),
+            rs.getDouble(5),
+            rs.getDouble(6)
+        );
+    }
+}
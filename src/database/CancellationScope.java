@@ -0,0 +1,74 @@
+package database;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets another thread abort the queries a piece of work is running. While the
+ * work runs inside {@link #run}, every statement its thread creates on a pooled
+ * connection is registered here, and {@link #cancel()} asks the server to cancel
+ * whichever of them is still executing, so the blocked JDBC call fails right away
+ * instead of running to completion. The DAOs need no changes for this.
+ */
+public class CancellationScope {
+    // SQLSTATE the server reports for a cancelled statement
+    public static final String QUERY_CANCELED = "57014";
+
+    private static final ThreadLocal<CancellationScope> CURRENT = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run() throws SQLException, ClassNotFoundException;
+    }
+
+    private final List<Statement> statements = new ArrayList<>();
+    private boolean cancelled;
+
+    public <T> T run(Work<T> work) throws SQLException, ClassNotFoundException {
+        CancellationScope outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.run();
+        } finally {
+            CURRENT.set(outer);
+            synchronized (this) {
+                statements.clear();
+            }
+        }
+    }
+
+    public void cancel() {
+        List<Statement> running;
+        synchronized (this) {
+            cancelled = true;
+            running = new ArrayList<>(statements);
+        }
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException ignored) {
+                // Already finished or closed, nothing left to stop
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Called by TrackedConnection for each statement it creates; fails if the scope was already cancelled
+    static void register(Statement statement) throws SQLException {
+        CancellationScope scope = CURRENT.get();
+        if (scope == null) {
+            return;
+        }
+        synchronized (scope) {
+            if (scope.cancelled) {
+                throw new SQLException("Query cancelled", QUERY_CANCELED);
+            }
+            scope.statements.add(statement);
+        }
+    }
+}
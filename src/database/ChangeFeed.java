@@ -0,0 +1,185 @@
+package database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Row changes made by other clients, as they happen. Triggers on the college
+ * tables (migration 7) send one NOTIFY per statement on {@link #CHANNEL} with a
+ * compact payload: the table, the first letter of the operation and the ids it
+ * touched, e.g. "enrollments U 17,18", or "*" in place of the ids when the
+ * statement touched too many rows to list. One daemon thread per client holds an
+ * unpooled connection that LISTENs on the channel and hands each change to the
+ * listeners of its table, on that thread; GUI listeners move to the EDT
+ * themselves. Changes made through this client's own pool are skipped, since the
+ * DAOs and panels have already applied them. After a lost connection every table
+ * is reported as wholly changed, because notifications sent meanwhile are gone.
+ */
+public final class ChangeFeed {
+    public static final String CHANNEL = "cms_changes";
+    public static final List<String> TABLES = List.of(
+            "departments", "students", "teachers", "courses", "rooms", "timeslots", "enrollments", "class_schedules");
+    // How long one wait for notifications blocks, which bounds how quickly stop() is noticed
+    private static final int POLL_MILLIS = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 5_000;
+
+    private static final Map<String, List<Consumer<Change>>> LISTENERS = new ConcurrentHashMap<>();
+    private static Thread thread;
+    // The running thread's own flag, so a thread stopped but still waiting out a poll stays stopped after a restart
+    private static AtomicBoolean running;
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE, TRUNCATE
+    }
+
+    public static final class Change {
+        private final String table;
+        private final Operation operation;
+        // Empty when the whole table may have changed
+        private final List<Long> ids;
+
+        public Change(String table, Operation operation, List<Long> ids) {
+            this.table = table;
+            this.operation = operation;
+            this.ids = Collections.unmodifiableList(ids);
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        // True when the ids are not known and anything in the table may have changed
+        public boolean isWholeTable() {
+            return ids.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return table + " " + operation + " " + (ids.isEmpty() ? "*" : ids.toString());
+        }
+    }
+
+    private ChangeFeed() {
+    }
+
+    // Listeners run on the feed thread and must not block it for long
+    public static void subscribe(String table, Consumer<Change> listener) {
+        LISTENERS.computeIfAbsent(table, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public static synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        AtomicBoolean flag = new AtomicBoolean(true);
+        running = flag;
+        thread = new Thread(() -> listen(flag), "cms-change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Returns at once; the old thread finishes its current wait and exits without dispatching anything more
+    public static synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        running.set(false);
+        thread.interrupt();
+        running = null;
+        thread = null;
+    }
+
+    // Parses a trigger payload: "<table> <I|U|D|T> <id,id,...|*>"
+    static Change parse(String payload) {
+        String[] parts = payload.split(" ", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed change notification: " + payload);
+        }
+        Operation operation = switch (parts[1]) {
+            case "I" -> Operation.INSERT;
+            case "U" -> Operation.UPDATE;
+            case "D" -> Operation.DELETE;
+            case "T" -> Operation.TRUNCATE;
+            default -> throw new IllegalArgumentException("Unknown operation in change notification: " + payload);
+        };
+        List<Long> ids = new ArrayList<>();
+        if (!parts[2].equals("*")) {
+            for (String id : parts[2].split(",")) {
+                ids.add(Long.parseLong(id));
+            }
+        }
+        return new Change(parts[0], operation, ids);
+    }
+
+    private static void listen(AtomicBoolean running) {
+        boolean missedChanges = false;
+        while (running.get()) {
+            try (Connection conn = DatabaseConnection.getPool().openUnpooled()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                if (missedChanges) {
+                    for (String table : TABLES) {
+                        dispatch(new Change(table, Operation.UPDATE, List.of()));
+                    }
+                    missedChanges = false;
+                }
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                ConnectionPool pool = DatabaseConnection.getPool();
+                while (running.get()) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        if (running.get() && !pool.ownsBackend(notification.getPID())) {
+                            dispatch(parse(notification.getParameter()));
+                        }
+                    }
+                }
+            } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+                if (!running.get()) {
+                    return;
+                }
+                System.err.println("Change feed lost its connection, retrying in "
+                        + RECONNECT_DELAY_MILLIS + " ms: " + e.getMessage());
+                missedChanges = true;
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void dispatch(Change change) {
+        for (Consumer<Change> listener : LISTENERS.getOrDefault(change.getTable(), List.of())) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                System.err.println("Change listener failed on " + change + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package database;
+
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded JDBC connection pool. Connections handed out are proxies whose
+ * {@code close()} returns the physical connection to the pool, so callers keep
+ * using try-with-resources exactly as they would with DriverManager.
+ * Connections held longer than the leak threshold are reported together with
+ * the stack that acquired them. Each physical connection keeps up to
+ * statementCacheSize prepared statements open for reuse (0 turns that off).
+ * Session settings are sent with the startup packet of every physical
+ * connection, so they hold for every borrower without a round trip of their own.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 500;
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 30_000;
+
+    private final String url;
+    private final Properties properties = new Properties();
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    // One permit per connection that may be lent out at the same time
+    private final Semaphore permits;
+    // Most recently returned connection first, so hot connections stay hot and cold ones age out
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Map<TrackedConnection, PooledConnection> borrowed = new ConcurrentHashMap<>();
+    // Server process ids of the open physical connections, so a NOTIFY this client caused can be recognised
+    private final Set<Integer> backendPids = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String username, String password,
+                          int minSize, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                          int statementCacheSize, Map<String, String> sessionSettings) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        if (!sessionSettings.isEmpty()) {
+            properties.setProperty("options", startupOptions(sessionSettings));
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cms-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0,
+                HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis
+                        + " ms waiting for a database connection (" + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = pollIdle()) != null) {
+                if (isUsable(pooled)) {
+                    return lend(pooled);
+                }
+                pooled.closeQuietly();
+            }
+            return lend(new PooledConnection(open()));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // A connection outside the pool, for a caller that holds one session open for good, e.g. to LISTEN
+    public Connection openUnpooled() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        return open();
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection(url, properties);
+    }
+
+    // The server reads "-c name=value" pairs from the options startup parameter; spaces in a value need escaping
+    private static String startupOptions(Map<String, String> settings) {
+        StringBuilder options = new StringBuilder();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (options.length() > 0) {
+                options.append(' ');
+            }
+            options.append("-c ").append(setting.getKey()).append('=')
+                    .append(setting.getValue().replace("\\", "\\\\").replace(" ", "\\ "));
+        }
+        return options.toString();
+    }
+
+    // Whether the server process with this id serves one of this pool's connections
+    public boolean ownsBackend(int pid) {
+        return backendPids.contains(pid);
+    }
+
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        synchronized (idle) {
+            idle.forEach(PooledConnection::closeQuietly);
+            idle.clear();
+        }
+    }
+
+    private Connection lend(PooledConnection pooled) {
+        TrackedConnection tracked = new TrackedConnection(pooled.physical, pooled.statements, this::release,
+                leakThresholdMillis > 0);
+        borrowed.put(tracked, pooled);
+        return tracked.getProxy();
+    }
+
+    private void release(TrackedConnection tracked) {
+        PooledConnection pooled = borrowed.remove(tracked);
+        if (pooled == null) {
+            return;
+        }
+        try {
+            if (closed || !reset(pooled.physical)) {
+                pooled.closeQuietly();
+                return;
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Undo whatever the borrower left behind; a connection that can't be reset is discarded
+    private boolean reset(Connection conn) {
+        try {
+            if (conn.isClosed()) {
+                return false;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (conn.isReadOnly()) {
+                conn.setReadOnly(false);
+            }
+            conn.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    // Connections used moments ago are trusted; anything older gets a round trip before reuse
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < VALIDATE_AFTER_IDLE_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            reportLeaks();
+        } catch (RuntimeException e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        synchronized (idle) {
+            // Oldest connections sit at the tail
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() + borrowed.size() > minSize) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsed < idleTimeoutMillis) {
+                    break;
+                }
+                it.remove();
+                pooled.closeQuietly();
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && getIdleCount() + borrowed.size() < minSize) {
+            try {
+                PooledConnection pooled = new PooledConnection(open());
+                synchronized (idle) {
+                    idle.addLast(pooled);
+                }
+            } catch (SQLException e) {
+                System.err.println("Could not open pooled connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void reportLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (TrackedConnection tracked : borrowed.keySet()) {
+            if (tracked.getHeldMillis(now) > leakThresholdMillis && tracked.markReported()) {
+                tracked.report(now);
+            }
+        }
+    }
+
+    private class PooledConnection {
+        private final Connection physical;
+        private final int backendPid;
+        private final StatementCache statements;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+            this.backendPid = physical.unwrap(PGConnection.class).getBackendPID();
+            backendPids.add(backendPid);
+        }
+
+        private void closeQuietly() {
+            backendPids.remove(backendPid);
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // Already broken, nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.SplittableRandom;
+
+/**
+ * Fills the database with a synthetic college for scale testing. Every table is
+ * streamed in with COPY and drawn from its own random stream derived from one
+ * seed, so the same seed and sizes always produce the same data. Existing college
+ * data is replaced.
+ *
+ * <pre>
+ * java -cp target/college-management-system.jar:target/lib/* database.DataGenerator students=500000 enrollments=5000000 seed=7
+ * </pre>
+ */
+public class DataGenerator {
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final String[] FIRST_NAMES = {
+        "Aarav", "Sita", "Ram", "Gita", "Hari", "Anita", "Bikash", "Priya", "Suman", "Nisha",
+        "Rohan", "Asha", "Kiran", "Maya", "Dipak", "Sarita", "Arjun", "Puja", "Nabin", "Rita"
+    };
+    private static final String[] LAST_NAMES = {
+        "Sharma", "Thapa", "Gurung", "Shrestha", "Rai", "Tamang", "Magar", "Karki", "Adhikari", "Bista",
+        "Khadka", "Poudel", "Bhandari", "Lama", "Joshi", "Basnet", "Maharjan", "Pandey", "Acharya", "Bisunkhe"
+    };
+    private static final String[] SUBJECTS = {
+        "Calculus", "Physics", "Chemistry", "Biology", "Programming", "Databases", "Networks", "Economics",
+        "Accounting", "Statistics", "Literature", "History", "Philosophy", "Algorithms", "Electronics", "Ethics"
+    };
+    private static final String[] SEMESTERS = {
+        "First Semester", "Second Semester", "Third Semester", "Fourth Semester",
+        "Fifth Semester", "Sixth Semester", "Seventh Semester", "Eighth Semester"
+    };
+    private static final String[] GRADES = {"A", "A-", "B+", "B", "B-", "C+", "C", "D", "F"};
+    private static final LocalTime FIRST_SLOT = LocalTime.of(7, 0);
+    private static final int SLOT_STEP_MINUTES = 15;
+    private static final int SLOT_MINUTES = 90;
+
+    private long seed = 42;
+    private int departments = 20;
+    private int students = 10_000;
+    private int teachers = 500;
+    private int courses = 400;
+    private int rooms = 100;
+    private int timeSlots = 20;
+    private long enrollments = 50_000;
+    private int schedules = 1_000;
+
+    public DataGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public DataGenerator departments(int departments) {
+        this.departments = departments;
+        return this;
+    }
+
+    public DataGenerator students(int students) {
+        this.students = students;
+        return this;
+    }
+
+    public DataGenerator teachers(int teachers) {
+        this.teachers = teachers;
+        return this;
+    }
+
+    public DataGenerator courses(int courses) {
+        this.courses = courses;
+        return this;
+    }
+
+    public DataGenerator rooms(int rooms) {
+        this.rooms = rooms;
+        return this;
+    }
+
+    // Slots are 90 minutes long and start every 15 minutes from 07:00, so at most 53 fit in a day. Slots
+    // less than 90 minutes apart overlap, and no room or teacher is booked into two of those.
+    public DataGenerator timeSlots(int timeSlots) {
+        this.timeSlots = timeSlots;
+        return this;
+    }
+
+    public DataGenerator enrollments(long enrollments) {
+        this.enrollments = enrollments;
+        return this;
+    }
+
+    public DataGenerator schedules(int schedules) {
+        this.schedules = schedules;
+        return this;
+    }
+
+    public void generate() throws SQLException, ClassNotFoundException {
+        if (departments < 1 || students < 1 || teachers < 1 || courses < 1 || rooms < 1
+                || timeSlots < 1 || timeSlots > 53) {
+            throw new IllegalArgumentException("Every table needs at least one row and at most 53 timeslots");
+        }
+        long start = System.currentTimeMillis();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("TRUNCATE class_schedules, enrollments, courses, teachers, students, departments, " +
+                        "rooms, timeslots RESTART IDENTITY CASCADE");
+            }
+            PGConnection pg = conn.unwrap(PGConnection.class);
+            // Ids come out of the freshly restarted sequences as 1..n in COPY order
+            copyDepartments(pg);
+            copyStudents(pg);
+            copyTeachers(pg);
+            copyCourses(pg);
+            copyRooms(pg);
+            copyTimeSlots(pg);
+            copyEnrollments(pg);
+            copySchedules(pg);
+            deriveTermGpas(conn);
+            conn.commit();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+        }
+        System.out.println("Generated synthetic college (seed " + seed + ") in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void copyDepartments(PGConnection pg) throws SQLException {
+        try (CopyWriter out = new CopyWriter(pg, "departments (name)")) {
+            for (int i = 1; i <= departments; i++) {
+                out.field("Department of " + SUBJECTS[(i - 1) % SUBJECTS.length] + " " + i).endRow();
+            }
+        }
+    }
+
+    private void copyStudents(PGConnection pg) throws SQLException {
+        SplittableRandom random = random(1);
+        LocalDate earliest = LocalDate.of(1995, 1, 1);
+        try (CopyWriter out = new CopyWriter(pg, "students (name, dob, email)")) {
+            for (int i = 1; i <= students; i++) {
+                String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                out.field(first + " " + last)
+                   .field(earliest.plusDays(random.nextInt(12 * 365)).toString())
+                   .field(first.toLowerCase() + "." + last.toLowerCase() + i + "@students.college.edu")
+                   .endRow();
+            }
+        }
+    }
+
+    private void copyTeachers(PGConnection pg) throws SQLException {
+        SplittableRandom random = random(2);
+        try (CopyWriter out = new CopyWriter(pg, "teachers (name, email)")) {
+            for (int i = 1; i <= teachers; i++) {
+                String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                out.field(first + " " + last)
+                   .field(first.toLowerCase() + "." + last.toLowerCase() + i + "@college.edu")
+                   .endRow();
+            }
+        }
+    }
+
+    private void copyCourses(PGConnection pg) throws SQLException {
+        SplittableRandom random = random(3);
+        try (CopyWriter out = new CopyWriter(pg, "courses (name, credit, dept_id)")) {
+            for (int i = 1; i <= courses; i++) {
+                out.field(SUBJECTS[random.nextInt(SUBJECTS.length)] + " " + (100 + i))
+                   .field(String.valueOf(2 + random.nextInt(3)))
+                   .field(String.valueOf(1 + random.nextInt(departments)))
+                   .endRow();
+            }
+        }
+    }
+
+    private void copyRooms(PGConnection pg) throws SQLException {
+        SplittableRandom random = random(4);
+        try (CopyWriter out = new CopyWriter(pg, "rooms (room_number, capacity)")) {
+            for (int i = 1; i <= rooms; i++) {
+                out.field("R" + i).field(String.valueOf(20 + random.nextInt(61))).endRow();
+            }
+        }
+    }
+
+    private void copyTimeSlots(PGConnection pg) throws SQLException {
+        try (CopyWriter out = new CopyWriter(pg, "timeslots (start_time, end_time)")) {
+            for (int i = 0; i < timeSlots; i++) {
+                out.field(slotStart(i).toString()).field(slotStart(i).plusMinutes(SLOT_MINUTES).toString()).endRow();
+            }
+        }
+    }
+
+    private static LocalTime slotStart(int slot) {
+        return FIRST_SLOT.plusMinutes((long) SLOT_STEP_MINUTES * slot);
+    }
+
+    // Spreads the enrollments evenly over the students, each taking distinct courses
+    private void copyEnrollments(PGConnection pg) throws SQLException {
+        SplittableRandom random = random(5);
+        long perStudent = enrollments / students;
+        long remainder = enrollments % students;
+        if (perStudent + (remainder > 0 ? 1 : 0) > courses) {
+            throw new IllegalArgumentException("More enrollments per student than there are courses");
+        }
+        int[] courseIds = new int[courses];
+        for (int i = 0; i < courses; i++) {
+            courseIds[i] = i + 1;
+        }
+        try (CopyWriter out = new CopyWriter(pg, "enrollments (student_id, course_id, semester, grade)")) {
+            for (int student = 1; student <= students; student++) {
+                int count = (int) (perStudent + (student <= remainder ? 1 : 0));
+                // Partial Fisher-Yates: the first count slots become a random distinct sample
+                for (int k = 0; k < count; k++) {
+                    int pick = k + random.nextInt(courses - k);
+                    int course = courseIds[pick];
+                    courseIds[pick] = courseIds[k];
+                    courseIds[k] = course;
+                    out.field(String.valueOf(student))
+                       .field(String.valueOf(course))
+                       .field(SEMESTERS[random.nextInt(SEMESTERS.length)])
+                       .field(GRADES[random.nextInt(GRADES.length)])
+                       .endRow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deals the schedules round the timeslots, giving each a room and a teacher with
+     * nothing else at an overlapping time. The slots overlap one another, so every room
+     * and teacher keeps the set of slots it is booked into as a bit mask, checked against
+     * the mask of slots that overlap the one being filled. A room or teacher that clashes
+     * with a slot keeps clashing with it, so each slot's search carries on from where its
+     * last one stopped.
+     */
+    private void copySchedules(PGConnection pg) throws SQLException {
+        SplittableRandom random = random(6);
+        long[] overlapping = new long[timeSlots];
+        for (int a = 0; a < timeSlots; a++) {
+            for (int b = 0; b < timeSlots; b++) {
+                if (Math.abs(a - b) * SLOT_STEP_MINUTES < SLOT_MINUTES) {
+                    overlapping[a] |= 1L << b;
+                }
+            }
+        }
+        long[] roomSlots = new long[rooms];
+        long[] teacherSlots = new long[teachers];
+        int[] nextRoom = new int[timeSlots];
+        int[] nextTeacher = new int[timeSlots];
+        int[][] teacherOrder = new int[timeSlots][];
+        int count = 0;
+        try (CopyWriter out = new CopyWriter(pg, "class_schedules (course_id, teacher_id, timeslot_id, room_id)")) {
+            boolean booked = true;
+            while (count < schedules && booked) {
+                booked = false;
+                for (int slot = 0; slot < timeSlots && count < schedules; slot++) {
+                    if (teacherOrder[slot] == null) {
+                        teacherOrder[slot] = shuffledIds(teachers, random);
+                    }
+                    while (nextRoom[slot] < rooms && (roomSlots[nextRoom[slot]] & overlapping[slot]) != 0) {
+                        nextRoom[slot]++;
+                    }
+                    int[] order = teacherOrder[slot];
+                    while (nextTeacher[slot] < teachers
+                            && (teacherSlots[order[nextTeacher[slot]] - 1] & overlapping[slot]) != 0) {
+                        nextTeacher[slot]++;
+                    }
+                    if (nextRoom[slot] == rooms || nextTeacher[slot] == teachers) {
+                        continue;
+                    }
+                    int room = nextRoom[slot];
+                    int teacher = order[nextTeacher[slot]] - 1;
+                    roomSlots[room] |= 1L << slot;
+                    teacherSlots[teacher] |= 1L << slot;
+                    out.field(String.valueOf(1 + random.nextInt(courses)))
+                       .field(String.valueOf(teacher + 1))
+                       .field(String.valueOf(slot + 1))
+                       .field(String.valueOf(room + 1))
+                       .endRow();
+                    count++;
+                    booked = true;
+                }
+            }
+        }
+        if (count < schedules) {
+            System.out.println("Only " + count + " schedules fit in " + timeSlots + " overlapping timeslots");
+        }
+    }
+
+    // The stored term GPAs are derived from the enrollments in one set-based pass rather than copied in
+    private void deriveTermGpas(Connection conn) throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement()) {
+            int rows = stmt.executeUpdate("INSERT INTO student_term_gpa (student_id, semester, credits, quality_points) " +
+                    "SELECT student_id, semester, credits, quality_points FROM student_term_grades");
+            System.out.println("  student_term_gpa: " + rows + " rows in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private SplittableRandom random(int table) {
+        // One stream per table, so resizing one table leaves the others unchanged
+        return new SplittableRandom(seed * 31 + table);
+    }
+
+    private static int[] shuffledIds(int n, SplittableRandom random) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+    // Buffers rows in COPY text format and streams them to the server in large chunks
+    private static class CopyWriter implements AutoCloseable {
+        private final String table;
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+        private final long start = System.currentTimeMillis();
+        private boolean firstField = true;
+        private long rows;
+
+        private CopyWriter(PGConnection pg, String target) throws SQLException {
+            this.table = target.substring(0, target.indexOf(' '));
+            this.copyIn = pg.getCopyAPI().copyIn("COPY " + target + " FROM STDIN");
+        }
+
+        private CopyWriter field(String value) {
+            if (!firstField) {
+                buffer.append('\t');
+            }
+            firstField = false;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> buffer.append("\\\\");
+                    case '\t' -> buffer.append("\\t");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    default -> buffer.append(c);
+                }
+            }
+            return this;
+        }
+
+        private void endRow() throws SQLException {
+            buffer.append('\n');
+            firstField = true;
+            rows++;
+            if (buffer.length() >= COPY_BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!copyIn.isActive()) {
+                return;
+            }
+            flush();
+            copyIn.endCopy();
+            System.out.println("  " + table + ": " + rows + " rows in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    // Arguments are name=value pairs, e.g. students=500000 enrollments=5000000 seed=7
+    public static void main(String[] args) {
+        DataGenerator generator = new DataGenerator();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                System.err.println("Expected name=value but got: " + arg);
+                System.exit(2);
+            }
+            String name = arg.substring(0, eq);
+            long value = Long.parseLong(arg.substring(eq + 1).replace("_", ""));
+            switch (name) {
+                case "seed" -> generator.seed(value);
+                case "departments" -> generator.departments((int) value);
+                case "students" -> generator.students((int) value);
+                case "teachers" -> generator.teachers((int) value);
+                case "courses" -> generator.courses((int) value);
+                case "rooms" -> generator.rooms((int) value);
+                case "timeslots" -> generator.timeSlots((int) value);
+                case "enrollments" -> generator.enrollments(value);
+                case "schedules" -> generator.schedules((int) value);
+                default -> {
+                    System.err.println("Unknown setting: " + name);
+                    System.exit(2);
+                }
+            }
+        }
+        try {
+            generator.generate();
+        } catch (SQLException | ClassNotFoundException e) {
+            System.err.println("Data generation failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+}
@@ -1,16 +1,55 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
 
 public class DatabaseConnection {
-    private static final String url = "jdbc:postgresql://localhost:5432/college_db";
-    private static final String username = "postgres";
-    private static final String password = "#Aa1*****";
+    // Overridable with -Dcms.db.url / -Dcms.db.username / -Dcms.db.password, e.g. to point benchmarks at a scratch database
+    private static final String url = System.getProperty("cms.db.url", "jdbc:postgresql://localhost:5432/college_db");
+    private static final String username = System.getProperty("cms.db.username", "postgres");
+    private static final String password = System.getProperty("cms.db.password", "#Aa1*****");
+
+    // Pool settings
+    private static final int minPoolSize = 2;
+    private static final int maxPoolSize = 10;
+    private static final long acquireTimeoutMillis = 10_000;
+    private static final long idleTimeoutMillis = 5 * 60_000;
+    private static final long leakThresholdMillis = 60_000;
+    // Prepared statements kept open per connection; -Dcms.db.statementCacheSize=0 turns the cache off
+    private static final int statementCacheSize = Integer.getInteger("cms.db.statementCacheSize", 64);
+    // Set on every connection as it opens; the name searches lean on this threshold to let the <% operator prune rows
+    private static final Map<String, String> sessionSettings = Map.of("pg_trgm.word_similarity_threshold", "0.4");
+
+    private static volatile ConnectionPool pool;
 
     public static Connection getConnection() throws SQLException, ClassNotFoundException {
-        Class.forName("org.postgresql.Driver");
-        return DriverManager.getConnection(url, username, password);
+        return getPool().getConnection();
+    }
+
+    public static ConnectionPool getPool() throws ClassNotFoundException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseConnection.class) {
+                if (pool == null) {
+                    Class.forName("org.postgresql.Driver");
+                    pool = new ConnectionPool(url, username, password,
+                            minPoolSize, maxPoolSize,
+                            acquireTimeoutMillis, idleTimeoutMillis, leakThresholdMillis, statementCacheSize,
+                            sessionSettings);
+                    Runtime.getRuntime().addShutdownHook(new Thread(DatabaseConnection::shutdown, "cms-pool-shutdown"));
+                }
+                current = pool;
+            }
+        }
+        return current;
+    }
+
+    public static synchronized void shutdown() {
+        ChangeFeed.stop();
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
     }
-}
\ No newline at end of file
+}
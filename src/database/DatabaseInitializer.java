@@ -2,122 +2,81 @@ package database;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.List;
 
 public class DatabaseInitializer {
 
-    public static void initialize() throws SQLException, ClassNotFoundException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-
-            // Department Table
-            String createDepartmentTable = """
-                    CREATE TABLE IF NOT EXISTS departments (
-                        id SERIAL PRIMARY KEY,
-                        name VARCHAR(100) NOT NULL UNIQUE
-                    );
-                    """;
-
-            // Student Table
-            String createStudentTable = """
-                    CREATE TABLE IF NOT EXISTS students (
-                        id SERIAL PRIMARY KEY,
-                        name VARCHAR(100) NOT NULL,
-                        dob DATE NOT NULL,
-                        email VARCHAR(100) NOT NULL UNIQUE
-                    );
-                    """;
-
-            // Teacher Table
-            String createTeacherTable = """
-                    CREATE TABLE IF NOT EXISTS teachers (
-                        id SERIAL PRIMARY KEY,
-                        name VARCHAR(100) NOT NULL,
-                        email VARCHAR(100) NOT NULL UNIQUE
-                    );
-                    """;
-
-            // Course Table
-            String createCourseTable = """
-                    CREATE TABLE IF NOT EXISTS courses (
-                        id SERIAL PRIMARY KEY,
-                        name VARCHAR(100) NOT NULL,
-                        credit VARCHAR(20) NOT NULL,
-                        dept_id INTEGER REFERENCES departments(id)
-                    );
-                    """;
-
-            // Drop existing enrollments table if it exists
-            stmt.execute("DROP TABLE IF EXISTS enrollments");
-
-            // Create new enrollments table
-            String createEnrollmentTable = """
-                    CREATE TABLE enrollments (
-                        id SERIAL PRIMARY KEY,
-                        student_id INTEGER REFERENCES students(id),
-                        course_id INTEGER REFERENCES courses(id),
-                        semester VARCHAR(20) NOT NULL,
-                        grade VARCHAR(2) NOT NULL,
-                        UNIQUE(student_id, course_id, semester)
-                    );
-                    """;
-
-            // Drop existing tables if they exist to avoid conflicts
-            stmt.execute("DROP TABLE IF EXISTS class_schedules");
-            stmt.execute("DROP TABLE IF EXISTS timeslots");
-            stmt.execute("DROP TABLE IF EXISTS rooms");
-
-            // TimeSlot Table
-            String createTimeSlotTable = """
-                    CREATE TABLE timeslots (
-                        id SERIAL PRIMARY KEY,
-                        start_time TIME NOT NULL,
-                        end_time TIME NOT NULL,
-                        UNIQUE(start_time, end_time)
-                    );
-                    """;
-
-            // Room Table
-            String createRoomTable = """
-                    CREATE TABLE rooms (
-                        id SERIAL PRIMARY KEY,
-                        room_number VARCHAR(10) NOT NULL UNIQUE,
-                        capacity INT NOT NULL DEFAULT 30
-                    );
-                    """;
-
-            // ClassSchedule Table
-            String createClassScheduleTable = """
-                    CREATE TABLE class_schedules (
-                        id SERIAL PRIMARY KEY,
-                        course_id INTEGER NOT NULL,
-                        teacher_id INTEGER NOT NULL,
-                        timeslot_id INTEGER NOT NULL,
-                        room_id INTEGER NOT NULL,
-                        FOREIGN KEY (course_id) REFERENCES courses(id) ON DELETE CASCADE,
-                        FOREIGN KEY (teacher_id) REFERENCES teachers(id) ON DELETE CASCADE,
-                        FOREIGN KEY (timeslot_id) REFERENCES timeslots(id) ON DELETE CASCADE,
-                        FOREIGN KEY (room_id) REFERENCES rooms(id) ON DELETE CASCADE,
-                        UNIQUE (timeslot_id, room_id),
-                        UNIQUE (teacher_id, timeslot_id)
-                    );
-                    """;
-
-            // Execute table creation in proper order
-            stmt.execute(createDepartmentTable);
-            stmt.execute(createStudentTable);
-            stmt.execute(createTeacherTable);
-            stmt.execute(createCourseTable);
-            stmt.execute(createEnrollmentTable);
-            stmt.execute(createTimeSlotTable);
-            stmt.execute(createRoomTable);
-            stmt.execute(createClassScheduleTable);
-
-            // Insert default data after all tables are created
-            stmt.execute("""
+    // Applied in order and recorded in schema_version. Never edit a released step; add a new one instead.
+    private static final List<Migration> MIGRATIONS = List.of(
+        // Matches the tables earlier releases created on every start, so existing databases are adopted as-is
+        new Migration(1, "Create core tables", """
+                CREATE TABLE IF NOT EXISTS departments (
+                    id SERIAL PRIMARY KEY,
+                    name VARCHAR(100) NOT NULL UNIQUE
+                );
+
+                CREATE TABLE IF NOT EXISTS students (
+                    id SERIAL PRIMARY KEY,
+                    name VARCHAR(100) NOT NULL,
+                    dob DATE NOT NULL,
+                    email VARCHAR(100) NOT NULL UNIQUE
+                );
+
+                CREATE TABLE IF NOT EXISTS teachers (
+                    id SERIAL PRIMARY KEY,
+                    name VARCHAR(100) NOT NULL,
+                    email VARCHAR(100) NOT NULL UNIQUE
+                );
+
+                CREATE TABLE IF NOT EXISTS courses (
+                    id SERIAL PRIMARY KEY,
+                    name VARCHAR(100) NOT NULL,
+                    credit VARCHAR(20) NOT NULL,
+                    dept_id INTEGER REFERENCES departments(id)
+                );
+
+                CREATE TABLE IF NOT EXISTS enrollments (
+                    id SERIAL PRIMARY KEY,
+                    student_id INTEGER REFERENCES students(id),
+                    course_id INTEGER REFERENCES courses(id),
+                    semester VARCHAR(20) NOT NULL,
+                    grade VARCHAR(2) NOT NULL,
+                    UNIQUE(student_id, course_id, semester)
+                );
+
+                CREATE TABLE IF NOT EXISTS timeslots (
+                    id SERIAL PRIMARY KEY,
+                    start_time TIME NOT NULL,
+                    end_time TIME NOT NULL,
+                    UNIQUE(start_time, end_time)
+                );
+
+                CREATE TABLE IF NOT EXISTS rooms (
+                    id SERIAL PRIMARY KEY,
+                    room_number VARCHAR(10) NOT NULL UNIQUE,
+                    capacity INT NOT NULL DEFAULT 30
+                );
+
+                CREATE TABLE IF NOT EXISTS class_schedules (
+                    id SERIAL PRIMARY KEY,
+                    course_id INTEGER NOT NULL,
+                    teacher_id INTEGER NOT NULL,
+                    timeslot_id INTEGER NOT NULL,
+                    room_id INTEGER NOT NULL,
+                    FOREIGN KEY (course_id) REFERENCES courses(id) ON DELETE CASCADE,
+                    FOREIGN KEY (teacher_id) REFERENCES teachers(id) ON DELETE CASCADE,
+                    FOREIGN KEY (timeslot_id) REFERENCES timeslots(id) ON DELETE CASCADE,
+                    FOREIGN KEY (room_id) REFERENCES rooms(id) ON DELETE CASCADE,
+                    UNIQUE (timeslot_id, room_id),
+                    UNIQUE (teacher_id, timeslot_id)
+                );
+                """),
+
+        // Default data, inserted once instead of re-checked on every start
+        new Migration(2, "Insert default timeslots and rooms", """
                 INSERT INTO timeslots (start_time, end_time)
                 SELECT time_slot.start_time, time_slot.end_time
-                FROM (VALUES 
+                FROM (VALUES
                     ('08:00'::time, '09:30'::time),
                     ('09:45'::time, '11:15'::time),
                     ('11:30'::time, '13:00'::time),
@@ -125,16 +84,14 @@ public class DatabaseInitializer {
                     ('15:45'::time, '17:15'::time)
                 ) AS time_slot(start_time, end_time)
                 WHERE NOT EXISTS (
-                    SELECT 1 FROM timeslots 
-                    WHERE timeslots.start_time = time_slot.start_time 
+                    SELECT 1 FROM timeslots
+                    WHERE timeslots.start_time = time_slot.start_time
                     AND timeslots.end_time = time_slot.end_time
-                )
-            """);
+                );
 
-            stmt.execute("""
                 INSERT INTO rooms (room_number, capacity)
                 SELECT room_data.room_number, room_data.capacity
-                FROM (VALUES 
+                FROM (VALUES
                     ('101', 30),
                     ('102', 35),
                     ('103', 25),
@@ -143,10 +100,220 @@ public class DatabaseInitializer {
                     ('203', 35)
                 ) AS room_data(room_number, capacity)
                 WHERE NOT EXISTS (
-                    SELECT 1 FROM rooms 
+                    SELECT 1 FROM rooms
                     WHERE rooms.room_number = room_data.room_number
-                )
-            """);
+                );
+                """),
+
+        // Foreign keys used for lookups and cascades, plus the orderings the paged tables sort by.
+        // Keys already leading a unique constraint (enrollments.student_id, class_schedules.teacher_id
+        // and timeslot_id) are served by that constraint's index.
+        new Migration(3, "Index foreign keys and paging sort columns", """
+                CREATE INDEX IF NOT EXISTS idx_enrollments_course_id ON enrollments (course_id);
+                CREATE INDEX IF NOT EXISTS idx_enrollments_semester_id ON enrollments (semester, id);
+                CREATE INDEX IF NOT EXISTS idx_courses_dept_id ON courses (dept_id);
+                CREATE INDEX IF NOT EXISTS idx_courses_name ON courses (name);
+                CREATE INDEX IF NOT EXISTS idx_class_schedules_course_id ON class_schedules (course_id);
+                CREATE INDEX IF NOT EXISTS idx_class_schedules_room_id ON class_schedules (room_id);
+                CREATE INDEX IF NOT EXISTS idx_students_name_id ON students (name, id);
+                CREATE INDEX IF NOT EXISTS idx_students_dob_id ON students (dob, id);
+                CREATE INDEX IF NOT EXISTS idx_teachers_name ON teachers (name);
+                """),
+
+        // Indexes behind the DAO searches: GiST trigram indexes return the nearest names in order (the
+        // 64-byte signature keeps the big tables from rechecking most rows), pattern_ops ones serve email prefixes
+        new Migration(4, "Add text search indexes", """
+                CREATE EXTENSION IF NOT EXISTS pg_trgm;
+                CREATE INDEX IF NOT EXISTS idx_students_name_trgm ON students USING gist (name gist_trgm_ops(siglen=64));
+                CREATE INDEX IF NOT EXISTS idx_students_email_prefix ON students (lower(email) text_pattern_ops);
+                CREATE INDEX IF NOT EXISTS idx_teachers_name_trgm ON teachers USING gist (name gist_trgm_ops(siglen=64));
+                CREATE INDEX IF NOT EXISTS idx_teachers_email_prefix ON teachers (lower(email) text_pattern_ops);
+                CREATE INDEX IF NOT EXISTS idx_courses_name_trgm ON courses USING gist (name gist_trgm_ops);
+                CREATE INDEX IF NOT EXISTS idx_departments_name_trgm ON departments USING gist (name gist_trgm_ops);
+                """),
+
+        // Clash checks compare time ranges, which needs every slot to end after it starts. NOT VALID leaves
+        // existing rows alone so an old database still migrates; new and updated rows are checked.
+        new Migration(5, "Require timeslots to end after they start", """
+                ALTER TABLE timeslots ADD CONSTRAINT timeslots_end_after_start CHECK (end_time > start_time) NOT VALID;
+                """),
+
+        // Term GPAs kept per student and semester so transcripts and the dean's list never re-aggregate
+        // enrollments. The view is the one definition of the credit-weighted sum: I and W have no row in
+        // grade_points and count for nothing, as do courses whose credit is not a number. TranscriptDao
+        // refreshes the stored rows a write touches; the initial fill is one pass over the view.
+        new Migration(6, "Materialize term GPAs", """
+                CREATE TABLE IF NOT EXISTS grade_points (
+                    grade VARCHAR(2) PRIMARY KEY,
+                    points NUMERIC(3, 2) NOT NULL
+                );
+
+                INSERT INTO grade_points (grade, points)
+                VALUES ('A', 4.00), ('A-', 3.70), ('B+', 3.30), ('B', 3.00), ('B-', 2.70), ('C+', 2.30),
+                       ('C', 2.00), ('C-', 1.70), ('D+', 1.30), ('D', 1.00), ('D-', 0.70), ('F', 0.00)
+                ON CONFLICT (grade) DO NOTHING;
+
+                CREATE OR REPLACE VIEW student_term_grades AS
+                SELECT e.student_id, e.semester,
+                       sum(c.credit::numeric) AS credits,
+                       sum(c.credit::numeric * g.points) AS quality_points
+                FROM enrollments e
+                JOIN courses c ON c.id = e.course_id
+                JOIN grade_points g ON g.grade = e.grade
+                WHERE c.credit ~ '^[0-9]+(\\.[0-9]+)?$'
+                GROUP BY e.student_id, e.semester;
+
+                CREATE TABLE IF NOT EXISTS student_term_gpa (
+                    student_id INTEGER NOT NULL REFERENCES students(id) ON DELETE CASCADE,
+                    semester VARCHAR(20) NOT NULL,
+                    credits NUMERIC(8, 2) NOT NULL,
+                    quality_points NUMERIC(10, 2) NOT NULL,
+                    gpa NUMERIC(4, 3) GENERATED ALWAYS AS
+                        (CASE WHEN credits > 0 THEN round(quality_points / credits, 3) ELSE 0 END) STORED,
+                    PRIMARY KEY (student_id, semester)
+                );
+                CREATE INDEX IF NOT EXISTS idx_student_term_gpa_semester_gpa ON student_term_gpa (semester, gpa DESC);
+
+                INSERT INTO student_term_gpa (student_id, semester, credits, quality_points)
+                SELECT student_id, semester, credits, quality_points FROM student_term_grades
+                ON CONFLICT (student_id, semester) DO NOTHING;
+                """),
+
+        // Other clients learn of changes from a NOTIFY per statement rather than by re-reading tables (see
+        // ChangeFeed). Statement-level triggers keep a bulk load to one notification; past 100 rows the ids
+        // are replaced by '*' so the payload stays well under the 8000 byte NOTIFY limit.
+        new Migration(7, "Notify other clients of changes", """
+                CREATE OR REPLACE FUNCTION notify_change() RETURNS trigger AS $$
+                DECLARE
+                    ids TEXT;
+                BEGIN
+                    IF TG_OP = 'TRUNCATE' THEN
+                        ids := '*';
+                    ELSIF TG_OP = 'DELETE' THEN
+                        SELECT CASE WHEN count(*) > 100 THEN '*' ELSE string_agg(id::text, ',') END INTO ids
+                        FROM (SELECT id FROM old_rows LIMIT 101) r;
+                    ELSE
+                        SELECT CASE WHEN count(*) > 100 THEN '*' ELSE string_agg(id::text, ',') END INTO ids
+                        FROM (SELECT id FROM new_rows LIMIT 101) r;
+                    END IF;
+                    IF ids IS NOT NULL THEN
+                        PERFORM pg_notify('cms_changes', TG_TABLE_NAME || ' ' || left(TG_OP, 1) || ' ' || ids);
+                    END IF;
+                    RETURN NULL;
+                END;
+                $$ LANGUAGE plpgsql;
+
+                DO $$
+                DECLARE
+                    t TEXT;
+                BEGIN
+                    FOREACH t IN ARRAY ARRAY['departments', 'students', 'teachers', 'courses', 'rooms',
+                                             'timeslots', 'enrollments', 'class_schedules'] LOOP
+                        EXECUTE format('DROP TRIGGER IF EXISTS %1$s_notify_insert ON %1$I; '
+                            'CREATE TRIGGER %1$s_notify_insert AFTER INSERT ON %1$I '
+                            'REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_change()', t);
+                        EXECUTE format('DROP TRIGGER IF EXISTS %1$s_notify_update ON %1$I; '
+                            'CREATE TRIGGER %1$s_notify_update AFTER UPDATE ON %1$I '
+                            'REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_change()', t);
+                        EXECUTE format('DROP TRIGGER IF EXISTS %1$s_notify_delete ON %1$I; '
+                            'CREATE TRIGGER %1$s_notify_delete AFTER DELETE ON %1$I '
+                            'REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION notify_change()', t);
+                        EXECUTE format('DROP TRIGGER IF EXISTS %1$s_notify_truncate ON %1$I; '
+                            'CREATE TRIGGER %1$s_notify_truncate AFTER TRUNCATE ON %1$I '
+                            'FOR EACH STATEMENT EXECUTE FUNCTION notify_change()', t);
+                    END LOOP;
+                END;
+                $$;
+                """),
+
+        // The panels check for clashes against their cached copy of the schedule, so two clients could both find a
+        // room free and book it for overlapping times; the unique keys only catch the very same slot. A booking now
+        // locks its room and teacher rows, which queues anyone else booking either, and is refused with
+        // exclusion_violation if either already has a class at an overlapping time. Retiming a slot is checked the
+        // same way. Slots that end before they start clash with nothing, as in ScheduleConflicts.
+        new Migration(8, "Refuse overlapping room and teacher bookings", """
+                CREATE OR REPLACE FUNCTION check_schedule_clash() RETURNS trigger AS $$
+                DECLARE
+                    slot timeslots%ROWTYPE;
+                    clash TEXT;
+                BEGIN
+                    PERFORM 1 FROM rooms WHERE id = NEW.room_id FOR NO KEY UPDATE;
+                    PERFORM 1 FROM teachers WHERE id = NEW.teacher_id FOR NO KEY UPDATE;
+                    SELECT * INTO slot FROM timeslots WHERE id = NEW.timeslot_id;
+                    IF NOT FOUND OR slot.end_time <= slot.start_time THEN
+                        RETURN NEW;
+                    END IF;
+                    SELECT CASE WHEN cs.room_id = NEW.room_id
+                                THEN format('Room %s is already booked at this time for %s (%s - %s)',
+                                            r.room_number, c.name, to_char(ts.start_time, 'HH24:MI'),
+                                            to_char(ts.end_time, 'HH24:MI'))
+                                ELSE format('%s is already scheduled at this time for %s (%s - %s)',
+                                            t.name, c.name, to_char(ts.start_time, 'HH24:MI'),
+                                            to_char(ts.end_time, 'HH24:MI'))
+                           END INTO clash
+                    FROM class_schedules cs
+                    JOIN timeslots ts ON ts.id = cs.timeslot_id
+                    JOIN courses c ON c.id = cs.course_id
+                    JOIN rooms r ON r.id = cs.room_id
+                    JOIN teachers t ON t.id = cs.teacher_id
+                    WHERE (cs.room_id = NEW.room_id OR cs.teacher_id = NEW.teacher_id)
+                      AND cs.id <> NEW.id
+                      AND ts.start_time < ts.end_time
+                      AND ts.start_time < slot.end_time AND slot.start_time < ts.end_time
+                    ORDER BY cs.room_id <> NEW.room_id
+                    LIMIT 1;
+                    IF clash IS NOT NULL THEN
+                        RAISE EXCEPTION USING ERRCODE = 'exclusion_violation', MESSAGE = clash;
+                    END IF;
+                    RETURN NEW;
+                END;
+                $$ LANGUAGE plpgsql;
+
+                DROP TRIGGER IF EXISTS class_schedules_no_clash ON class_schedules;
+                CREATE TRIGGER class_schedules_no_clash BEFORE INSERT OR UPDATE OF teacher_id, timeslot_id, room_id
+                    ON class_schedules FOR EACH ROW EXECUTE FUNCTION check_schedule_clash();
+
+                CREATE OR REPLACE FUNCTION check_timeslot_clash() RETURNS trigger AS $$
+                DECLARE
+                    clash TEXT;
+                BEGIN
+                    PERFORM 1 FROM rooms WHERE id IN (SELECT room_id FROM class_schedules WHERE timeslot_id = NEW.id)
+                    ORDER BY id FOR NO KEY UPDATE;
+                    PERFORM 1 FROM teachers WHERE id IN (SELECT teacher_id FROM class_schedules WHERE timeslot_id = NEW.id)
+                    ORDER BY id FOR NO KEY UPDATE;
+                    SELECT format('At %s - %s, %s would clash with %s (%s - %s)',
+                                  to_char(NEW.start_time, 'HH24:MI'), to_char(NEW.end_time, 'HH24:MI'), ca.name,
+                                  cb.name, to_char(tb.start_time, 'HH24:MI'), to_char(tb.end_time, 'HH24:MI'))
+                    INTO clash
+                    FROM class_schedules a
+                    JOIN class_schedules b ON b.id <> a.id AND (b.room_id = a.room_id OR b.teacher_id = a.teacher_id)
+                    JOIN timeslots tb ON tb.id = b.timeslot_id
+                    JOIN courses ca ON ca.id = a.course_id
+                    JOIN courses cb ON cb.id = b.course_id
+                    WHERE a.timeslot_id = NEW.id
+                      AND tb.start_time < tb.end_time
+                      AND tb.start_time < NEW.end_time AND NEW.start_time < tb.end_time
+                    LIMIT 1;
+                    IF clash IS NOT NULL THEN
+                        RAISE EXCEPTION USING ERRCODE = 'exclusion_violation', MESSAGE = clash;
+                    END IF;
+                    RETURN NULL;
+                END;
+                $$ LANGUAGE plpgsql;
+
+                DROP TRIGGER IF EXISTS timeslots_no_clash ON timeslots;
+                CREATE TRIGGER timeslots_no_clash AFTER UPDATE OF start_time, end_time ON timeslots FOR EACH ROW
+                    WHEN (NEW.start_time <> OLD.start_time OR NEW.end_time <> OLD.end_time)
+                    EXECUTE FUNCTION check_timeslot_clash();
+                """)
+    );
+
+    public static void initialize() throws SQLException, ClassNotFoundException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int applied = new SchemaMigrator(MIGRATIONS).migrate(conn);
+            if (applied == 0) {
+                System.out.println("Database schema is up to date");
+            }
         }
     }
-}
\ No newline at end of file
+}
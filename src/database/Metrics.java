@@ -0,0 +1,233 @@
+package database;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency timers for every DAO call and panel refresh. Each timer keeps a
+ * {@link LatencyHistogram} and an error count, and is published over JMX as
+ * cms.metrics:type=Timer,name=&lt;name&gt; with its count, errors, p50, p99 and max
+ * in microseconds; cms.metrics:type=Metrics dumps or resets them all. With
+ * -Dcms.metrics.file=&lt;path&gt; the timers are also written to that file when the
+ * application exits. A timed call costs two clock reads, a map lookup and the
+ * histogram's atomic increments, well under a microsecond; -Dcms.metrics=false
+ * turns timing off altogether.
+ */
+public final class Metrics {
+    private static final boolean ENABLED = !"false".equals(System.getProperty("cms.metrics"));
+    private static final String DUMP_FILE = System.getProperty("cms.metrics.file");
+    private static final String DOMAIN = "cms.metrics";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws SQLException, ClassNotFoundException;
+    }
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws SQLException, ClassNotFoundException;
+    }
+
+    public interface TimerMXBean {
+        long getCount();
+
+        long getErrors();
+
+        double getMeanMicros();
+
+        double getP50Micros();
+
+        double getP99Micros();
+
+        double getMaxMicros();
+
+        void reset();
+    }
+
+    public interface MetricsMXBean {
+        List<String> getTimerNames();
+
+        // Writes every timer to the file and returns its absolute path
+        String dump(String path) throws IOException;
+
+        void reset();
+    }
+
+    static {
+        if (ENABLED) {
+            register(DOMAIN + ":type=Metrics", new Control());
+            if (DUMP_FILE != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        dump(Paths.get(DUMP_FILE));
+                    } catch (IOException e) {
+                        System.err.println("Could not write metrics to " + DUMP_FILE + ": " + e.getMessage());
+                    }
+                }, "cms-metrics-dump"));
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static <T> T time(String name, Call<T> call) throws SQLException, ClassNotFoundException {
+        if (!ENABLED) {
+            return call.call();
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } finally {
+            timer(name).record(System.nanoTime() - start, failed);
+        }
+    }
+
+    public static void run(String name, Action action) throws SQLException, ClassNotFoundException {
+        time(name, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // For work timed by its caller, e.g. a refresh that spans a worker thread and the EDT
+    public static void record(String name, long nanos, boolean failed) {
+        if (ENABLED) {
+            timer(name).record(nanos, failed);
+        }
+    }
+
+    private static Timer timer(String name) {
+        Timer timer = TIMERS.get(name);
+        if (timer == null) {
+            timer = TIMERS.computeIfAbsent(name, Timer::new);
+        }
+        return timer;
+    }
+
+    // One line per timer, sorted by name, with times in microseconds
+    public static void dump(Path file) throws IOException {
+        List<String> names = new ArrayList<>(TIMERS.keySet());
+        names.sort(null);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.printf("# CMS latency timers at %s, times in microseconds%n", LocalDateTime.now());
+            out.printf("%-60s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                    "name", "count", "errors", "mean", "p50", "p90", "p99", "p99.9", "max");
+            for (String name : names) {
+                Timer timer = TIMERS.get(name);
+                LatencyHistogram.Snapshot snapshot = timer.histogram.snapshot();
+                out.printf("%-60s %10d %8d %10.1f", name, snapshot.getCount(), timer.errors.sum(),
+                        snapshot.getMeanNanos() / 1000);
+                for (double quantile : QUANTILES) {
+                    out.printf(" %10.1f", snapshot.getValueAtQuantile(quantile) / 1000.0);
+                }
+                out.printf(" %10.1f%n", snapshot.getMaxNanos() / 1000.0);
+            }
+        }
+    }
+
+    private static void register(String name, Object bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(bean, objectName);
+            }
+        } catch (JMException | RuntimeException e) {
+            System.err.println("Could not publish metrics over JMX: " + e.getMessage());
+        }
+    }
+
+    public static final class Timer implements TimerMXBean {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private Timer(String name) {
+            register(DOMAIN + ":type=Timer,name=" + ObjectName.quote(name), this);
+        }
+
+        public void record(long nanos, boolean failed) {
+            histogram.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.snapshot().getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.snapshot().getMeanNanos() / 1000;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return histogram.snapshot().getValueAtQuantile(0.5) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return histogram.snapshot().getValueAtQuantile(0.99) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return histogram.snapshot().getMaxNanos() / 1000.0;
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+            errors.reset();
+        }
+    }
+
+    private static final class Control implements MetricsMXBean {
+        @Override
+        public List<String> getTimerNames() {
+            List<String> names = new ArrayList<>(TIMERS.keySet());
+            names.sort(null);
+            return names;
+        }
+
+        @Override
+        public String dump(String path) throws IOException {
+            Path file = Paths.get(path).toAbsolutePath();
+            Metrics.dump(file);
+            return file.toString();
+        }
+
+        @Override
+        public void reset() {
+            TIMERS.values().forEach(Timer::reset);
+        }
+    }
+}
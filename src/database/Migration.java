@@ -0,0 +1,35 @@
+package database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+// One ordered schema change; its checksum guards against editing a step after it has been applied
+public class Migration {
+    private final int version;
+    private final String description;
+    private final String sql;
+
+    public Migration(int version, String description, String sql) {
+        this.version = version;
+        this.description = description;
+        this.sql = sql;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getChecksum() {
+        CRC32 crc = new CRC32();
+        crc.update(sql.strip().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,95 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN on a list of application queries and warns about every sequential
+ * scan on a table that has grown past a row threshold, which usually means an
+ * index is missing for that query shape.
+ */
+public class QueryPlanChecker {
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    // A query as the application runs it, with representative parameter values
+    public static class PlannedQuery {
+        private final String name;
+        private final String sql;
+        private final Object[] parameters;
+
+        public PlannedQuery(String name, String sql, Object... parameters) {
+            this.name = name;
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final long rowThreshold;
+
+    public QueryPlanChecker(long rowThreshold) {
+        this.rowThreshold = rowThreshold;
+    }
+
+    // Returns one warning per query that sequentially scans a large table
+    public List<String> check(Connection conn, List<PlannedQuery> queries) throws SQLException {
+        Map<String, Long> tableRows = readTableRows(conn);
+        List<String> warnings = new ArrayList<>();
+        for (PlannedQuery query : queries) {
+            String plan = explain(conn, query);
+            Matcher matcher = SEQ_SCAN.matcher(plan);
+            while (matcher.find()) {
+                String table = matcher.group(1);
+                long rows = tableRows.getOrDefault(table, 0L);
+                if (rows >= rowThreshold) {
+                    warnings.add(query.name + " scans all ~" + rows + " rows of " + table + ":\n" + plan);
+                    break;
+                }
+            }
+        }
+        return warnings;
+    }
+
+    private String explain(Connection conn, PlannedQuery query) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + query.sql)) {
+            for (int i = 0; i < query.parameters.length; i++) {
+                ps.setObject(i + 1, query.parameters[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append("    ").append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    // Planner estimate, falling back to the live-row counter for tables never analyzed
+    private Map<String, Long> readTableRows(Connection conn) throws SQLException {
+        Map<String, Long> rows = new HashMap<>();
+        String sql = "SELECT c.relname, GREATEST(c.reltuples::bigint, COALESCE(s.n_live_tup, 0)) " +
+                "FROM pg_class c " +
+                "LEFT JOIN pg_stat_user_tables s ON s.relid = c.oid " +
+                "WHERE c.relkind = 'r' AND c.relnamespace = 'public'::regnamespace";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rows.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,122 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings the schema up to date by applying the migrations that are newer than
+ * what the schema_version table records. When nothing is pending, startup costs
+ * a single query. Pending steps run in one transaction under an advisory lock,
+ * so two clients starting together cannot apply the same step twice.
+ */
+public class SchemaMigrator {
+    private static final String UNDEFINED_TABLE = "42P01";
+    // Arbitrary key for pg_advisory_xact_lock, shared by every client of this schema
+    private static final long MIGRATION_LOCK = 0x636d73L;
+
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(List<Migration> migrations) {
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).getVersion() <= migrations.get(i - 1).getVersion()) {
+                throw new IllegalArgumentException("Migrations must be in ascending version order");
+            }
+        }
+        this.migrations = migrations;
+    }
+
+    // Returns the number of migrations applied
+    public int migrate(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = readApplied(conn);
+        if (applied != null && verify(applied) == migrations.size()) {
+            return 0;
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            // Serialises clients starting together; even CREATE TABLE IF NOT EXISTS can collide
+            stmt.execute("SELECT pg_advisory_xact_lock(" + MIGRATION_LOCK + ")");
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INTEGER PRIMARY KEY,
+                        description VARCHAR(200) NOT NULL,
+                        checksum BIGINT NOT NULL,
+                        applied_at TIMESTAMP NOT NULL DEFAULT now()
+                    )
+                    """);
+            // Another client may have migrated while we waited for the lock
+            applied = readApplied(conn);
+            verify(applied);
+
+            int count = 0;
+            for (Migration migration : migrations) {
+                if (applied.containsKey(migration.getVersion())) {
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                stmt.execute(migration.getSql());
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)")) {
+                    ps.setInt(1, migration.getVersion());
+                    ps.setString(2, migration.getDescription());
+                    ps.setLong(3, migration.getChecksum());
+                    ps.executeUpdate();
+                }
+                System.out.println("Applied migration " + migration.getVersion() + " (" + migration.getDescription()
+                        + ") in " + (System.currentTimeMillis() - start) + " ms");
+                count++;
+            }
+            conn.commit();
+            return count;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Applied versions and their checksums, or null when the schema has never been migrated
+    private Map<Integer, Long> readApplied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        } catch (SQLException e) {
+            if (UNDEFINED_TABLE.equals(e.getSQLState())) {
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                }
+                return null;
+            }
+            throw e;
+        }
+        return applied;
+    }
+
+    // Fails if an applied step no longer matches its definition; returns how many known steps are applied
+    private int verify(Map<Integer, Long> applied) throws SQLException {
+        int count = 0;
+        for (Migration migration : migrations) {
+            Long checksum = applied.get(migration.getVersion());
+            if (checksum == null) {
+                continue;
+            }
+            if (checksum != migration.getChecksum()) {
+                throw new SQLException("Migration " + migration.getVersion() + " (" + migration.getDescription()
+                        + ") was changed after it was applied");
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,141 @@
+package database;
+
+import org.postgresql.PGStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The prepared statements of one pooled connection, kept open between borrows and
+ * handed out again by SQL text. A DAO that prepares the same query on every call
+ * gets back the statement it prepared last time, which the driver has already
+ * sent to the server as a named prepared statement, so each call only binds and
+ * executes it: Postgres skips parsing, and once it settles on a generic plan it
+ * skips planning too. The driver names a statement on its fifth execution; the
+ * queries registered with {@link #onServer} are named on their first. The least
+ * recently returned statement is closed once the cache is full. The statement a
+ * caller gets is a handle whose {@code close()} clears it and puts it back.
+ */
+public final class StatementCache {
+    private static final Set<String> SERVER_PREPARED = ConcurrentHashMap.newKeySet();
+
+    private final Connection physical;
+    private final int capacity;
+    // Statements not in use, least recently returned first; one borrower at a time, so no locking
+    private final Map<String, PreparedStatement> idle = new LinkedHashMap<>();
+
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.capacity = capacity;
+    }
+
+    // Marks a hot query to be prepared on the server the first time a connection runs it; returns the SQL
+    public static String onServer(String sql) {
+        SERVER_PREPARED.add(sql);
+        return sql;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = idle.remove(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = physical.prepareStatement(sql);
+            if (SERVER_PREPARED.contains(sql)) {
+                statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+            }
+        }
+        return new Handle(sql, statement).proxy;
+    }
+
+    private void giveBack(String sql, PreparedStatement statement) {
+        try {
+            ResultSet open = statement.getResultSet();
+            if (open != null) {
+                open.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            statement.setFetchSize(0);
+            statement.setMaxRows(0);
+            statement.setQueryTimeout(0);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        // The same query prepared twice at once comes back twice; keep one
+        PreparedStatement previous = idle.put(sql, statement);
+        if (previous != null) {
+            closeQuietly(previous);
+        }
+        Iterator<PreparedStatement> oldest = idle.values().iterator();
+        while (idle.size() > capacity) {
+            closeQuietly(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // The connection is going away with it
+        }
+    }
+
+    // One borrow of a cached statement; closing it returns the statement instead of closing it
+    private class Handle implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean closed;
+
+        private Handle(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        giveBack(sql, statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + statement + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
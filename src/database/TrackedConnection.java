@@ -0,0 +1,116 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+
+/**
+ * The handle a caller gets for one borrow of a pooled connection. It remembers
+ * who acquired it (and, when leak detection is on, the acquiring stack) so a
+ * connection that is never closed can be traced back to the code that took it.
+ * Statements created through it join the borrowing thread's {@link CancellationScope}.
+ * Statements prepared from SQL alone come from the connection's {@link StatementCache}.
+ */
+class TrackedConnection implements InvocationHandler {
+    private final Connection physical;
+    private final Consumer<TrackedConnection> onClose;
+    // Null when statement caching is off
+    private final StatementCache statements;
+    private final Connection proxy;
+    private final long acquiredAt;
+    private final String acquiredBy;
+    private final Throwable acquiredStack;
+    private volatile boolean closed;
+    private volatile boolean reported;
+
+    TrackedConnection(Connection physical, StatementCache statements, Consumer<TrackedConnection> onClose,
+                      boolean captureStack) {
+        this.physical = physical;
+        this.statements = statements;
+        this.onClose = onClose;
+        this.acquiredAt = System.currentTimeMillis();
+        this.acquiredBy = Thread.currentThread().getName();
+        this.acquiredStack = captureStack ? new Throwable("Connection acquired here") : null;
+        this.proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                this);
+    }
+
+    Connection getProxy() {
+        return proxy;
+    }
+
+    long getHeldMillis(long now) {
+        return now - acquiredAt;
+    }
+
+    // Each leak is reported once rather than on every housekeeping pass
+    boolean markReported() {
+        if (reported) {
+            return false;
+        }
+        reported = true;
+        return true;
+    }
+
+    void report(long now) {
+        System.err.println("Possible connection leak: connection held for " + getHeldMillis(now)
+                + " ms by thread " + acquiredBy);
+        if (acquiredStack != null) {
+            acquiredStack.printStackTrace();
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                // Closing twice must not return the connection to the pool twice
+                synchronized (this) {
+                    if (closed) {
+                        return null;
+                    }
+                    closed = true;
+                }
+                onClose.accept(this);
+                return null;
+            case "isClosed":
+                return closed || physical.isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Tracked[" + physical + ", acquired by " + acquiredBy + "]";
+            default:
+                if (closed) {
+                    throw new SQLException("Connection is closed");
+                }
+                Object result;
+                if (statements != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                    result = statements.prepare((String) args[0]);
+                } else {
+                    try {
+                        result = method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+                if (result instanceof Statement statement) {
+                    try {
+                        CancellationScope.register(statement);
+                    } catch (SQLException e) {
+                        statement.close();
+                        throw e;
+                    }
+                }
+                return result;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package gui;
+
+import database.CancellationScope;
+import database.Metrics;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs a panel's queries on a shared worker pool and hands the results back on
+ * the Event Dispatch Thread. Loads are keyed: while a query for a key is running,
+ * further requests for it collapse into a single follow-up query, so a burst of
+ * refresh clicks costs at most two round trips and only the newest result is shown.
+ * Each query runs in a {@link CancellationScope}, so cancelling a load stops its
+ * statement on the server rather than just abandoning the worker thread. Every
+ * load that is shown, or fails, is timed in {@link Metrics} from the start of its
+ * query until its result has been applied on the EDT, e.g. as
+ * "panel.StudentPanel.students-page".
+ * All methods must be called on the EDT.
+ */
+public class BackgroundLoader {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4, r -> {
+        Thread thread = new Thread(r, "cms-loader-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @FunctionalInterface
+    public interface Query<T> {
+        T run() throws SQLException, ClassNotFoundException;
+    }
+
+    private final Component owner;
+    private final JProgressBar busyIndicator;
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    public BackgroundLoader(Component owner) {
+        this.owner = owner;
+        busyIndicator = new JProgressBar();
+        busyIndicator.setIndeterminate(true);
+        busyIndicator.setString("Loading...");
+        busyIndicator.setStringPainted(true);
+        busyIndicator.setVisible(false);
+    }
+
+    public JProgressBar getBusyIndicator() {
+        return busyIndicator;
+    }
+
+    public <T> void load(String key, Query<T> query, Consumer<T> publish, String errorMessage) {
+        enqueue(key, new Task<>(key, query, publish, errorMessage), false);
+    }
+
+    // Like load, but a newer request cancels the running query instead of waiting for it; for reads only
+    public <T> void loadLatest(String key, Query<T> query, Consumer<T> publish, String errorMessage) {
+        enqueue(key, new Task<>(key, query, publish, errorMessage), true);
+    }
+
+    public void cancel(String key) {
+        Slot slot = slots.remove(key);
+        if (slot != null) {
+            slot.running.cancel();
+            updateBusyIndicator();
+        }
+    }
+
+    public void cancelAll() {
+        slots.values().forEach(slot -> slot.running.cancel());
+        slots.clear();
+        updateBusyIndicator();
+    }
+
+    public boolean isBusy() {
+        return !slots.isEmpty();
+    }
+
+    // Swaps the whole row set in with a single table event instead of one per addRow
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static void replaceRows(DefaultTableModel model, List<Object[]> rows) {
+        Vector data = model.getDataVector();
+        data.clear();
+        data.ensureCapacity(rows.size());
+        for (Object[] row : rows) {
+            data.add(new Vector<>(Arrays.asList(row)));
+        }
+        model.fireTableDataChanged();
+    }
+
+    private void enqueue(String key, Task<?> task, boolean cancelRunning) {
+        Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+        if (slot.running == null) {
+            start(slot, task);
+        } else {
+            // At most one query per key runs at a time; later requests collapse into the newest one
+            slot.next = task;
+            if (cancelRunning) {
+                slot.running.scope.cancel();
+            }
+        }
+        updateBusyIndicator();
+    }
+
+    private void start(Slot slot, Task<?> task) {
+        slot.running = task;
+        task.future = EXECUTOR.submit(task::execute);
+    }
+
+    private void updateBusyIndicator() {
+        busyIndicator.setVisible(!slots.isEmpty());
+    }
+
+    private static class Slot {
+        private Task<?> running;
+        private Task<?> next;
+    }
+
+    private class Task<T> {
+        private final String key;
+        private final Query<T> query;
+        private final Consumer<T> publish;
+        private final String errorMessage;
+        private final CancellationScope scope = new CancellationScope();
+        private Future<?> future;
+        private long startedAt;
+
+        private Task(String key, Query<T> query, Consumer<T> publish, String errorMessage) {
+            this.key = key;
+            this.query = query;
+            this.publish = publish;
+            this.errorMessage = errorMessage;
+        }
+
+        private void execute() {
+            startedAt = System.nanoTime();
+            try {
+                T result = scope.run(query::run);
+                SwingUtilities.invokeLater(() -> {
+                    if (finish()) {
+                        publish.accept(result);
+                        Metrics.record(timerName(), System.nanoTime() - startedAt, false);
+                    }
+                });
+            } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (finish()) {
+                        Metrics.record(timerName(), System.nanoTime() - startedAt, true);
+                        JOptionPane.showMessageDialog(owner,
+                            errorMessage + ": " + e.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    }
+                });
+            }
+        }
+
+        // Keys that carry ids or page numbers, like "students-page-3", share one timer for all of them
+        private String timerName() {
+            int end = 0;
+            while (end < key.length() && !Character.isDigit(key.charAt(end)) && key.charAt(end) != '[') {
+                end++;
+            }
+            String base = key.substring(0, end);
+            if (base.endsWith("-")) {
+                base = base.substring(0, base.length() - 1);
+            }
+            return "panel." + owner.getClass().getSimpleName() + "." + base;
+        }
+
+        private void cancel() {
+            scope.cancel();
+            future.cancel(true);
+        }
+
+        // Returns whether this result is still wanted; a superseded result is dropped and the newer request started
+        private boolean finish() {
+            Slot slot = slots.get(key);
+            if (slot == null || slot.running != this) {
+                return false;
+            }
+            if (slot.next != null) {
+                start(slot, slot.next);
+                slot.next = null;
+                return false;
+            }
+            slots.remove(key);
+            updateBusyIndicator();
+            return true;
+        }
+    }
+}
@@ -1,8 +1,23 @@
 package gui;
 
+import dao.ChangeEvents;
+import dao.ClassScheduleDao;
 import dao.CourseDao;
+import dao.DepartmentDao;
+import dao.EnrollmentDao;
+import dao.RoomDao;
 import dao.TeacherDao;
-import database.DatabaseConnection;
+import dao.TimeSlotDao;
+import database.ChangeFeed.Operation;
+import model.ClassSchedule;
+import model.Courses;
+import model.Enrollment;
+import model.Room;
+import model.ScheduleDetail;
+import model.TimeSlot;
+import service.EnrollmentCounts;
+import service.ScheduleConflicts;
+import service.TimetableSolver;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -10,18 +25,41 @@ import java.awt.*;
 import java.sql.*;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ClassSchedulePanel extends JPanel {
+    // The "Students / Seats" column, the only one that enrollments move
+    private static final int SEATS_COLUMN = 5;
     private JTabbedPane tabbedPane;
     private RoomPanel roomPanel;
     private TimeSlotPanel timeSlotPanel;
     private JTable scheduleTable;
     private DefaultTableModel tableModel;
-    private JComboBox<CourseItem> courseComboBox;
-    private JComboBox<TeacherItem> teacherComboBox;
+    private SearchField<CourseItem> coursePicker;
+    private SearchField<TeacherItem> teacherPicker;
     private JComboBox<TimeSlotItem> timeSlotComboBox;
     private JComboBox<RoomItem> roomComboBox;
+    private final IdComboBoxModel<TimeSlotItem> timeSlotModel = new IdComboBoxModel<>(TimeSlotItem::getId);
+    private final IdComboBoxModel<RoomItem> roomModel = new IdComboBoxModel<>(RoomItem::getId);
     private Long selectedScheduleId;
+    // Set when a change arrived while the schedule tab was hidden, so showing the tab reloads the timetable
+    private boolean scheduleStale;
+    // Courses whose seat counts changed since the seat column was last filled in; null when any may have
+    private Set<Long> seatsStale = new HashSet<>();
+    private List<ScheduleDetail> schedules = new ArrayList<>();
+    private final CourseDao courseDao = new CourseDao();
+    private final DepartmentDao departmentDao = new DepartmentDao();
+    private final TeacherDao teacherDao = new TeacherDao();
+    private final TimeSlotDao timeSlotDao = new TimeSlotDao();
+    private final RoomDao roomDao = new RoomDao();
+    private final ClassScheduleDao classScheduleDao = new ClassScheduleDao();
+    private final EnrollmentDao enrollmentDao = new EnrollmentDao();
+    private final BackgroundLoader loader = new BackgroundLoader(this);
     private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
 
     public ClassSchedulePanel() throws SQLException, ClassNotFoundException {
@@ -43,33 +81,98 @@ public class ClassSchedulePanel extends JPanel {
         JPanel schedulePanel = createSchedulePanel();
         tabbedPane.addTab("Class Schedule", new ImageIcon(), schedulePanel, "Manage Class Schedules");
 
-        // Add tab change listener to refresh data
+        // The timetable is only reloaded when something it shows changed while the tab was hidden
         tabbedPane.addChangeListener(e -> {
-            if (tabbedPane.getSelectedIndex() == 2) { // Class Schedule tab
-                refreshAllData();
+            if (isScheduleShown() && scheduleStale) {
+                refreshTable();
+            }
+            if (isScheduleShown() && (seatsStale == null || !seatsStale.isEmpty())) {
+                loadSeats();
             }
         });
 
+        // Rooms and time slots are patched into the combo boxes one item at a time
+        ChangeEvents.subscribe(ChangeEvents.ROOMS, event -> SwingUtilities.invokeLater(() -> {
+            TableRows.apply(loader, "rooms", event, ClassSchedulePanel::toRoomItem, this::findRoomItem,
+                roomModel::putItem, roomModel::removeId, this::loadLookups);
+            scheduleChanged();
+        }));
+        ChangeEvents.subscribe(ChangeEvents.TIMESLOTS, event -> SwingUtilities.invokeLater(() -> {
+            TableRows.apply(loader, "timeslots", event, ClassSchedulePanel::toTimeSlotItem, this::findTimeSlotItem,
+                timeSlotModel::putItem, timeSlotModel::removeId, this::loadLookups);
+            scheduleChanged();
+        }));
+        // The timetable joins these and derives its seat counts from the enrollments
+        ChangeEvents.subscribe(ChangeEvents.CLASS_SCHEDULES,
+            event -> SwingUtilities.invokeLater(this::scheduleChanged));
+        ChangeEvents.subscribe(ChangeEvents.COURSES, event -> SwingUtilities.invokeLater(this::scheduleChanged));
+        ChangeEvents.subscribe(ChangeEvents.TEACHERS, event -> SwingUtilities.invokeLater(this::scheduleChanged));
+        ChangeEvents.subscribe(ChangeEvents.ENROLLMENTS,
+            event -> SwingUtilities.invokeLater(() -> enrollmentsChanged(event)));
+
         add(tabbedPane, BorderLayout.CENTER);
     }
 
-    private void refreshAllData() {
-        loadRooms();
-        loadTimeSlots();
-        loadCourses();
-        loadTeachers();
-        refreshTable();
+    private boolean isScheduleShown() {
+        return tabbedPane.getSelectedIndex() == 2;
+    }
+
+    // Reloads the timetable now if it is on screen, otherwise when its tab is next shown
+    private void scheduleChanged() {
+        if (isScheduleShown()) {
+            refreshTable();
+        } else {
+            scheduleStale = true;
+        }
+    }
+
+    // Enrollments only move the seat column. A new enrollment names its course; for any other change the old course
+    // is unknown, so every row is recounted, which is a map lookup per row rather than a reload of the timetable.
+    private void enrollmentsChanged(ChangeEvents.Event<Enrollment> event) {
+        if (seatsStale != null) {
+            if (event.getOperation() == Operation.INSERT) {
+                for (Long id : event.getIds()) {
+                    Enrollment enrollment = event.getRow(id);
+                    if (enrollment == null) {
+                        seatsStale = null;
+                        break;
+                    }
+                    seatsStale.add(enrollment.getCourseId());
+                }
+            } else {
+                seatsStale = null;
+            }
+        }
+        if (isScheduleShown()) {
+            loadSeats();
+        }
+    }
+
+    private void loadSeats() {
+        loader.load("seats", enrollmentDao::getCounts, this::showSeats, "Error loading seat counts");
+    }
+
+    private void showSeats(EnrollmentCounts counts) {
+        Set<Long> courseIds = seatsStale;
+        seatsStale = new HashSet<>();
+        Map<Long, Integer> sections = sectionsByCourse(schedules);
+        for (int i = 0; i < schedules.size(); i++) {
+            ScheduleDetail schedule = schedules.get(i);
+            if (courseIds == null || courseIds.contains(schedule.getCourseId())) {
+                tableModel.setValueAt(seats(schedule, counts, sections), i, SEATS_COLUMN);
+            }
+        }
     }
 
     private JPanel createSchedulePanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        // Initialize combo boxes
-        courseComboBox = new JComboBox<>();
-        teacherComboBox = new JComboBox<>();
-        timeSlotComboBox = new JComboBox<>();
-        roomComboBox = new JComboBox<>();
+        // Courses and teachers are searched as the user types; timeslots and rooms are short lists
+        coursePicker = new SearchField<>(loader, "course-search", this::searchCourses);
+        teacherPicker = new SearchField<>(loader, "teacher-search", this::searchTeachers);
+        timeSlotComboBox = new JComboBox<>(timeSlotModel);
+        roomComboBox = new JComboBox<>(roomModel);
 
         // Form Panel
         JPanel formPanel = new JPanel(new GridBagLayout());
@@ -85,7 +188,7 @@ public class ClassSchedulePanel extends JPanel {
         gbc.gridx = 1;
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.weightx = 1.0;
-        formPanel.add(courseComboBox, gbc);
+        formPanel.add(coursePicker, gbc);
 
         // Teacher Selection
         gbc.gridx = 0;
@@ -95,7 +198,7 @@ public class ClassSchedulePanel extends JPanel {
 
         gbc.gridx = 1;
         gbc.weightx = 1.0;
-        formPanel.add(teacherComboBox, gbc);
+        formPanel.add(teacherPicker, gbc);
 
         // Time Slot Selection
         gbc.gridx = 0;
@@ -119,11 +222,13 @@ public class ClassSchedulePanel extends JPanel {
         JButton updateButton = new JButton("Update Schedule");
         JButton deleteButton = new JButton("Delete Schedule");
         JButton clearButton = new JButton("Clear Form");
+        JButton generateButton = new JButton("Generate Timetable");
 
         buttonsPanel.add(addButton);
         buttonsPanel.add(updateButton);
         buttonsPanel.add(deleteButton);
         buttonsPanel.add(clearButton);
+        buttonsPanel.add(generateButton);
 
         gbc.gridx = 0;
         gbc.gridy = 4;
@@ -132,7 +237,7 @@ public class ClassSchedulePanel extends JPanel {
         formPanel.add(buttonsPanel, gbc);
 
         // Table
-        String[] columnNames = {"ID", "Course", "Teacher", "Time Slot", "Room"};
+        String[] columnNames = {"ID", "Course", "Teacher", "Time Slot", "Room", "Students / Seats"};
         tableModel = new DefaultTableModel(columnNames, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -148,12 +253,10 @@ public class ClassSchedulePanel extends JPanel {
         
         panel.add(topPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
-        // Load data
-        loadCourses();
-        loadTeachers();
-        loadTimeSlots();
-        loadRooms();
+        // Load data; afterwards change events keep it current
+        loadLookups();
         refreshTable();
 
         // Add listeners
@@ -161,21 +264,19 @@ public class ClassSchedulePanel extends JPanel {
         updateButton.addActionListener(e -> updateSchedule());
         deleteButton.addActionListener(e -> deleteSchedule());
         clearButton.addActionListener(e -> clearForm());
+        generateButton.addActionListener(e -> generateTimetable());
 
         scheduleTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = scheduleTable.getSelectedRow();
                 if (selectedRow != -1) {
-                    selectedScheduleId = Long.parseLong(tableModel.getValueAt(selectedRow, 0).toString());
-                    String courseName = tableModel.getValueAt(selectedRow, 1).toString();
-                    String teacherName = tableModel.getValueAt(selectedRow, 2).toString();
-                    String timeSlot = tableModel.getValueAt(selectedRow, 3).toString();
-                    String room = tableModel.getValueAt(selectedRow, 4).toString();
-
-                    selectComboBoxItem(courseComboBox, courseName);
-                    selectComboBoxItem(teacherComboBox, teacherName);
-                    selectComboBoxItem(timeSlotComboBox, timeSlot);
-                    selectComboBoxItem(roomComboBox, room);
+                    ScheduleDetail schedule = schedules.get(selectedRow);
+                    selectedScheduleId = schedule.getId();
+
+                    coursePicker.setSelection(new CourseItem(schedule.getCourseId(), schedule.getCourseName(), null));
+                    teacherPicker.setSelection(new TeacherItem(schedule.getTeacherId(), schedule.getTeacherName()));
+                    timeSlotModel.selectId(schedule.getTimeslotId());
+                    roomModel.selectId(schedule.getRoomId());
                 }
             }
         });
@@ -183,185 +284,124 @@ public class ClassSchedulePanel extends JPanel {
         return panel;
     }
 
-    private void loadCourses() {
-        try {
-            String sql = "SELECT c.*, d.name as dept_name FROM courses c " +
-                        "JOIN departments d ON c.dept_id = d.id ORDER BY c.name";
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql);
-                 ResultSet rs = ps.executeQuery()) {
-                
-                // Store the previously selected item
-                CourseItem selectedItem = (CourseItem) courseComboBox.getSelectedItem();
-                
-                courseComboBox.removeAllItems();
-                while (rs.next()) {
-                    CourseItem item = new CourseItem(
-                        rs.getLong("id"),
-                        rs.getString("name"),
-                        rs.getString("dept_name")
-                    );
-                    courseComboBox.addItem(item);
-                    
-                    // Restore the selection if it still exists
-                    if (selectedItem != null && selectedItem.getId().equals(item.getId())) {
-                        courseComboBox.setSelectedItem(item);
-                    }
-                }
-            }
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading courses: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+    private void loadLookups() {
+        loader.load("lookups", this::fetchLookups, this::applyLookups, "Error loading schedule data");
     }
 
-    private void loadTeachers() {
-        try {
-            String sql = "SELECT * FROM teachers ORDER BY name";
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql);
-                 ResultSet rs = ps.executeQuery()) {
-                
-                // Store the previously selected item
-                TeacherItem selectedItem = (TeacherItem) teacherComboBox.getSelectedItem();
-                
-                teacherComboBox.removeAllItems();
-                while (rs.next()) {
-                    TeacherItem item = new TeacherItem(
-                        rs.getLong("id"),
-                        rs.getString("name")
-                    );
-                    teacherComboBox.addItem(item);
-                    
-                    // Restore the selection if it still exists
-                    if (selectedItem != null && selectedItem.getId().equals(item.getId())) {
-                        teacherComboBox.setSelectedItem(item);
-                    }
-                }
-            }
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading teachers: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+    // Both lookup lists are fetched together and land in the combo boxes in one go
+    private ScheduleLookups fetchLookups() throws SQLException, ClassNotFoundException {
+        ScheduleLookups lookups = new ScheduleLookups();
+        timeSlotDao.getAll(timeSlot -> lookups.timeSlots.add(toTimeSlotItem(timeSlot)));
+        roomDao.getAll(room -> lookups.rooms.add(toRoomItem(room)));
+        return lookups;
     }
 
-    private void loadTimeSlots() {
-        try {
-            String sql = "SELECT * FROM timeslots ORDER BY start_time";
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql);
-                 ResultSet rs = ps.executeQuery()) {
-                
-                // Store the previously selected item
-                TimeSlotItem selectedItem = (TimeSlotItem) timeSlotComboBox.getSelectedItem();
-                
-                timeSlotComboBox.removeAllItems();
-                while (rs.next()) {
-                    Time startTime = rs.getTime("start_time");
-                    Time endTime = rs.getTime("end_time");
-                    TimeSlotItem item = new TimeSlotItem(
-                        rs.getLong("id"),
-                        LocalTime.parse(startTime.toString()),
-                        LocalTime.parse(endTime.toString())
-                    );
-                    timeSlotComboBox.addItem(item);
-                    
-                    // Restore the selection if it still exists
-                    if (selectedItem != null && selectedItem.getId().equals(item.getId())) {
-                        timeSlotComboBox.setSelectedItem(item);
-                    }
-                }
-            }
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading time slots: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+    private void applyLookups(ScheduleLookups lookups) {
+        timeSlotModel.setItems(lookups.timeSlots);
+        roomModel.setItems(lookups.rooms);
     }
 
-    private void loadRooms() {
-        try {
-            String sql = "SELECT * FROM rooms ORDER BY room_number";
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql);
-                 ResultSet rs = ps.executeQuery()) {
-                
-                // Store the previously selected item
-                RoomItem selectedItem = (RoomItem) roomComboBox.getSelectedItem();
-                
-                roomComboBox.removeAllItems();
-                while (rs.next()) {
-                    RoomItem item = new RoomItem(
-                        rs.getLong("id"),
-                        rs.getString("room_number")
-                    );
-                    roomComboBox.addItem(item);
-                    
-                    // Restore the selection if it still exists
-                    if (selectedItem != null && selectedItem.getId().equals(item.getId())) {
-                        roomComboBox.setSelectedItem(item);
-                    }
-                }
-            }
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading rooms: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
+    private static RoomItem toRoomItem(Room room) {
+        return new RoomItem(room.getId(), room.getRoomNumber(), room.getCapacity());
+    }
+
+    private static TimeSlotItem toTimeSlotItem(TimeSlot timeSlot) {
+        return new TimeSlotItem(timeSlot.getId(), timeSlot.getStartTime(), timeSlot.getEndTime());
+    }
+
+    private RoomItem findRoomItem(Long id) throws SQLException, ClassNotFoundException {
+        Room room = roomDao.getById(id);
+        return room == null ? null : toRoomItem(room);
+    }
+
+    private TimeSlotItem findTimeSlotItem(Long id) throws SQLException, ClassNotFoundException {
+        TimeSlot timeSlot = timeSlotDao.getById(id);
+        return timeSlot == null ? null : toTimeSlotItem(timeSlot);
+    }
+
+    private List<CourseItem> searchCourses(String term, int limit) throws SQLException, ClassNotFoundException {
+        Map<Long, String> departmentNames = new HashMap<>();
+        departmentDao.findAll(department -> departmentNames.put(department.getId(), department.getName()));
+        List<CourseItem> items = new ArrayList<>();
+        for (Courses course : courseDao.search(term, limit)) {
+            items.add(new CourseItem(course.getId(), course.getName(), departmentNames.get(course.getDeptId())));
         }
+        return items;
+    }
+
+    private List<TeacherItem> searchTeachers(String term, int limit) throws SQLException, ClassNotFoundException {
+        List<TeacherItem> items = new ArrayList<>();
+        teacherDao.search(term, limit).forEach(teacher -> items.add(new TeacherItem(teacher.getId(), teacher.getName())));
+        return items;
     }
 
     private void refreshTable() {
-        tableModel.setRowCount(0);
-        try {
-            String sql = "SELECT cs.id, c.name as course_name, t.name as teacher_name, " +
-                        "ts.start_time, ts.end_time, r.room_number " +
-                        "FROM class_schedules cs " +
-                        "JOIN courses c ON cs.course_id = c.id " +
-                        "JOIN teachers t ON cs.teacher_id = t.id " +
-                        "JOIN timeslots ts ON cs.timeslot_id = ts.id " +
-                        "JOIN rooms r ON cs.room_id = r.id " +
-                        "ORDER BY ts.start_time, c.name";
-            
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql);
-                 ResultSet rs = ps.executeQuery()) {
-                
-                while (rs.next()) {
-                    String timeSlot = formatTimeSlot(
-                        rs.getTime("start_time"),
-                        rs.getTime("end_time")
-                    );
-                    
-                    tableModel.addRow(new Object[]{
-                        rs.getLong("id"),
-                        rs.getString("course_name"),
-                        rs.getString("teacher_name"),
-                        timeSlot,
-                        rs.getString("room_number")
-                    });
-                }
+        scheduleStale = false;
+        loader.load("schedules", this::fetchSchedules, loaded -> {
+            List<ScheduleDetail> details = loaded.details;
+            Map<Long, Integer> sections = sectionsByCourse(details);
+            List<Object[]> rows = new ArrayList<>(details.size());
+            for (ScheduleDetail schedule : details) {
+                rows.add(new Object[]{
+                    schedule.getId(),
+                    schedule.getCourseName(),
+                    schedule.getTeacherName(),
+                    formatTimeSlot(schedule.getStartTime(), schedule.getEndTime()),
+                    schedule.getRoomNumber(),
+                    seats(schedule, loaded.counts, sections)
+                });
             }
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading schedules: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
+            // Row i of the table is schedules[i], so selection can read ids instead of display text
+            schedules = details;
+            BackgroundLoader.replaceRows(tableModel, rows);
+        }, "Error loading schedules");
+    }
+
+    // The schedule comes from the DAO's cache, which its writes and the change feed keep current
+    private ScheduleRows fetchSchedules() throws SQLException, ClassNotFoundException {
+        ScheduleRows rows = new ScheduleRows();
+        rows.counts = enrollmentDao.getCounts();
+        rows.details = classScheduleDao.getCachedDetails();
+        return rows;
+    }
+
+    private static Map<Long, Integer> sectionsByCourse(List<ScheduleDetail> details) {
+        Map<Long, Integer> sections = new HashMap<>();
+        for (ScheduleDetail schedule : details) {
+            sections.merge(schedule.getCourseId(), 1, Integer::sum);
         }
+        return sections;
+    }
+
+    private static String seats(ScheduleDetail schedule, EnrollmentCounts counts, Map<Long, Integer> sections) {
+        int students = counts.seatsPerSection(schedule.getCourseId(), sections.get(schedule.getCourseId()));
+        return students + " / " + schedule.getRoomCapacity()
+            + (students > schedule.getRoomCapacity() ? " (overfull)" : "");
+    }
+
+    private String formatTimeSlot(LocalTime startTime, LocalTime endTime) {
+        return startTime.format(timeFormatter) + " - " + endTime.format(timeFormatter);
     }
 
-    private String formatTimeSlot(Time startTime, Time endTime) {
-        return LocalTime.parse(startTime.toString()).format(timeFormatter) +
-               " - " +
-               LocalTime.parse(endTime.toString()).format(timeFormatter);
+    private static class ScheduleCheck {
+        // The first room or teacher clash, or null
+        private String conflict;
+        // Sections of the course counting this one, and the students each would seat
+        private int sections;
+        private int students;
     }
 
     // Helper classes for combo boxes
+    private static class ScheduleLookups {
+        private final List<TimeSlotItem> timeSlots = new ArrayList<>();
+        private final List<RoomItem> rooms = new ArrayList<>();
+    }
+
+    private static class ScheduleRows {
+        private List<ScheduleDetail> details;
+        private EnrollmentCounts counts;
+    }
+
     private static class CourseItem {
         private final Long id;
         private final String name;
@@ -379,7 +419,7 @@ public class ClassSchedulePanel extends JPanel {
 
         @Override
         public String toString() {
-            return name + " (" + department + ")";
+            return department == null ? name : name + " (" + department + ")";
         }
     }
 
@@ -427,10 +467,12 @@ public class ClassSchedulePanel extends JPanel {
     private static class RoomItem {
         private final Long id;
         private final String roomNumber;
+        private final int capacity;
 
-        public RoomItem(Long id, String roomNumber) {
+        public RoomItem(Long id, String roomNumber, int capacity) {
             this.id = id;
             this.roomNumber = roomNumber;
+            this.capacity = capacity;
         }
 
         public Long getId() {
@@ -439,7 +481,7 @@ public class ClassSchedulePanel extends JPanel {
 
         @Override
         public String toString() {
-            return roomNumber;
+            return roomNumber + " (" + capacity + " seats)";
         }
     }
 
@@ -447,53 +489,7 @@ public class ClassSchedulePanel extends JPanel {
         if (!validateForm()) {
             return;
         }
-
-        try {
-            CourseItem selectedCourse = (CourseItem) courseComboBox.getSelectedItem();
-            TeacherItem selectedTeacher = (TeacherItem) teacherComboBox.getSelectedItem();
-            TimeSlotItem selectedTimeSlot = (TimeSlotItem) timeSlotComboBox.getSelectedItem();
-            RoomItem selectedRoom = (RoomItem) roomComboBox.getSelectedItem();
-
-            // Check for schedule conflicts
-            if (hasScheduleConflict(selectedTimeSlot.getId(), selectedRoom.getId(), null)) {
-                JOptionPane.showMessageDialog(this,
-                    "There is already a class scheduled in this room at this time",
-                    "Schedule Conflict",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            if (hasTeacherConflict(selectedTeacher.getId(), selectedTimeSlot.getId(), null)) {
-                JOptionPane.showMessageDialog(this,
-                    "The selected teacher is already scheduled for another class at this time",
-                    "Schedule Conflict",
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            String sql = "INSERT INTO class_schedules (course_id, teacher_id, timeslot_id, room_id) VALUES (?, ?, ?, ?)";
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                
-                ps.setLong(1, selectedCourse.getId());
-                ps.setLong(2, selectedTeacher.getId());
-                ps.setLong(3, selectedTimeSlot.getId());
-                ps.setLong(4, selectedRoom.getId());
-                ps.executeUpdate();
-                
-                clearForm();
-                refreshTable();
-                JOptionPane.showMessageDialog(this,
-                    "Class schedule added successfully",
-                    "Success",
-                    JOptionPane.INFORMATION_MESSAGE);
-            }
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error adding schedule: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        checkAndSave(null);
     }
 
     private void updateSchedule() {
@@ -508,56 +504,69 @@ public class ClassSchedulePanel extends JPanel {
         if (!validateForm()) {
             return;
         }
+        checkAndSave(selectedScheduleId);
+    }
 
-        try {
-            CourseItem selectedCourse = (CourseItem) courseComboBox.getSelectedItem();
-            TeacherItem selectedTeacher = (TeacherItem) teacherComboBox.getSelectedItem();
-            TimeSlotItem selectedTimeSlot = (TimeSlotItem) timeSlotComboBox.getSelectedItem();
-            RoomItem selectedRoom = (RoomItem) roomComboBox.getSelectedItem();
-
-            // Check for schedule conflicts
-            if (hasScheduleConflict(selectedTimeSlot.getId(), selectedRoom.getId(), selectedScheduleId)) {
-                JOptionPane.showMessageDialog(this,
-                    "There is already a class scheduled in this room at this time",
-                    "Schedule Conflict",
-                    JOptionPane.ERROR_MESSAGE);
+    // The clash and room size checks may have to reload the schedule or the enrollment counts, so they run off the
+    // EDT; the booking is saved once they pass and the user has agreed to an undersized room
+    private void checkAndSave(Long scheduleId) {
+        CourseItem course = coursePicker.getSelection();
+        TeacherItem teacher = teacherPicker.getSelection();
+        TimeSlotItem timeSlot = (TimeSlotItem) timeSlotComboBox.getSelectedItem();
+        RoomItem room = (RoomItem) roomComboBox.getSelectedItem();
+        loader.load("schedule-check", () -> {
+            ScheduleCheck check = new ScheduleCheck();
+            ScheduleConflicts conflicts = classScheduleDao.getConflicts();
+            check.conflict = findConflict(conflicts, teacher, timeSlot, room, scheduleId);
+            check.sections = conflicts.sectionsOf(course.getId(), scheduleId) + 1;
+            check.students = enrollmentDao.getCounts().seatsPerSection(course.getId(), check.sections);
+            return check;
+        }, check -> {
+            if (check.conflict != null) {
+                showConflict(check.conflict);
                 return;
             }
-
-            if (hasTeacherConflict(selectedTeacher.getId(), selectedTimeSlot.getId(), selectedScheduleId)) {
-                JOptionPane.showMessageDialog(this,
-                    "The selected teacher is already scheduled for another class at this time",
-                    "Schedule Conflict",
-                    JOptionPane.ERROR_MESSAGE);
+            if (check.students > room.capacity && !confirmRoomSize(course, room, check.sections, check.students)) {
                 return;
             }
+            saveSchedule(new ClassSchedule(scheduleId, course.getId(), teacher.getId(), timeSlot.getId(),
+                room.getId()));
+        }, "Error checking the schedule");
+    }
 
-            String sql = "UPDATE class_schedules SET course_id = ?, teacher_id = ?, timeslot_id = ?, room_id = ? WHERE id = ?";
-            try (Connection conn = DatabaseConnection.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                
-                ps.setLong(1, selectedCourse.getId());
-                ps.setLong(2, selectedTeacher.getId());
-                ps.setLong(3, selectedTimeSlot.getId());
-                ps.setLong(4, selectedRoom.getId());
-                ps.setLong(5, selectedScheduleId);
-                ps.executeUpdate();
-                
-                clearForm();
-                refreshTable();
-                JOptionPane.showMessageDialog(this,
-                    "Class schedule updated successfully",
-                    "Success",
-                    JOptionPane.INFORMATION_MESSAGE);
+    private void saveSchedule(ClassSchedule schedule) {
+        boolean adding = schedule.getId() == null;
+        try {
+            if (adding) {
+                classScheduleDao.save(schedule);
+            } else {
+                classScheduleDao.update(schedule);
             }
+            clearForm();
+            JOptionPane.showMessageDialog(this,
+                adding ? "Class schedule added successfully" : "Class schedule updated successfully",
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
         } catch (SQLException | ClassNotFoundException e) {
+            // Another user booked the room or teacher after the check ran on this desktop's copy of the schedule
+            if (e instanceof SQLException && ClassScheduleDao.isClash((SQLException) e)) {
+                showConflict(e.getMessage());
+                return;
+            }
             JOptionPane.showMessageDialog(this,
-                "Error updating schedule: " + e.getMessage(),
+                (adding ? "Error adding schedule: " : "Error updating schedule: ") + e.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    private void showConflict(String conflict) {
+        JOptionPane.showMessageDialog(this,
+            conflict,
+            "Schedule Conflict",
+            JOptionPane.ERROR_MESSAGE);
+    }
+
     private void deleteSchedule() {
         if (selectedScheduleId == null) {
             JOptionPane.showMessageDialog(this,
@@ -574,20 +583,12 @@ public class ClassSchedulePanel extends JPanel {
 
         if (confirm == JOptionPane.YES_OPTION) {
             try {
-                String sql = "DELETE FROM class_schedules WHERE id = ?";
-                try (Connection conn = DatabaseConnection.getConnection();
-                     PreparedStatement ps = conn.prepareStatement(sql)) {
-                    
-                    ps.setLong(1, selectedScheduleId);
-                    ps.executeUpdate();
-                    
-                    clearForm();
-                    refreshTable();
-                    JOptionPane.showMessageDialog(this,
-                        "Class schedule deleted successfully",
-                        "Success",
-                        JOptionPane.INFORMATION_MESSAGE);
-                }
+                classScheduleDao.delete(selectedScheduleId);
+                clearForm();
+                JOptionPane.showMessageDialog(this,
+                    "Class schedule deleted successfully",
+                    "Success",
+                    JOptionPane.INFORMATION_MESSAGE);
             } catch (SQLException | ClassNotFoundException e) {
                 JOptionPane.showMessageDialog(this,
                     "Error deleting schedule: " + e.getMessage(),
@@ -597,9 +598,82 @@ public class ClassSchedulePanel extends JPanel {
         }
     }
 
+    private void generateTimetable() {
+        int confirm = JOptionPane.showConfirmDialog(this,
+            "Re-plan the time slot and room of every scheduled class?\n" +
+            "Classes keep their course and teacher, and stay in their current time slot where they can.",
+            "Generate Timetable",
+            JOptionPane.YES_NO_OPTION);
+
+        if (confirm == JOptionPane.YES_OPTION) {
+            loader.load("timetable", this::solveTimetable, this::showTimetable, "Error generating timetable");
+        }
+    }
+
+    // Saved only if every class found a place, so a failed run leaves the schedule as it was
+    private TimetableSolver.Timetable solveTimetable() throws SQLException, ClassNotFoundException {
+        List<TimetableSolver.Section> sections = classScheduleDao.getSections();
+        TimetableSolver.Timetable timetable = new TimetableSolver(roomDao.getAll(), timeSlotDao.getAll())
+            .solve(sections);
+        if (timetable.isComplete()) {
+            classScheduleDao.saveTimetable(timetable);
+        }
+        return timetable;
+    }
+
+    private void showTimetable(TimetableSolver.Timetable timetable) {
+        if (!timetable.isComplete()) {
+            int total = timetable.getPlacements().size() + timetable.getUnplaced().size();
+            JOptionPane.showMessageDialog(this,
+                "Could not fit " + timetable.getUnplaced().size() + " of " + total +
+                " classes into a room big enough without a clash.\n" +
+                "Add rooms or time slots and try again. The schedule has not been changed.",
+                "Generate Timetable",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        clearForm();
+        JOptionPane.showMessageDialog(this,
+            "Scheduled " + timetable.getPlacements().size() + " classes; " +
+            timetable.getPreferenceMisses() + " of them moved to a different time slot",
+            "Success",
+            JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // Describes the first room or teacher clash, comparing times so overlapping slots count; null if there is none
+    private String findConflict(ScheduleConflicts conflicts, TeacherItem teacher, TimeSlotItem timeSlot, RoomItem room,
+                                Long excludeScheduleId) {
+        List<ScheduleDetail> inRoom = conflicts.roomConflicts(room.getId(), timeSlot.startTime, timeSlot.endTime,
+            excludeScheduleId);
+        if (!inRoom.isEmpty()) {
+            return "Room " + room.roomNumber + " is already booked at this time for " + describe(inRoom.get(0));
+        }
+        List<ScheduleDetail> forTeacher = conflicts.teacherConflicts(teacher.getId(), timeSlot.startTime,
+            timeSlot.endTime, excludeScheduleId);
+        if (!forTeacher.isEmpty()) {
+            return "The selected teacher is already scheduled at this time for " + describe(forTeacher.get(0));
+        }
+        return null;
+    }
+
+    // Warns that the room seats fewer than the course's students per section; true to go ahead
+    private boolean confirmRoomSize(CourseItem course, RoomItem room, int sections, int students) {
+        int choice = JOptionPane.showConfirmDialog(this,
+            "Room " + room.roomNumber + " seats " + room.capacity + ", but " + course.name + " has " + students +
+            " students" + (sections > 1 ? " per section" : "") + ".\nSchedule it in this room anyway?",
+            "Room Too Small",
+            JOptionPane.YES_NO_OPTION,
+            JOptionPane.WARNING_MESSAGE);
+        return choice == JOptionPane.YES_OPTION;
+    }
+
+    private String describe(ScheduleDetail schedule) {
+        return schedule.getCourseName() + " (" + formatTimeSlot(schedule.getStartTime(), schedule.getEndTime()) + ")";
+    }
+
     private void clearForm() {
-        courseComboBox.setSelectedIndex(-1);
-        teacherComboBox.setSelectedIndex(-1);
+        coursePicker.setSelection(null);
+        teacherPicker.setSelection(null);
         timeSlotComboBox.setSelectedIndex(-1);
         roomComboBox.setSelectedIndex(-1);
         selectedScheduleId = null;
@@ -607,7 +681,7 @@ public class ClassSchedulePanel extends JPanel {
     }
 
     private boolean validateForm() {
-        if (courseComboBox.getSelectedItem() == null) {
+        if (coursePicker.getSelection() == null) {
             JOptionPane.showMessageDialog(this,
                 "Please select a course",
                 "Error",
@@ -615,7 +689,7 @@ public class ClassSchedulePanel extends JPanel {
             return false;
         }
 
-        if (teacherComboBox.getSelectedItem() == null) {
+        if (teacherPicker.getSelection() == null) {
             JOptionPane.showMessageDialog(this,
                 "Please select a teacher",
                 "Error",
@@ -623,7 +697,8 @@ public class ClassSchedulePanel extends JPanel {
             return false;
         }
 
-        if (timeSlotComboBox.getSelectedItem() == null) {
+        TimeSlotItem timeSlot = (TimeSlotItem) timeSlotComboBox.getSelectedItem();
+        if (timeSlot == null) {
             JOptionPane.showMessageDialog(this,
                 "Please select a time slot",
                 "Error",
@@ -631,6 +706,15 @@ public class ClassSchedulePanel extends JPanel {
             return false;
         }
 
+        // Slots from before the timeslots check can end before they start; they cannot be checked for clashes
+        if (!timeSlot.startTime.isBefore(timeSlot.endTime)) {
+            JOptionPane.showMessageDialog(this,
+                "The selected time slot does not end after it starts; please fix it under Time Slot Management first",
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+
         if (roomComboBox.getSelectedItem() == null) {
             JOptionPane.showMessageDialog(this,
                 "Please select a room",
@@ -641,57 +725,4 @@ public class ClassSchedulePanel extends JPanel {
 
         return true;
     }
-
-    private boolean hasScheduleConflict(Long timeSlotId, Long roomId, Long excludeScheduleId) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT COUNT(*) FROM class_schedules " +
-                    "WHERE timeslot_id = ? AND room_id = ? " +
-                    (excludeScheduleId != null ? "AND id != ?" : "");
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setLong(1, timeSlotId);
-            ps.setLong(2, roomId);
-            if (excludeScheduleId != null) {
-                ps.setLong(3, excludeScheduleId);
-            }
-            
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-        }
-        return false;
-    }
-
-    private boolean hasTeacherConflict(Long teacherId, Long timeSlotId, Long excludeScheduleId) throws SQLException, ClassNotFoundException {
-        String sql = "SELECT COUNT(*) FROM class_schedules " +
-                    "WHERE teacher_id = ? AND timeslot_id = ? " +
-                    (excludeScheduleId != null ? "AND id != ?" : "");
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setLong(1, teacherId);
-            ps.setLong(2, timeSlotId);
-            if (excludeScheduleId != null) {
-                ps.setLong(3, excludeScheduleId);
-            }
-            
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-        }
-        return false;
-    }
-
-    private void selectComboBoxItem(JComboBox<?> comboBox, String value) {
-        for (int i = 0; i < comboBox.getItemCount(); i++) {
-            if (comboBox.getItemAt(i).toString().equals(value)) {
-                comboBox.setSelectedIndex(i);
-                break;
-            }
-        }
-    }
-} 
\ No newline at end of file
+}
@@ -1,29 +1,43 @@
 package gui;
 
+import dao.ChangeEvents;
 import dao.CourseDao;
 import dao.DepartmentDao;
 import model.Courses;
+import model.Department;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 public class CoursePanel extends JPanel {
     private final CourseDao courseDao;
     private final DepartmentDao departmentDao;
+    private final BackgroundLoader loader;
     private JTable courseTable;
     private DefaultTableModel tableModel;
     private JTextField nameField;
     private JTextField creditField;
+    private JTextField searchField;
     private JComboBox<DepartmentItem> departmentComboBox;
+    private final IdComboBoxModel<DepartmentItem> departmentModel = new IdComboBoxModel<>(DepartmentItem::getId);
+    // Row i of the table is courses[i], so selection reads ids instead of display text
+    private List<Courses> courses = new ArrayList<>();
     private Long selectedCourseId;
     private static final Pattern CREDIT_PATTERN = Pattern.compile("^[0-9]+(\\.[0-9]+)?$");
+    private static final int SEARCH_LIMIT = 200;
 
     public CoursePanel() throws SQLException, ClassNotFoundException {
         courseDao = new CourseDao();
         departmentDao = new DepartmentDao();
+        loader = new BackgroundLoader(this);
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -51,10 +65,21 @@ public class CoursePanel extends JPanel {
         splitPane.setRightComponent(tablePanel);
 
         add(splitPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
         // Load initial data
-        loadDepartments();
         refreshTable();
+
+        // Course rows written here or by other users are patched in; a department change renames rows and the
+        // combo box, so it reloads, keeping a search on screen if there is one
+        ChangeEvents.subscribe(ChangeEvents.COURSES, event -> SwingUtilities.invokeLater(() ->
+            TableRows.apply(loader, "courses", event, Function.identity(), courseDao::getCourseById,
+                course -> putCourse(course, departmentName(course.getDeptId())), this::removeCourse,
+                this::reloadRows)));
+        ChangeEvents.subscribe(ChangeEvents.DEPARTMENTS, event -> SwingUtilities.invokeLater(() -> {
+            refreshDepartments();
+            reloadRows();
+        }));
     }
 
     private JPanel createFormPanel() {
@@ -93,7 +118,7 @@ public class CoursePanel extends JPanel {
 
         gbc.gridx = 1;
         gbc.weightx = 1.0;
-        departmentComboBox = new JComboBox<>();
+        departmentComboBox = new JComboBox<>(departmentModel);
         formPanel.add(departmentComboBox, gbc);
 
         // Buttons Panel
@@ -142,7 +167,7 @@ public class CoursePanel extends JPanel {
 
         // Add search panel
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JTextField searchField = new JTextField(20);
+        searchField = new JTextField(20);
         JButton searchButton = new JButton("Search");
         JButton refreshButton = new JButton("Refresh");
 
@@ -153,8 +178,17 @@ public class CoursePanel extends JPanel {
 
         tablePanel.add(searchPanel, BorderLayout.NORTH);
 
-        // Add search functionality
+        // Search as the user types; the button searches straight away
+        Timer searchDelay = SearchField.whenTypingPauses(searchField, () -> {
+            String searchTerm = searchField.getText().trim();
+            if (searchTerm.isEmpty()) {
+                refreshTable();
+            } else {
+                searchCourses(searchTerm);
+            }
+        });
         searchButton.addActionListener(e -> {
+            searchDelay.stop();
             String searchTerm = searchField.getText().trim();
             if (!searchTerm.isEmpty()) {
                 searchCourses(searchTerm);
@@ -163,6 +197,7 @@ public class CoursePanel extends JPanel {
 
         refreshButton.addActionListener(e -> {
             searchField.setText("");
+            searchDelay.stop();
             refreshTable();
         });
 
@@ -171,17 +206,11 @@ public class CoursePanel extends JPanel {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = courseTable.getSelectedRow();
                 if (selectedRow != -1) {
-                    selectedCourseId = Long.parseLong(courseTable.getValueAt(selectedRow, 0).toString());
-                    nameField.setText(courseTable.getValueAt(selectedRow, 1).toString());
-                    creditField.setText(courseTable.getValueAt(selectedRow, 2).toString());
-                    String deptName = courseTable.getValueAt(selectedRow, 3).toString();
-                    
-                    for (int i = 0; i < departmentComboBox.getItemCount(); i++) {
-                        if (departmentComboBox.getItemAt(i).toString().equals(deptName)) {
-                            departmentComboBox.setSelectedIndex(i);
-                            break;
-                        }
-                    }
+                    Courses course = courses.get(selectedRow);
+                    selectedCourseId = course.getId();
+                    nameField.setText(course.getName());
+                    creditField.setText(course.getCredit());
+                    departmentModel.selectId(course.getDeptId());
                 }
             }
         });
@@ -189,95 +218,108 @@ public class CoursePanel extends JPanel {
         return tablePanel;
     }
 
-    private void loadDepartments() {
-        try {
-            String sql = "SELECT * FROM departments ORDER BY name";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            departmentComboBox.removeAllItems();
-            while (rs.next()) {
-                departmentComboBox.addItem(new DepartmentItem(
-                    rs.getLong("id"),
-                    rs.getString("name")
-                ));
+    // The full list replaces any search results, so a search still running must not overwrite it
+    private void refreshTable() {
+        loader.cancel("course-search");
+        refreshDepartments();
+        loader.load("courses", this::fetchCourseData, this::showCourses, "Error loading courses");
+    }
+
+    // Loaded apart from the rows, so a search that cancels the row load leaves the combo box filled
+    private void refreshDepartments() {
+        loader.load("course-departments", () -> {
+            List<DepartmentItem> items = new ArrayList<>();
+            for (Department department : departmentDao.findAll()) {
+                items.add(new DepartmentItem(department.getId(), department.getName()));
             }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading departments: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
+            return items;
+        }, departmentModel::setItems, "Error loading departments");
+    }
+
+    // Whatever the table shows now, the search results or the full list, read again
+    private void reloadRows() {
+        String searchTerm = searchField.getText().trim();
+        if (searchTerm.isEmpty()) {
+            refreshTable();
+        } else {
+            searchCourses(searchTerm);
         }
     }
 
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-        try {
-            String sql = "SELECT c.id, c.name, c.credit, d.name as dept_name " +
-                        "FROM courses c " +
-                        "JOIN departments d ON c.dept_id = d.id " +
-                        "ORDER BY c.name";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getLong("id"),
-                    rs.getString("name"),
-                    rs.getString("credit"),
-                    rs.getString("dept_name")
-                });
+    private CourseData fetchCourseData() throws SQLException, ClassNotFoundException {
+        CourseData data = new CourseData();
+        Map<Long, String> departmentNames = departmentNames();
+        courseDao.getAllCourses(course -> {
+            String deptName = departmentNames.get(course.getDeptId());
+            if (deptName != null) {
+                data.add(course, deptName);
             }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading courses: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        });
+        return data;
+    }
+
+    private void showCourses(CourseData data) {
+        courses = data.courses;
+        BackgroundLoader.replaceRows(tableModel, data.rows);
     }
 
+    // Best matches on course or department name first, so a typo still finds the course
     private void searchCourses(String searchTerm) {
-        tableModel.setRowCount(0);
-        try {
-            String sql = "SELECT c.id, c.name, c.credit, d.name as dept_name " +
-                        "FROM courses c " +
-                        "JOIN departments d ON c.dept_id = d.id " +
-                        "WHERE LOWER(c.name) LIKE LOWER(?) OR LOWER(d.name) LIKE LOWER(?) " +
-                        "ORDER BY c.name";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setString(1, "%" + searchTerm + "%");
-            ps.setString(2, "%" + searchTerm + "%");
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getLong("id"),
-                    rs.getString("name"),
-                    rs.getString("credit"),
-                    rs.getString("dept_name")
-                });
+        // A full list still loading would otherwise replace the results
+        loader.cancel("courses");
+        loader.loadLatest("course-search", () -> fetchSearchResults(searchTerm), this::showCourses,
+            "Error searching courses");
+    }
+
+    private CourseData fetchSearchResults(String searchTerm) throws SQLException, ClassNotFoundException {
+        Map<Long, String> departmentNames = departmentNames();
+        CourseData data = new CourseData();
+        for (Courses course : courseDao.search(searchTerm, SEARCH_LIMIT)) {
+            data.add(course, departmentNames.get(course.getDeptId()));
+        }
+        return data;
+    }
+
+    private Map<Long, String> departmentNames() throws SQLException, ClassNotFoundException {
+        Map<Long, String> departmentNames = new HashMap<>();
+        for (Department department : departmentDao.findAll()) {
+            departmentNames.put(department.getId(), department.getName());
+        }
+        return departmentNames;
+    }
+
+    // Patches one course into the table and the list behind it, keeping row i and courses[i] in step
+    private void putCourse(Courses course, String deptName) {
+        int index = TableRows.indexOf(tableModel, course.getId());
+        if (index == -1) {
+            courses.add(course);
+        } else {
+            courses.set(index, course);
+        }
+        TableRows.put(tableModel, courseRow(course, deptName));
+    }
+
+    private void removeCourse(Long id) {
+        int index = TableRows.indexOf(tableModel, id);
+        if (index != -1) {
+            courses.remove(index);
+            tableModel.removeRow(index);
+        }
+    }
+
+    // The department's name as last loaded into the combo box
+    private String departmentName(Long deptId) {
+        for (int i = 0; i < departmentModel.getSize(); i++) {
+            DepartmentItem department = departmentModel.getElementAt(i);
+            if (department.getId().equals(deptId)) {
+                return department.toString();
             }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error searching courses: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
         }
+        return null;
+    }
+
+    private static Object[] courseRow(Courses course, String deptName) {
+        return new Object[]{course.getId(), course.getName(), course.getCredit(), deptName};
     }
 
     private void addCourse() {
@@ -303,7 +345,6 @@ public class CoursePanel extends JPanel {
             
             courseDao.addCourse(course);
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Course added successfully",
                 "Success",
@@ -346,9 +387,11 @@ public class CoursePanel extends JPanel {
                 selectedDept.getId()
             );
             
-            courseDao.updateCourse(course);
+            // The stored row reaches the table as a change event; a course deleted meanwhile is dropped here
+            if (courseDao.updateCourse(course) == null) {
+                removeCourse(selectedCourseId);
+            }
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Course updated successfully",
                 "Success",
@@ -379,7 +422,6 @@ public class CoursePanel extends JPanel {
             try {
                 courseDao.deleteCourse(selectedCourseId);
                 clearForm();
-                refreshTable();
                 JOptionPane.showMessageDialog(this,
                     "Course deleted successfully",
                     "Success",
@@ -440,6 +482,16 @@ public class CoursePanel extends JPanel {
         courseTable.clearSelection();
     }
 
+    private static class CourseData {
+        private final List<Courses> courses = new ArrayList<>();
+        private final List<Object[]> rows = new ArrayList<>();
+
+        private void add(Courses course, String deptName) {
+            courses.add(course);
+            rows.add(courseRow(course, deptName));
+        }
+    }
+
     // Helper class for department combo box
     private static class DepartmentItem {
         private final Long id;
@@ -1,5 +1,6 @@
 package gui;
 
+import dao.ChangeEvents;
 import dao.DepartmentDao;
 import model.Department;
 
@@ -7,9 +8,12 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DepartmentPanel extends JPanel {
     private final DepartmentDao departmentDao;
+    private final BackgroundLoader loader;
     private JTable departmentTable;
     private DefaultTableModel tableModel;
     private JTextField nameField;
@@ -17,6 +21,7 @@ public class DepartmentPanel extends JPanel {
 
     public DepartmentPanel() throws SQLException, ClassNotFoundException {
         departmentDao = new DepartmentDao();
+        loader = new BackgroundLoader(this);
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -77,6 +82,7 @@ public class DepartmentPanel extends JPanel {
         
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
         // Load data
         refreshTable();
@@ -87,6 +93,11 @@ public class DepartmentPanel extends JPanel {
         deleteButton.addActionListener(e -> deleteDepartment());
         clearButton.addActionListener(e -> clearForm());
 
+        // Rows written here or by other users are patched in as they happen instead of waiting for a refresh
+        ChangeEvents.subscribe(ChangeEvents.DEPARTMENTS, event -> SwingUtilities.invokeLater(() ->
+            TableRows.apply(loader, "departments", tableModel, event, DepartmentPanel::toRow, this::findRow,
+                this::refreshTable)));
+
         departmentTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = departmentTable.getSelectedRow();
@@ -99,32 +110,27 @@ public class DepartmentPanel extends JPanel {
     }
 
     private void refreshTable() {
-        tableModel.setRowCount(0);
-        try {
-            departmentDao.findAll();
-            // Since findAll() doesn't return a list, we need to query each department individually
-            // This is not efficient but we'll work with the existing DAO
-            String sql = "select * from departments";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getLong("id"),
-                    rs.getString("name")
-                });
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading departments: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        loader.load("departments", this::fetchDepartments,
+            rows -> BackgroundLoader.replaceRows(tableModel, rows),
+            "Error loading departments");
+    }
+
+    private List<Object[]> fetchDepartments() throws SQLException, ClassNotFoundException {
+        List<Object[]> rows = new ArrayList<>();
+        departmentDao.findAll(department -> rows.add(toRow(department)));
+        return rows;
+    }
+
+    private Object[] findRow(Long id) throws SQLException, ClassNotFoundException {
+        Department department = departmentDao.findDepartmentById(id);
+        return department == null ? null : toRow(department);
+    }
+
+    private static Object[] toRow(Department department) {
+        return new Object[]{
+            department.getId(),
+            department.getName()
+        };
     }
 
     private void addDepartment() {
@@ -142,7 +148,6 @@ public class DepartmentPanel extends JPanel {
             Department department = new Department(name);
             departmentDao.save(department);
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Department added successfully",
                 "Success",
@@ -176,9 +181,11 @@ public class DepartmentPanel extends JPanel {
 
         try {
             Department department = new Department(name);
-            departmentDao.update(selectedDepartmentId, department);
+            // The stored row reaches the table as a change event; a row deleted meanwhile is dropped here
+            if (departmentDao.update(selectedDepartmentId, department) == null) {
+                TableRows.remove(tableModel, selectedDepartmentId);
+            }
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Department updated successfully",
                 "Success",
@@ -209,7 +216,6 @@ public class DepartmentPanel extends JPanel {
             try {
                 departmentDao.delete(selectedDepartmentId);
                 clearForm();
-                refreshTable();
                 JOptionPane.showMessageDialog(this,
                     "Department deleted successfully",
                     "Success",
@@ -1,36 +1,66 @@
 package gui;
 
+import dao.ChangeEvents;
 import dao.EnrollmentDao;
 import dao.StudentDao;
 import dao.CourseDao;
+import dao.DepartmentDao;
 import model.Enrollment;
+import model.EnrollmentDetail;
 import model.Courses;
+import model.Student;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class EnrollmentPanel extends JPanel {
     private final EnrollmentDao enrollmentDao;
     private final StudentDao studentDao;
     private final CourseDao courseDao;
+    private final DepartmentDao departmentDao;
+    private final BackgroundLoader loader;
     private JTable enrollmentTable;
     private JTable studentListTable;
-    private DefaultTableModel enrollmentTableModel;
-    private DefaultTableModel studentListTableModel;
-    private JComboBox<StudentItem> studentComboBox;
-    private JComboBox<CourseItem> courseComboBox;
+    private PagedTableModel<EnrollmentDetail> enrollmentTableModel;
+    private PagedTableModel<Student> studentListTableModel;
+    private SearchField<StudentItem> studentPicker;
+    private SearchField<CourseItem> coursePicker;
     private JComboBox<String> semesterComboBox;
     private JComboBox<String> gradeComboBox;
     private Long selectedEnrollmentId;
+    // Table column -> database sort order
+    private static final EnrollmentDao.SortColumn[] SORT_COLUMNS = {
+        EnrollmentDao.SortColumn.ID, EnrollmentDao.SortColumn.STUDENT, EnrollmentDao.SortColumn.COURSE,
+        EnrollmentDao.SortColumn.SEMESTER, EnrollmentDao.SortColumn.GRADE
+    };
+    private static final StudentDao.SortColumn[] STUDENT_SORT_COLUMNS = {
+        StudentDao.SortColumn.ID, StudentDao.SortColumn.NAME, StudentDao.SortColumn.EMAIL, StudentDao.SortColumn.DOB
+    };
     private static final String[] GRADES = {"A", "B", "C", "D", "F", "I", "W"};
+    // Width of enrollments.semester
+    private static final int MAX_SEMESTER_LENGTH = 20;
 
     public EnrollmentPanel() throws SQLException, ClassNotFoundException {
         enrollmentDao = new EnrollmentDao();
         studentDao = new StudentDao();
         courseDao = new CourseDao();
+        departmentDao = new DepartmentDao();
+        loader = new BackgroundLoader(this);
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -38,20 +68,36 @@ public class EnrollmentPanel extends JPanel {
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
         splitPane.setDividerLocation(400);
         add(splitPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
         // Left panel - Student List
         JPanel leftPanel = new JPanel(new BorderLayout(5, 5));
         leftPanel.setBorder(BorderFactory.createTitledBorder("Available Students"));
         
-        // Student List Table
+        // Student List Table, fetched a page at a time as it scrolls
         String[] studentColumns = {"ID", "Name", "Email", "Date of Birth"};
-        studentListTableModel = new DefaultTableModel(studentColumns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        studentListTableModel = new PagedTableModel<>("student-list", studentColumns,
+            new PagedTableModel.PageSource<>() {
+                @Override
+                public int count() throws SQLException, ClassNotFoundException {
+                    return studentDao.countAll();
+                }
+
+                @Override
+                public List<Student> fetch(int sortColumn, boolean ascending, int offset, int limit,
+                                           Student after) throws SQLException, ClassNotFoundException {
+                    return studentDao.findPage(STUDENT_SORT_COLUMNS[sortColumn], ascending, offset, limit, after);
+                }
+            },
+            (student, column) -> switch (column) {
+                case 0 -> student.getId();
+                case 1 -> student.getName();
+                case 2 -> student.getEmail();
+                default -> student.getDob();
+            },
+            loader, 1, true);
         studentListTable = new JTable(studentListTableModel);
+        studentListTableModel.installSortOnHeaderClick(studentListTable);
         JScrollPane studentScrollPane = new JScrollPane(studentListTable);
         leftPanel.add(studentScrollPane, BorderLayout.CENTER);
 
@@ -77,7 +123,7 @@ public class EnrollmentPanel extends JPanel {
         gbc.insets = new Insets(5, 5, 5, 5);
         gbc.anchor = GridBagConstraints.WEST;
 
-        // Student ComboBox
+        // Student search
         gbc.gridx = 0;
         gbc.gridy = 0;
         formPanel.add(new JLabel("Student:"), gbc);
@@ -85,11 +131,10 @@ public class EnrollmentPanel extends JPanel {
         gbc.gridx = 1;
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.weightx = 1.0;
-        studentComboBox = new JComboBox<>();
-        loadStudents();
-        formPanel.add(studentComboBox, gbc);
+        studentPicker = new SearchField<>(loader, "student-search", this::searchStudents);
+        formPanel.add(studentPicker, gbc);
 
-        // Course ComboBox
+        // Course search
         gbc.gridx = 0;
         gbc.gridy = 1;
         gbc.weightx = 0;
@@ -97,9 +142,8 @@ public class EnrollmentPanel extends JPanel {
 
         gbc.gridx = 1;
         gbc.weightx = 1.0;
-        courseComboBox = new JComboBox<>();
-        loadCourses();
-        formPanel.add(courseComboBox, gbc);
+        coursePicker = new SearchField<>(loader, "course-search", this::searchCourses);
+        formPanel.add(coursePicker, gbc);
 
         // Semester ComboBox
         gbc.gridx = 0;
@@ -126,11 +170,13 @@ public class EnrollmentPanel extends JPanel {
         JButton updateButton = new JButton("Update Grade");
         JButton deleteButton = new JButton("Delete");
         JButton clearButton = new JButton("Clear");
+        JButton importButton = new JButton("Import CSV");
 
         buttonsPanel.add(addButton);
         buttonsPanel.add(updateButton);
         buttonsPanel.add(deleteButton);
         buttonsPanel.add(clearButton);
+        buttonsPanel.add(importButton);
 
         gbc.gridx = 0;
         gbc.gridy = 4;
@@ -140,13 +186,29 @@ public class EnrollmentPanel extends JPanel {
 
         // Enrollment Table
         String[] enrollmentColumns = {"ID", "Student", "Course", "Semester", "Grade"};
-        enrollmentTableModel = new DefaultTableModel(enrollmentColumns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        enrollmentTableModel = new PagedTableModel<>("enrollments", enrollmentColumns,
+            new PagedTableModel.PageSource<>() {
+                @Override
+                public int count() throws SQLException, ClassNotFoundException {
+                    return enrollmentDao.countAll();
+                }
+
+                @Override
+                public List<EnrollmentDetail> fetch(int sortColumn, boolean ascending, int offset, int limit,
+                                                    EnrollmentDetail after) throws SQLException, ClassNotFoundException {
+                    return enrollmentDao.getDetailsPage(SORT_COLUMNS[sortColumn], ascending, offset, limit, after);
+                }
+            },
+            (detail, column) -> switch (column) {
+                case 0 -> detail.getId();
+                case 1 -> detail.getStudentName();
+                case 2 -> detail.getCourseName();
+                case 3 -> detail.getSemester();
+                default -> detail.getGrade();
+            },
+            loader, 3, false);
         enrollmentTable = new JTable(enrollmentTableModel);
+        enrollmentTableModel.installSortOnHeaderClick(enrollmentTable);
         JScrollPane enrollmentScrollPane = new JScrollPane(enrollmentTable);
 
         // Right Panel Layout
@@ -166,6 +228,14 @@ public class EnrollmentPanel extends JPanel {
         updateButton.addActionListener(e -> updateGrade());
         deleteButton.addActionListener(e -> deleteEnrollment());
         clearButton.addActionListener(e -> clearForm());
+        importButton.addActionListener(e -> importEnrollments());
+
+        // Enrollments and students written here, in other panels or by other users are patched into the cached pages
+        ChangeEvents.subscribe(ChangeEvents.ENROLLMENTS, event -> SwingUtilities.invokeLater(() ->
+            enrollmentTableModel.apply(event, EnrollmentDetail::getId, EnrollmentPanel::withStoredGrade,
+                enrollmentDao::getDetailById)));
+        ChangeEvents.subscribe(ChangeEvents.STUDENTS, event -> SwingUtilities.invokeLater(() ->
+            studentListTableModel.apply(event, Student::getId, (stored, shown) -> stored, studentDao::findById)));
 
         // Double-click on student list to select student
         studentListTable.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -173,14 +243,9 @@ public class EnrollmentPanel extends JPanel {
             public void mouseClicked(java.awt.event.MouseEvent evt) {
                 if (evt.getClickCount() == 2) {
                     int row = studentListTable.getSelectedRow();
-                    if (row != -1) {
-                        String studentName = studentListTable.getValueAt(row, 1).toString();
-                        for (int i = 0; i < studentComboBox.getItemCount(); i++) {
-                            if (studentComboBox.getItemAt(i).toString().equals(studentName)) {
-                                studentComboBox.setSelectedIndex(i);
-                                break;
-                            }
-                        }
+                    Student student = row == -1 ? null : studentListTableModel.getRow(row);
+                    if (student != null) {
+                        studentPicker.setSelection(new StudentItem(student.getId(), student.getName(), student.getEmail()));
                     }
                 }
             }
@@ -189,101 +254,40 @@ public class EnrollmentPanel extends JPanel {
         enrollmentTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = enrollmentTable.getSelectedRow();
-                if (selectedRow != -1) {
-                    selectedEnrollmentId = Long.parseLong(enrollmentTable.getValueAt(selectedRow, 0).toString());
-                    String studentName = enrollmentTable.getValueAt(selectedRow, 1).toString();
-                    String courseName = enrollmentTable.getValueAt(selectedRow, 2).toString();
-                    String semester = enrollmentTable.getValueAt(selectedRow, 3).toString();
-                    String grade = enrollmentTable.getValueAt(selectedRow, 4).toString();
-
-                    selectComboBoxItem(studentComboBox, studentName);
-                    selectComboBoxItem(courseComboBox, courseName);
-                    selectComboBoxItem(semesterComboBox, semester);
-                    selectComboBoxItem(gradeComboBox, grade);
+                EnrollmentDetail detail = selectedRow == -1 ? null : enrollmentTableModel.getRow(selectedRow);
+                if (detail != null) {
+                    selectedEnrollmentId = detail.getId();
+
+                    studentPicker.setSelection(new StudentItem(detail.getStudentId(), detail.getStudentName(), null));
+                    coursePicker.setSelection(new CourseItem(detail.getCourseId(), detail.getCourseName(), null));
+                    // Fixed lists of strings, so the value is the item
+                    semesterComboBox.setSelectedItem(detail.getSemester());
+                    gradeComboBox.setSelectedItem(detail.getGrade());
                 }
             }
         });
     }
 
     private void refreshStudentList() {
-        studentListTableModel.setRowCount(0);
-        try {
-            String sql = "SELECT id, name, email, dob FROM students ORDER BY name";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                studentListTableModel.addRow(new Object[]{
-                    rs.getLong("id"),
-                    rs.getString("name"),
-                    rs.getString("email"),
-                    rs.getDate("dob")
-                });
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading student list: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        studentListTableModel.refresh();
     }
 
-    private void loadStudents() {
-        try {
-            String sql = "SELECT * FROM students ORDER BY name";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            studentComboBox.removeAllItems();
-            while (rs.next()) {
-                studentComboBox.addItem(new StudentItem(
-                    rs.getLong("id"),
-                    rs.getString("name")
-                ));
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading students: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
+    private List<StudentItem> searchStudents(String term, int limit) throws SQLException, ClassNotFoundException {
+        List<StudentItem> items = new ArrayList<>();
+        for (Student student : studentDao.search(term, limit)) {
+            items.add(new StudentItem(student.getId(), student.getName(), student.getEmail()));
         }
+        return items;
     }
 
-    private void loadCourses() {
-        try {
-            String sql = "SELECT c.*, d.name as dept_name FROM courses c JOIN departments d ON c.dept_id = d.id ORDER BY c.name";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            courseComboBox.removeAllItems();
-            while (rs.next()) {
-                courseComboBox.addItem(new CourseItem(
-                    rs.getLong("id"),
-                    rs.getString("name"),
-                    rs.getString("dept_name")
-                ));
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading courses: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
+    private List<CourseItem> searchCourses(String term, int limit) throws SQLException, ClassNotFoundException {
+        Map<Long, String> departmentNames = new HashMap<>();
+        departmentDao.findAll(department -> departmentNames.put(department.getId(), department.getName()));
+        List<CourseItem> items = new ArrayList<>();
+        for (Courses course : courseDao.search(term, limit)) {
+            items.add(new CourseItem(course.getId(), course.getName(), departmentNames.get(course.getDeptId())));
         }
+        return items;
     }
 
     private void loadSemesters() {
@@ -300,36 +304,7 @@ public class EnrollmentPanel extends JPanel {
     }
 
     private void refreshTable() {
-        enrollmentTableModel.setRowCount(0);
-        try {
-            String sql = "SELECT e.id, s.name as student_name, c.name as course_name, e.semester, e.grade " +
-                        "FROM enrollments e " +
-                        "JOIN students s ON e.student_id = s.id " +
-                        "JOIN courses c ON e.course_id = c.id " +
-                        "ORDER BY e.semester DESC, s.name";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                enrollmentTableModel.addRow(new Object[]{
-                    rs.getLong("id"),
-                    rs.getString("student_name"),
-                    rs.getString("course_name"),
-                    rs.getString("semester"),
-                    rs.getString("grade")
-                });
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading enrollments: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        enrollmentTableModel.refresh();
     }
 
     private void addEnrollment() {
@@ -338,8 +313,8 @@ public class EnrollmentPanel extends JPanel {
         }
 
         try {
-            StudentItem selectedStudent = (StudentItem) studentComboBox.getSelectedItem();
-            CourseItem selectedCourse = (CourseItem) courseComboBox.getSelectedItem();
+            StudentItem selectedStudent = studentPicker.getSelection();
+            CourseItem selectedCourse = coursePicker.getSelection();
             String semester = (String) semesterComboBox.getSelectedItem();
             String grade = (String) gradeComboBox.getSelectedItem();
             
@@ -368,7 +343,6 @@ public class EnrollmentPanel extends JPanel {
             
             enrollmentDao.save(enrollment);
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Enrollment added successfully",
                 "Success",
@@ -381,6 +355,86 @@ public class EnrollmentPanel extends JPanel {
         }
     }
 
+    // Bulk enrollment from a CSV of student_id,course_id,semester,grade lines
+    private void importEnrollments() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Enrollments");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        loader.load("import", () -> {
+            List<Enrollment> enrollments = readEnrollmentCsv(file.toPath());
+            return new int[]{enrollments.size(), enrollmentDao.saveAll(enrollments)};
+        }, counts -> {
+            JOptionPane.showMessageDialog(this,
+                "Imported " + counts[1] + " of " + counts[0] + " enrollments" +
+                    (counts[1] < counts[0] ? " (" + (counts[0] - counts[1]) + " duplicates or unknown students/courses skipped)" : ""),
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
+        }, "Error importing enrollments");
+    }
+
+    private static List<Enrollment> readEnrollmentCsv(Path path) {
+        List<Enrollment> enrollments = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i].trim().replaceAll("^\"|\"$", "");
+                }
+                // Optional header row
+                if (lineNumber == 1 && !fields[0].isEmpty() && !Character.isDigit(fields[0].charAt(0))) {
+                    continue;
+                }
+                if (fields.length != 4 || fields[2].isEmpty() || fields[3].isEmpty()) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected student_id,course_id,semester,grade");
+                }
+                // A value the table would refuse fails the whole batch insert, so catch it here with its line
+                if (fields[2].codePointCount(0, fields[2].length()) > MAX_SEMESTER_LENGTH) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": semester \"" + fields[2] +
+                        "\" is longer than " + MAX_SEMESTER_LENGTH + " characters");
+                }
+                String grade = fields[3].toUpperCase(Locale.ROOT);
+                if (!Arrays.asList(GRADES).contains(grade)) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": grade \"" + fields[3] +
+                        "\" is not one of " + String.join(", ", GRADES));
+                }
+                try {
+                    enrollments.add(new Enrollment(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2], grade));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": invalid id " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return enrollments;
+    }
+
+    // The shown row with the stored grade, or null when the student, course or term changed and the names must be read
+    private static EnrollmentDetail withStoredGrade(Enrollment stored, EnrollmentDetail shown) {
+        if (!stored.getStudentId().equals(shown.getStudentId()) || !stored.getCourseId().equals(shown.getCourseId())
+                || !stored.getSemester().equals(shown.getSemester())) {
+            return null;
+        }
+        return new EnrollmentDetail(shown.getId(), shown.getStudentId(), shown.getStudentName(), shown.getCourseId(),
+            shown.getCourseName(), shown.getSemester(), stored.getGrade());
+    }
+
+    // Index of the table row showing the enrollment in the form, or -1 if that row is no longer selected
+    private int selectedRowIndex() {
+        int row = enrollmentTable.getSelectedRow();
+        EnrollmentDetail shown = row == -1 ? null : enrollmentTableModel.getRow(row);
+        return shown != null && shown.getId().equals(selectedEnrollmentId) ? row : -1;
+    }
+
     private void updateGrade() {
         if (selectedEnrollmentId == null) {
             JOptionPane.showMessageDialog(this,
@@ -400,9 +454,12 @@ public class EnrollmentPanel extends JPanel {
         }
 
         try {
-            enrollmentDao.updateGrade(selectedEnrollmentId, grade);
+            // The stored row reaches the table as a change event; an enrollment deleted meanwhile is dropped here
+            int row = selectedRowIndex();
+            if (enrollmentDao.updateGrade(selectedEnrollmentId, grade) == null && row != -1) {
+                enrollmentTableModel.removeRow(row);
+            }
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Grade updated successfully",
                 "Success",
@@ -433,7 +490,6 @@ public class EnrollmentPanel extends JPanel {
             try {
                 enrollmentDao.delete(selectedEnrollmentId);
                 clearForm();
-                refreshTable();
                 JOptionPane.showMessageDialog(this,
                     "Enrollment deleted successfully",
                     "Success",
@@ -448,7 +504,7 @@ public class EnrollmentPanel extends JPanel {
     }
 
     private boolean validateForm() {
-        if (studentComboBox.getSelectedItem() == null) {
+        if (studentPicker.getSelection() == null) {
             JOptionPane.showMessageDialog(this,
                 "Please select a student",
                 "Error",
@@ -456,7 +512,7 @@ public class EnrollmentPanel extends JPanel {
             return false;
         }
 
-        if (courseComboBox.getSelectedItem() == null) {
+        if (coursePicker.getSelection() == null) {
             JOptionPane.showMessageDialog(this,
                 "Please select a course",
                 "Error",
@@ -484,31 +540,24 @@ public class EnrollmentPanel extends JPanel {
     }
 
     private void clearForm() {
-        studentComboBox.setSelectedIndex(-1);
-        courseComboBox.setSelectedIndex(-1);
+        studentPicker.setSelection(null);
+        coursePicker.setSelection(null);
         semesterComboBox.setSelectedIndex(-1);
         gradeComboBox.setSelectedIndex(-1);
         selectedEnrollmentId = null;
         enrollmentTable.clearSelection();
     }
 
-    private void selectComboBoxItem(JComboBox<?> comboBox, String value) {
-        for (int i = 0; i < comboBox.getItemCount(); i++) {
-            if (comboBox.getItemAt(i).toString().equals(value)) {
-                comboBox.setSelectedIndex(i);
-                break;
-            }
-        }
-    }
-
-    // Helper class for student combo box
+    // Helper class for the student picker; the email, when known, tells apart students with the same name
     private static class StudentItem {
         private final Long id;
         private final String name;
+        private final String email;
 
-        public StudentItem(Long id, String name) {
+        public StudentItem(Long id, String name, String email) {
             this.id = id;
             this.name = name;
+            this.email = email;
         }
 
         public Long getId() {
@@ -517,11 +566,11 @@ public class EnrollmentPanel extends JPanel {
 
         @Override
         public String toString() {
-            return name;
+            return email == null ? name : name + " <" + email + ">";
         }
     }
 
-    // Helper class for course combo box
+    // Helper class for the course picker
     private static class CourseItem {
         private final Long id;
         private final String name;
@@ -539,7 +588,7 @@ public class EnrollmentPanel extends JPanel {
 
         @Override
         public String toString() {
-            return name + " (" + department + ")";
+            return department == null ? name : name + " (" + department + ")";
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,113 @@
+package gui;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Combo box model for rows that have a database id. An id-to-index map is
+ * kept with the items, so a panel can select the item behind a table row
+ * by its id in constant time instead of comparing display strings, and two items
+ * that print the same (two rooms named alike, say) are never confused. Reloading
+ * keeps the selected id selected while it still exists, and single items can be
+ * put or removed by id when a change event arrives.
+ */
+public class IdComboBoxModel<T> extends AbstractListModel<T> implements ComboBoxModel<T> {
+    private final Function<T, Long> idOf;
+    private final List<T> items = new ArrayList<>();
+    private final Map<Long, Integer> indexById = new HashMap<>();
+    private T selected;
+
+    public IdComboBoxModel(Function<T, Long> idOf) {
+        this.idOf = idOf;
+    }
+
+    public void setItems(List<T> newItems) {
+        Long selectedId = getSelectedId();
+        int oldSize = items.size();
+        items.clear();
+        indexById.clear();
+        items.addAll(newItems);
+        for (int i = 0; i < items.size(); i++) {
+            indexById.put(idOf.apply(items.get(i)), i);
+        }
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (!items.isEmpty()) {
+            fireIntervalAdded(this, 0, items.size() - 1);
+        }
+        selectId(selectedId);
+    }
+
+    // Replaces the item with the same id in place, or appends it if it is not loaded yet
+    public void putItem(T item) {
+        Long id = idOf.apply(item);
+        Integer index = indexById.get(id);
+        if (index == null) {
+            items.add(item);
+            indexById.put(id, items.size() - 1);
+            fireIntervalAdded(this, items.size() - 1, items.size() - 1);
+            return;
+        }
+        boolean wasSelected = selected == items.get(index);
+        items.set(index, item);
+        if (wasSelected) {
+            selected = item;
+        }
+        fireContentsChanged(this, index, index);
+    }
+
+    // Removes the item with this id, if loaded, and clears the selection if it was selected
+    public void removeId(Long id) {
+        Integer index = indexById.remove(id);
+        if (index == null) {
+            return;
+        }
+        T removed = items.remove((int) index);
+        for (int i = index; i < items.size(); i++) {
+            indexById.put(idOf.apply(items.get(i)), i);
+        }
+        fireIntervalRemoved(this, index, index);
+        if (removed == selected) {
+            setSelectedItem(null);
+        }
+    }
+
+    // Selects the item with this id, or nothing if the id is null or not loaded
+    public void selectId(Long id) {
+        Integer index = id == null ? null : indexById.get(id);
+        setSelectedItem(index == null ? null : items.get(index));
+    }
+
+    public Long getSelectedId() {
+        return selected == null ? null : idOf.apply(selected);
+    }
+
+    @Override
+    public int getSize() {
+        return items.size();
+    }
+
+    @Override
+    public T getElementAt(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setSelectedItem(Object item) {
+        if (item != selected) {
+            selected = (T) item;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    @Override
+    public T getSelectedItem() {
+        return selected;
+    }
+}
@@ -2,7 +2,16 @@ package gui;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class MainFrame extends JFrame {
     private JPanel mainPanel;
@@ -14,6 +23,22 @@ public class MainFrame extends JFrame {
     private static final String COURSE = "Course";
     private static final String ENROLLMENT = "Enrollment";
     private static final String CLASS_SCHEDULE = "Class Schedule";
+    private static final String TRANSCRIPT = "Transcript";
+
+    // Panels most users open next; built in the background once the window is up
+    private static final String[] PREFETCH_ORDER = {STUDENT, ENROLLMENT, COURSE};
+    private static final int PREFETCH_DELAY_MILLIS = 300;
+    private static final boolean PREFETCH_ENABLED =
+            Boolean.parseBoolean(System.getProperty("cms.prefetchPanels", "true"));
+
+    private final Map<String, PanelFactory> panelFactories = new LinkedHashMap<>();
+    private final Set<String> builtPanels = new HashSet<>();
+    private final long constructionStart = System.nanoTime();
+
+    @FunctionalInterface
+    private interface PanelFactory {
+        JPanel create() throws SQLException, ClassNotFoundException;
+    }
 
     public MainFrame() {
         setTitle("College Management System");
@@ -37,35 +62,94 @@ public class MainFrame extends JFrame {
         addMenuItem(menu, "Course", COURSE);
         addMenuItem(menu, "Enrollment", ENROLLMENT);
         addMenuItem(menu, "Class Schedule", CLASS_SCHEDULE);
+        addMenuItem(menu, "Transcripts", TRANSCRIPT);
 
         menuBar.add(menu);
         setJMenuBar(menuBar);
 
-        // Add panels
-        try {
-            mainPanel.add(new DashboardPanel(), DASHBOARD);
-            mainPanel.add(new DepartmentPanel(), DEPARTMENT);
-            mainPanel.add(new StudentPanel(), STUDENT);
-            mainPanel.add(new TeacherPanel(), TEACHER);
-            mainPanel.add(new CoursePanel(), COURSE);
-            mainPanel.add(new EnrollmentPanel(), ENROLLMENT);
-            mainPanel.add(new ClassSchedulePanel(), CLASS_SCHEDULE);
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this, "Error initializing panels: " + e.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            System.exit(1);
-        }
+        // Register panels; each one is built the first time it is shown
+        panelFactories.put(DASHBOARD, DashboardPanel::new);
+        panelFactories.put(DEPARTMENT, DepartmentPanel::new);
+        panelFactories.put(STUDENT, StudentPanel::new);
+        panelFactories.put(TEACHER, TeacherPanel::new);
+        panelFactories.put(COURSE, CoursePanel::new);
+        panelFactories.put(ENROLLMENT, EnrollmentPanel::new);
+        panelFactories.put(CLASS_SCHEDULE, ClassSchedulePanel::new);
+        panelFactories.put(TRANSCRIPT, TranscriptPanel::new);
 
         add(mainPanel);
+        if (!ensurePanel(DASHBOARD)) {
+            System.exit(1);
+        }
         cardLayout.show(mainPanel, DASHBOARD);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                reportStartup();
+                if (PREFETCH_ENABLED) {
+                    startPrefetch();
+                }
+            }
+        });
     }
 
     private void addMenuItem(JMenu menu, String label, String cardName) {
         JMenuItem menuItem = new JMenuItem(label);
-        menuItem.addActionListener(e -> cardLayout.show(mainPanel, cardName));
+        menuItem.addActionListener(e -> showPanel(cardName));
         menu.add(menuItem);
     }
 
+    private void showPanel(String cardName) {
+        if (ensurePanel(cardName)) {
+            cardLayout.show(mainPanel, cardName);
+        }
+    }
+
+    private boolean ensurePanel(String cardName) {
+        if (builtPanels.contains(cardName)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            mainPanel.add(panelFactories.get(cardName).create(), cardName);
+            builtPanels.add(cardName);
+            System.out.println("Built " + cardName + " panel in " + elapsedMillis(start) + " ms");
+            return true;
+        } catch (SQLException | ClassNotFoundException e) {
+            JOptionPane.showMessageDialog(this, "Error initializing panels: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+    }
+
+    // Builds one likely-next panel per timer tick so the EDT stays responsive in between
+    private void startPrefetch() {
+        Iterator<String> pending = Arrays.asList(PREFETCH_ORDER).iterator();
+        Timer timer = new Timer(PREFETCH_DELAY_MILLIS, null);
+        timer.addActionListener(e -> {
+            while (pending.hasNext()) {
+                String cardName = pending.next();
+                if (!builtPanels.contains(cardName)) {
+                    ensurePanel(cardName);
+                    return;
+                }
+            }
+            timer.stop();
+        });
+        timer.start();
+    }
+
+    private void reportStartup() {
+        System.out.println("Startup: first frame shown " + elapsedMillis(constructionStart)
+                + " ms after MainFrame construction began ("
+                + ManagementFactory.getRuntimeMXBean().getUptime() + " ms since JVM start)");
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
     public static void main(String[] args) {
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -78,4 +162,4 @@ public class MainFrame extends JFrame {
             frame.setVisible(true);
         });
     }
-} 
\ No newline at end of file
+}
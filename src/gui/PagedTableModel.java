@@ -0,0 +1,320 @@
+package gui;
+
+import dao.ChangeEvents;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.JTableHeader;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Table model that only holds the pages of rows the user has actually scrolled
+ * to. Pages are fetched through the panel's {@link BackgroundLoader} when a
+ * cell in them is first painted, sorting is done by the database, and the
+ * least recently used pages are dropped once the cache is full. After a single
+ * row is added, edited or deleted the panel patches the cached pages instead of
+ * calling {@link #refresh()}, so the table is not counted and re-read again.
+ */
+public class PagedTableModel<T> extends AbstractTableModel {
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 25;
+
+    public interface PageSource<T> {
+        int count() throws SQLException, ClassNotFoundException;
+
+        // after is the last row of the previous page when it is cached, so the source can seek instead of skipping
+        List<T> fetch(int sortColumn, boolean ascending, int offset, int limit, T after)
+                throws SQLException, ClassNotFoundException;
+    }
+
+    public interface ColumnReader<T> {
+        Object valueAt(T row, int column);
+    }
+
+    private final String[] columnNames;
+    private final PageSource<T> source;
+    private final ColumnReader<T> reader;
+    private final BackgroundLoader loader;
+    private final String keyPrefix;
+    private final Map<Integer, List<T>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    // Rows replaced with a different sort value: they sit out of order until the next refresh, so none of them
+    // may anchor the keyset seek for the page after it
+    private final Set<T> movedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int rowCount;
+    private int sortColumn;
+    private boolean ascending;
+    // Bumped on every refresh or re-sort so pages fetched for an older ordering are thrown away
+    private int generation;
+
+    public PagedTableModel(String name, String[] columnNames, PageSource<T> source, ColumnReader<T> reader,
+                           BackgroundLoader loader, int sortColumn, boolean ascending) {
+        this.keyPrefix = name + "-";
+        this.columnNames = columnNames;
+        this.source = source;
+        this.reader = reader;
+        this.loader = loader;
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        T row = getRow(rowIndex);
+        return row == null ? null : reader.valueAt(row, columnIndex);
+    }
+
+    // The row at the index, or null while its page is still being fetched
+    public T getRow(int rowIndex) {
+        int page = rowIndex / PAGE_SIZE;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = rowIndex % PAGE_SIZE;
+        if (offset < rows.size()) {
+            return rows.get(offset);
+        }
+        if (rowIndex < rowCount) {
+            // Short because a removed row pulled this one up from a page that was not cached
+            pages.remove(page);
+            requestPage(page);
+        }
+        return null;
+    }
+
+    // Shows an edited row in place; it keeps its position until the next refresh or re-sort
+    public void replaceRow(int rowIndex, T row) {
+        List<T> rows = pages.get(rowIndex / PAGE_SIZE);
+        int offset = rowIndex % PAGE_SIZE;
+        if (rows != null && offset < rows.size()) {
+            T old = rows.set(offset, row);
+            if (!Objects.equals(reader.valueAt(old, sortColumn), reader.valueAt(row, sortColumn))) {
+                movedRows.add(row);
+            }
+            fireTableRowsUpdated(rowIndex, rowIndex);
+        }
+    }
+
+    // Drops a deleted row and moves every later cached row up one place, without fetching anything
+    public void removeRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rowCount) {
+            return;
+        }
+        // Pages still being fetched were asked for at the old offsets
+        generation++;
+        loading.clear();
+        int page = rowIndex / PAGE_SIZE;
+        int lastPage = (rowCount - 1) / PAGE_SIZE;
+        List<T> previous = pages.get(page);
+        if (previous != null && rowIndex % PAGE_SIZE < previous.size()) {
+            previous.remove(rowIndex % PAGE_SIZE);
+        } else {
+            pages.remove(page);
+            previous = null;
+        }
+        // The first row of each following page becomes the last row of the page before it
+        for (int p = page + 1; p <= lastPage; p++) {
+            List<T> next = pages.get(p);
+            if (next != null && !next.isEmpty()) {
+                T first = next.remove(0);
+                if (previous != null) {
+                    previous.add(first);
+                }
+            }
+            previous = next;
+        }
+        rowCount--;
+        fireTableRowsDeleted(rowIndex, rowIndex);
+    }
+
+    // A row was added somewhere in the database order: the count is bumped without a COUNT query
+    // and the cached pages are dropped, so only the rows on screen are fetched again
+    public void rowInserted() {
+        rowsInserted(1);
+    }
+
+    /**
+     * Applies a change event to the cached pages: added rows bump the count, deleted
+     * rows that are cached are removed in place, and edited rows that are cached are
+     * replaced. An edited row is built from the stored row when this client made the
+     * change and merge can build it, and read back by id otherwise. A change whose
+     * rows cannot be placed, because it lists no ids or deletes a row outside the
+     * cached pages, falls back to {@link #refresh()}.
+     */
+    public <E> void apply(ChangeEvents.Event<E> event, Function<T, Long> idOf, BiFunction<E, T, T> merge,
+                          TableRows.RowLookup<T> lookup) {
+        if (event.isWholeTable()) {
+            refresh();
+            return;
+        }
+        switch (event.getOperation()) {
+            case INSERT -> rowsInserted(event.getIds().size());
+            case DELETE -> {
+                for (Long id : event.getIds()) {
+                    int index = cachedIndexOf(id, idOf);
+                    if (index == -1) {
+                        refresh();
+                        return;
+                    }
+                    removeRow(index);
+                }
+            }
+            default -> {
+                List<Long> unknown = new ArrayList<>();
+                for (Long id : event.getIds()) {
+                    int index = cachedIndexOf(id, idOf);
+                    if (index == -1) {
+                        continue;
+                    }
+                    E stored = event.getRow(id);
+                    T merged = stored == null ? null : merge.apply(stored, getRow(index));
+                    if (merged != null) {
+                        replaceRow(index, merged);
+                    } else {
+                        unknown.add(id);
+                    }
+                }
+                if (unknown.isEmpty()) {
+                    return;
+                }
+                loader.load(keyPrefix + "change-" + unknown, () -> {
+                    Map<Long, T> rows = new LinkedHashMap<>();
+                    for (Long id : unknown) {
+                        rows.put(id, lookup.find(id));
+                    }
+                    return rows;
+                }, rows -> rows.forEach((id, row) -> {
+                    // Looked up again because the rows may have moved while the edit was read
+                    int index = cachedIndexOf(id, idOf);
+                    if (index == -1) {
+                        return;
+                    }
+                    if (row == null) {
+                        removeRow(index);
+                    } else {
+                        replaceRow(index, row);
+                    }
+                }), "Error showing a change made by another user");
+            }
+        }
+    }
+
+    private void rowsInserted(int rows) {
+        generation++;
+        pages.clear();
+        movedRows.clear();
+        loading.clear();
+        rowCount += rows;
+        fireTableDataChanged();
+    }
+
+    // Index of the cached row with this id, or -1; never fetches
+    private int cachedIndexOf(Long id, Function<T, Long> idOf) {
+        for (Map.Entry<Integer, List<T>> page : pages.entrySet()) {
+            List<T> rows = page.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (id.equals(idOf.apply(rows.get(i)))) {
+                    return page.getKey() * PAGE_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public void refresh() {
+        int requested = ++generation;
+        pages.clear();
+        movedRows.clear();
+        loading.clear();
+        loader.load(keyPrefix + "count", source::count, count -> {
+            if (requested == generation) {
+                rowCount = count;
+                fireTableDataChanged();
+            }
+        }, "Error counting rows");
+    }
+
+    public void setSort(int column, boolean ascending) {
+        this.sortColumn = column;
+        this.ascending = ascending;
+        refresh();
+    }
+
+    // Clicking a header sorts by that column; clicking it again flips the direction
+    public void installSortOnHeaderClick(JTable table) {
+        JTableHeader header = table.getTableHeader();
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+                if (column >= 0) {
+                    setSort(column, column != sortColumn || !ascending);
+                }
+            }
+        });
+    }
+
+    private void requestPage(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        int requested = generation;
+        int column = sortColumn;
+        boolean asc = ascending;
+        List<T> previous = pages.get(page - 1);
+        T anchor = previous != null && previous.size() == PAGE_SIZE ? previous.get(PAGE_SIZE - 1) : null;
+        // An edited row no longer marks where its page ends in the database order; skip by offset instead
+        T after = anchor == null || movedRows.contains(anchor) ? null : anchor;
+
+        loader.load(keyPrefix + "page-" + page,
+            () -> source.fetch(column, asc, page * PAGE_SIZE, PAGE_SIZE, after),
+            rows -> {
+                if (requested != generation) {
+                    return;
+                }
+                loading.remove(page);
+                // Copied so removeRow can shift rows between pages
+                pages.put(page, new ArrayList<>(rows));
+                int first = page * PAGE_SIZE;
+                int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+                if (last >= first) {
+                    fireTableRowsUpdated(first, last);
+                }
+            }, "Error loading rows");
+    }
+}
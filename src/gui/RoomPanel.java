@@ -1,5 +1,6 @@
 package gui;
 
+import dao.ChangeEvents;
 import dao.RoomDao;
 import model.Room;
 
@@ -7,9 +8,12 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class RoomPanel extends JPanel {
     private final RoomDao roomDao;
+    private final BackgroundLoader loader;
     private JTable roomTable;
     private DefaultTableModel tableModel;
     private JTextField roomNumberField;
@@ -18,6 +22,7 @@ public class RoomPanel extends JPanel {
 
     public RoomPanel() throws SQLException, ClassNotFoundException {
         roomDao = new RoomDao();
+        loader = new BackgroundLoader(this);
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -90,6 +95,7 @@ public class RoomPanel extends JPanel {
         
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
         // Load data
         refreshTable();
@@ -100,6 +106,11 @@ public class RoomPanel extends JPanel {
         deleteButton.addActionListener(e -> deleteRoom());
         clearButton.addActionListener(e -> clearForm());
 
+        // Rows written here or by other users are patched in as they happen instead of waiting for a refresh
+        ChangeEvents.subscribe(ChangeEvents.ROOMS, event -> SwingUtilities.invokeLater(() ->
+            TableRows.apply(loader, "rooms", tableModel, event, RoomPanel::toRow, this::findRow,
+                this::refreshTable)));
+
         roomTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = roomTable.getSelectedRow();
@@ -119,7 +130,6 @@ public class RoomPanel extends JPanel {
             room.setCapacity((Integer) capacitySpinner.getValue());
             
             roomDao.add(room);
-            refreshTable();
             clearForm();
             JOptionPane.showMessageDialog(this, "Room added successfully!");
         } catch (SQLException | ClassNotFoundException ex) {
@@ -140,8 +150,10 @@ public class RoomPanel extends JPanel {
             room.setRoomNumber(roomNumberField.getText().trim());
             room.setCapacity((Integer) capacitySpinner.getValue());
             
-            roomDao.update(room);
-            refreshTable();
+            // The stored row reaches the table as a change event; a row deleted meanwhile is dropped here
+            if (roomDao.update(room) == null) {
+                TableRows.remove(tableModel, selectedRoomId);
+            }
             clearForm();
             JOptionPane.showMessageDialog(this, "Room updated successfully!");
         } catch (SQLException | ClassNotFoundException ex) {
@@ -163,7 +175,6 @@ public class RoomPanel extends JPanel {
         if (confirm == JOptionPane.YES_OPTION) {
             try {
                 roomDao.delete(selectedRoomId);
-                refreshTable();
                 clearForm();
                 JOptionPane.showMessageDialog(this, "Room deleted successfully!");
             } catch (SQLException | ClassNotFoundException ex) {
@@ -181,18 +192,25 @@ public class RoomPanel extends JPanel {
     }
 
     private void refreshTable() {
-        try {
-            tableModel.setRowCount(0);
-            for (Room room : roomDao.getAll()) {
-                tableModel.addRow(new Object[]{
-                    room.getId(),
-                    room.getRoomNumber(),
-                    room.getCapacity()
-                });
+        loader.load("rooms", roomDao::getAll, rooms -> {
+            List<Object[]> rows = new ArrayList<>(rooms.size());
+            for (Room room : rooms) {
+                rows.add(toRow(room));
             }
-        } catch (SQLException | ClassNotFoundException ex) {
-            JOptionPane.showMessageDialog(this, "Error loading rooms: " + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            BackgroundLoader.replaceRows(tableModel, rows);
+        }, "Error loading rooms");
+    }
+
+    private Object[] findRow(Long id) throws SQLException, ClassNotFoundException {
+        Room room = roomDao.getById(id);
+        return room == null ? null : toRow(room);
+    }
+
+    private static Object[] toRow(Room room) {
+        return new Object[]{
+            room.getId(),
+            room.getRoomNumber(),
+            room.getCapacity()
+        };
     }
 } 
\ No newline at end of file
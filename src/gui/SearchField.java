@@ -0,0 +1,214 @@
+package gui;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+import java.awt.event.ActionEvent;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Picker that searches as the user types and offers the best matches in a popup
+ * under the field. Keystrokes are debounced, and each search goes through the
+ * panel's {@link BackgroundLoader} so a newer term cancels the statement of the
+ * one before it. Clicking a match, or choosing it with the arrow keys and Enter,
+ * makes it the selection; typing again clears the selection, so a form can never
+ * submit an item that no longer matches the text shown.
+ */
+public class SearchField<T> extends JTextField {
+    private static final int DEBOUNCE_MILLIS = 250;
+    private static final int RESULT_LIMIT = 20;
+    private static final int VISIBLE_ROWS = 8;
+
+    @FunctionalInterface
+    public interface Source<T> {
+        List<T> search(String term, int limit) throws SQLException, ClassNotFoundException;
+    }
+
+    private final BackgroundLoader loader;
+    private final String key;
+    private final Source<T> source;
+    private final DefaultListModel<T> matches = new DefaultListModel<>();
+    private final JList<T> matchList = new JList<>(matches);
+    private final JPopupMenu popup = new JPopupMenu();
+    private final Timer debounce;
+    private final List<Consumer<T>> selectionListeners = new ArrayList<>();
+    private T selection;
+    // Set while the text is replaced from code so it is not mistaken for typing
+    private boolean settingText;
+
+    public SearchField(BackgroundLoader loader, String key, Source<T> source) {
+        super(20);
+        this.loader = loader;
+        this.key = key;
+        this.source = source;
+
+        matchList.setVisibleRowCount(VISIBLE_ROWS);
+        matchList.setFocusable(false);
+        matchList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                int index = matchList.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    pick(matches.get(index));
+                }
+            }
+        });
+        JScrollPane scrollPane = new JScrollPane(matchList);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder());
+        // Keep the caret in the field while the popup is open
+        popup.setFocusable(false);
+        popup.add(scrollPane);
+
+        debounce = whenTypingPauses(this, this::search);
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                edited();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                edited();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+        bindKey("DOWN", "search-next", () -> moveHighlight(1));
+        bindKey("UP", "search-previous", () -> moveHighlight(-1));
+        bindKey("ENTER", "search-pick", () -> {
+            if (popup.isVisible() && !matches.isEmpty()) {
+                pick(matchList.getSelectedIndex() >= 0 ? matchList.getSelectedValue() : matches.get(0));
+            }
+        });
+        bindKey("ESCAPE", "search-close", () -> popup.setVisible(false));
+    }
+
+    // Runs action once the field has gone unedited for the debounce delay; the returned timer can be stopped
+    public static Timer whenTypingPauses(JTextComponent field, Runnable action) {
+        Timer timer = new Timer(DEBOUNCE_MILLIS, e -> action.run());
+        timer.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                timer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        return timer;
+    }
+
+    public T getSelection() {
+        return selection;
+    }
+
+    // Shows item as the chosen one without searching, e.g. when a table row is selected; null clears the field
+    public void setSelection(T item) {
+        settingText = true;
+        try {
+            setText(item == null ? "" : item.toString());
+        } finally {
+            settingText = false;
+        }
+        debounce.stop();
+        loader.cancel(key);
+        popup.setVisible(false);
+        select(item);
+    }
+
+    public void addSelectionListener(Consumer<T> listener) {
+        selectionListeners.add(listener);
+    }
+
+    private void edited() {
+        if (!settingText) {
+            select(null);
+        }
+    }
+
+    private void select(T item) {
+        if (item == selection) {
+            return;
+        }
+        selection = item;
+        selectionListeners.forEach(listener -> listener.accept(item));
+    }
+
+    private void search() {
+        String term = getText().trim();
+        if (selection != null) {
+            return;
+        }
+        if (term.isEmpty()) {
+            loader.cancel(key);
+            popup.setVisible(false);
+            return;
+        }
+        loader.loadLatest(key, () -> source.search(term, RESULT_LIMIT), this::showMatches, "Error searching");
+    }
+
+    private void showMatches(List<T> results) {
+        if (selection != null || !isFocusOwner()) {
+            return;
+        }
+        matches.clear();
+        matches.addAll(results);
+        if (results.isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        matchList.setSelectedIndex(0);
+        popup.setPopupSize(Math.max(getWidth(), matchList.getPreferredScrollableViewportSize().width),
+            popup.getPreferredSize().height);
+        if (!popup.isVisible()) {
+            popup.show(this, 0, getHeight());
+        }
+    }
+
+    private void moveHighlight(int delta) {
+        if (!popup.isVisible() || matches.isEmpty()) {
+            return;
+        }
+        int index = Math.max(0, Math.min(matches.size() - 1, matchList.getSelectedIndex() + delta));
+        matchList.setSelectedIndex(index);
+        matchList.ensureIndexIsVisible(index);
+    }
+
+    private void pick(T item) {
+        setSelection(item);
+        selectAll();
+    }
+
+    private void bindKey(String keyStroke, String name, Runnable action) {
+        getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(keyStroke), name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,28 +1,35 @@
 package gui;
 
+import dao.ChangeEvents;
 import dao.StudentDao;
 import model.Student;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.List;
 
 public class StudentPanel extends JPanel {
     private final StudentDao studentDao;
+    private final BackgroundLoader loader;
     private JTable studentTable;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Student> tableModel;
     private JTextField nameField;
     private JTextField dobField;
     private JTextField emailField;
     private Long selectedStudentId;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    // Table column -> database sort order
+    private static final StudentDao.SortColumn[] SORT_COLUMNS = {
+        StudentDao.SortColumn.ID, StudentDao.SortColumn.NAME, StudentDao.SortColumn.DOB, StudentDao.SortColumn.EMAIL
+    };
 
     public StudentPanel() throws SQLException, ClassNotFoundException {
         studentDao = new StudentDao();
+        loader = new BackgroundLoader(this);
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -90,13 +97,28 @@ public class StudentPanel extends JPanel {
 
         // Table
         String[] columnNames = {"ID", "Name", "Date of Birth", "Email"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new PagedTableModel<>("students", columnNames,
+            new PagedTableModel.PageSource<>() {
+                @Override
+                public int count() throws SQLException, ClassNotFoundException {
+                    return studentDao.countAll();
+                }
+
+                @Override
+                public List<Student> fetch(int sortColumn, boolean ascending, int offset, int limit, Student after)
+                        throws SQLException, ClassNotFoundException {
+                    return studentDao.findPage(SORT_COLUMNS[sortColumn], ascending, offset, limit, after);
+                }
+            },
+            (student, column) -> switch (column) {
+                case 0 -> student.getId();
+                case 1 -> student.getName();
+                case 2 -> student.getDob();
+                default -> student.getEmail();
+            },
+            loader, 1, true);
         studentTable = new JTable(tableModel);
+        tableModel.installSortOnHeaderClick(studentTable);
         JScrollPane scrollPane = new JScrollPane(studentTable);
 
         // Layout
@@ -105,6 +127,7 @@ public class StudentPanel extends JPanel {
         
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
         // Load data
         refreshTable();
@@ -115,46 +138,33 @@ public class StudentPanel extends JPanel {
         deleteButton.addActionListener(e -> deleteStudent());
         clearButton.addActionListener(e -> clearForm());
 
+        // Rows written here or by other users are patched into the cached pages instead of waiting for a refresh
+        ChangeEvents.subscribe(ChangeEvents.STUDENTS, event -> SwingUtilities.invokeLater(() ->
+            tableModel.apply(event, Student::getId, (stored, shown) -> stored, studentDao::findById)));
+
         studentTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = studentTable.getSelectedRow();
-                if (selectedRow != -1) {
-                    selectedStudentId = Long.parseLong(tableModel.getValueAt(selectedRow, 0).toString());
-                    nameField.setText(tableModel.getValueAt(selectedRow, 1).toString());
-                    dobField.setText(tableModel.getValueAt(selectedRow, 2).toString());
-                    emailField.setText(tableModel.getValueAt(selectedRow, 3).toString());
+                Student student = selectedRow == -1 ? null : tableModel.getRow(selectedRow);
+                if (student != null) {
+                    selectedStudentId = student.getId();
+                    nameField.setText(student.getName());
+                    dobField.setText(student.getDob().format(dateFormatter));
+                    emailField.setText(student.getEmail());
                 }
             }
         });
     }
 
     private void refreshTable() {
-        tableModel.setRowCount(0);
-        try {
-            // Since findAll() doesn't return a list, we need to query directly
-            String sql = "select * from students";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getLong("id"),
-                    rs.getString("name"),
-                    rs.getDate("dob").toLocalDate(),
-                    rs.getString("email")
-                });
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading students: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        tableModel.refresh();
+    }
+
+    // Index of the table row showing the student in the form, or -1 if that row is no longer selected
+    private int selectedRowIndex() {
+        int row = studentTable.getSelectedRow();
+        Student shown = row == -1 ? null : tableModel.getRow(row);
+        return shown != null && shown.getId().equals(selectedStudentId) ? row : -1;
     }
 
     private void addStudent() {
@@ -176,7 +186,6 @@ public class StudentPanel extends JPanel {
             
             studentDao.save(student);
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Student added successfully",
                 "Success",
@@ -205,9 +214,12 @@ public class StudentPanel extends JPanel {
         try {
             LocalDate dob = LocalDate.parse(dobField.getText(), dateFormatter);
             Student student = new Student(selectedStudentId, nameField.getText(), dob, emailField.getText());
-            studentDao.update(selectedStudentId, student);
+            // The stored row reaches the table as a change event; a student deleted meanwhile is dropped here
+            int row = selectedRowIndex();
+            if (studentDao.update(selectedStudentId, student) == null && row != -1) {
+                tableModel.removeRow(row);
+            }
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Student updated successfully",
                 "Success",
@@ -238,7 +250,6 @@ public class StudentPanel extends JPanel {
             try {
                 studentDao.delete(selectedStudentId);
                 clearForm();
-                refreshTable();
                 JOptionPane.showMessageDialog(this,
                     "Student deleted successfully",
                     "Success",
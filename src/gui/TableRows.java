@@ -0,0 +1,108 @@
+package gui;
+
+import dao.ChangeEvents;
+import database.ChangeFeed;
+
+import javax.swing.table.DefaultTableModel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Patches one row of a fully loaded table after an add, update or delete, so a
+ * single-row change costs the write's own round trip instead of re-reading the
+ * whole table. Rows are matched on the id in column 0. A patched row keeps its
+ * place until the next full refresh sorts the table again. Panels patch rows from
+ * {@link ChangeEvents}, which carries both this client's writes and other clients'.
+ */
+public final class TableRows {
+    // Reads one row back by id, or returns null if it no longer exists
+    @FunctionalInterface
+    public interface RowLookup<T> {
+        T find(Long id) throws SQLException, ClassNotFoundException;
+    }
+
+    private TableRows() {
+    }
+
+    // Index of the row whose id column holds this id, or -1
+    public static int indexOf(DefaultTableModel model, Object id) {
+        for (int i = 0; i < model.getRowCount(); i++) {
+            if (id.equals(model.getValueAt(i, 0))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Replaces the row with the same id in place, or appends it if the table does not have it yet
+    public static void put(DefaultTableModel model, Object[] row) {
+        int index = indexOf(model, row[0]);
+        if (index == -1) {
+            model.addRow(row);
+            return;
+        }
+        for (int column = 0; column < row.length; column++) {
+            model.setValueAt(row[column], index, column);
+        }
+    }
+
+    public static void remove(DefaultTableModel model, Object id) {
+        int index = indexOf(model, id);
+        if (index != -1) {
+            model.removeRow(index);
+        }
+    }
+
+    // Applies a change event: deleted rows go at once, rows this client wrote are shown as stored, rows another
+    // client wrote are read back by id in the background, and a change to the whole table reloads it. On the EDT.
+    public static <E> void apply(BackgroundLoader loader, String key, DefaultTableModel model,
+                                 ChangeEvents.Event<E> event, Function<E, Object[]> toRow,
+                                 RowLookup<Object[]> lookup, Runnable reload) {
+        apply(loader, key, event, toRow, lookup, row -> put(model, row), id -> remove(model, id), reload);
+    }
+
+    // The same for a panel that keeps its rows in step with a list of its own
+    public static <E, R> void apply(BackgroundLoader loader, String key, ChangeEvents.Event<E> event,
+                                    Function<E, R> convert, RowLookup<R> lookup, Consumer<R> put,
+                                    Consumer<Long> remove, Runnable reload) {
+        if (event.isWholeTable()) {
+            reload.run();
+            return;
+        }
+        if (event.getOperation() == ChangeFeed.Operation.DELETE) {
+            event.getIds().forEach(remove);
+            return;
+        }
+        List<Long> unknown = new ArrayList<>();
+        for (Long id : event.getIds()) {
+            E row = event.getRow(id);
+            if (row != null) {
+                put.accept(convert.apply(row));
+            } else {
+                unknown.add(id);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+        // Keyed by the ids so that changes to different rows do not collapse into one another
+        loader.load(key + "-change-" + unknown, () -> {
+            Map<Long, R> rows = new LinkedHashMap<>();
+            for (Long id : unknown) {
+                rows.put(id, lookup.find(id));
+            }
+            return rows;
+        }, rows -> rows.forEach((id, row) -> {
+            if (row == null) {
+                remove.accept(id);
+            } else {
+                put.accept(row);
+            }
+        }), "Error showing a change made by another user");
+    }
+}
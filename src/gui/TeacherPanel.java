@@ -1,5 +1,6 @@
 package gui;
 
+import dao.ChangeEvents;
 import dao.TeacherDao;
 import model.Teacher;
 
@@ -7,9 +8,12 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TeacherPanel extends JPanel {
     private final TeacherDao teacherDao;
+    private final BackgroundLoader loader;
     private JTable teacherTable;
     private DefaultTableModel tableModel;
     private JTextField nameField;
@@ -18,6 +22,7 @@ public class TeacherPanel extends JPanel {
 
     public TeacherPanel() throws SQLException, ClassNotFoundException {
         teacherDao = new TeacherDao();
+        loader = new BackgroundLoader(this);
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -89,6 +94,7 @@ public class TeacherPanel extends JPanel {
         
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
         // Load data
         refreshTable();
@@ -99,6 +105,11 @@ public class TeacherPanel extends JPanel {
         deleteButton.addActionListener(e -> deleteTeacher());
         clearButton.addActionListener(e -> clearForm());
 
+        // Rows written here or by other users are patched in as they happen instead of waiting for a refresh
+        ChangeEvents.subscribe(ChangeEvents.TEACHERS, event -> SwingUtilities.invokeLater(() ->
+            TableRows.apply(loader, "teachers", tableModel, event, TeacherPanel::toRow, this::findRow,
+                this::refreshTable)));
+
         teacherTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = teacherTable.getSelectedRow();
@@ -112,31 +123,28 @@ public class TeacherPanel extends JPanel {
     }
 
     private void refreshTable() {
-        tableModel.setRowCount(0);
-        try {
-            // Since findAll() doesn't return a list, we need to query directly
-            String sql = "select * from teachers";
-            java.sql.Connection conn = database.DatabaseConnection.getConnection();
-            java.sql.PreparedStatement ps = conn.prepareStatement(sql);
-            java.sql.ResultSet rs = ps.executeQuery();
-            
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getLong("id"),
-                    rs.getString("name"),
-                    rs.getString("email")
-                });
-            }
-            
-            rs.close();
-            ps.close();
-            conn.close();
-        } catch (SQLException | ClassNotFoundException e) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading teachers: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        loader.load("teachers", this::fetchTeachers,
+            rows -> BackgroundLoader.replaceRows(tableModel, rows),
+            "Error loading teachers");
+    }
+
+    private List<Object[]> fetchTeachers() throws SQLException, ClassNotFoundException {
+        List<Object[]> rows = new ArrayList<>();
+        teacherDao.getAllTeachers(teacher -> rows.add(toRow(teacher)));
+        return rows;
+    }
+
+    private Object[] findRow(Long id) throws SQLException, ClassNotFoundException {
+        Teacher teacher = teacherDao.getTeacherById(id);
+        return teacher == null ? null : toRow(teacher);
+    }
+
+    private static Object[] toRow(Teacher teacher) {
+        return new Object[]{
+            teacher.getId(),
+            teacher.getName(),
+            teacher.getEmail()
+        };
     }
 
     private void addTeacher() {
@@ -148,7 +156,6 @@ public class TeacherPanel extends JPanel {
             Teacher teacher = new Teacher(nameField.getText(), emailField.getText());
             teacherDao.addTeacher(teacher);
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Teacher added successfully",
                 "Success",
@@ -176,9 +183,11 @@ public class TeacherPanel extends JPanel {
 
         try {
             Teacher teacher = new Teacher(selectedTeacherId, nameField.getText(), emailField.getText());
-            teacherDao.updateTeacher(teacher);
+            // The stored row reaches the table as a change event; a row deleted meanwhile is dropped here
+            if (teacherDao.updateTeacher(teacher) == null) {
+                TableRows.remove(tableModel, selectedTeacherId);
+            }
             clearForm();
-            refreshTable();
             JOptionPane.showMessageDialog(this,
                 "Teacher updated successfully",
                 "Success",
@@ -209,7 +218,6 @@ public class TeacherPanel extends JPanel {
             try {
                 teacherDao.deleteTeacher(selectedTeacherId);
                 clearForm();
-                refreshTable();
                 JOptionPane.showMessageDialog(this,
                     "Teacher deleted successfully",
                     "Success",
@@ -1,5 +1,6 @@
 package gui;
 
+import dao.ChangeEvents;
 import dao.TimeSlotDao;
 import model.TimeSlot;
 
@@ -10,9 +11,12 @@ import java.sql.SQLException;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TimeSlotPanel extends JPanel {
     private final TimeSlotDao timeSlotDao;
+    private final BackgroundLoader loader;
     private JTable timeSlotTable;
     private DefaultTableModel tableModel;
     private JTextField startTimeField;
@@ -22,6 +26,7 @@ public class TimeSlotPanel extends JPanel {
 
     public TimeSlotPanel() throws SQLException, ClassNotFoundException {
         timeSlotDao = new TimeSlotDao();
+        loader = new BackgroundLoader(this);
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -93,6 +98,7 @@ public class TimeSlotPanel extends JPanel {
         
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
 
         // Load data
         refreshTable();
@@ -103,6 +109,11 @@ public class TimeSlotPanel extends JPanel {
         deleteButton.addActionListener(e -> deleteTimeSlot());
         clearButton.addActionListener(e -> clearForm());
 
+        // Rows written here or by other users are patched in as they happen instead of waiting for a refresh
+        ChangeEvents.subscribe(ChangeEvents.TIMESLOTS, event -> SwingUtilities.invokeLater(() ->
+            TableRows.apply(loader, "timeslots", tableModel, event, this::toRow, this::findRow,
+                this::refreshTable)));
+
         timeSlotTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int selectedRow = timeSlotTable.getSelectedRow();
@@ -120,9 +131,13 @@ public class TimeSlotPanel extends JPanel {
             TimeSlot timeSlot = new TimeSlot();
             timeSlot.setStartTime(LocalTime.parse(startTimeField.getText(), timeFormatter));
             timeSlot.setEndTime(LocalTime.parse(endTimeField.getText(), timeFormatter));
+            if (!timeSlot.getStartTime().isBefore(timeSlot.getEndTime())) {
+                JOptionPane.showMessageDialog(this, "The end time must be after the start time.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
             timeSlotDao.add(timeSlot);
-            refreshTable();
             clearForm();
             JOptionPane.showMessageDialog(this, "Time slot added successfully!");
         } catch (DateTimeParseException ex) {
@@ -145,9 +160,16 @@ public class TimeSlotPanel extends JPanel {
             timeSlot.setId(selectedTimeSlotId);
             timeSlot.setStartTime(LocalTime.parse(startTimeField.getText(), timeFormatter));
             timeSlot.setEndTime(LocalTime.parse(endTimeField.getText(), timeFormatter));
+            if (!timeSlot.getStartTime().isBefore(timeSlot.getEndTime())) {
+                JOptionPane.showMessageDialog(this, "The end time must be after the start time.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
-            timeSlotDao.update(timeSlot);
-            refreshTable();
+            // The stored row reaches the table as a change event; a row deleted meanwhile is dropped here
+            if (timeSlotDao.update(timeSlot) == null) {
+                TableRows.remove(tableModel, selectedTimeSlotId);
+            }
             clearForm();
             JOptionPane.showMessageDialog(this, "Time slot updated successfully!");
         } catch (DateTimeParseException ex) {
@@ -172,7 +194,6 @@ public class TimeSlotPanel extends JPanel {
         if (confirm == JOptionPane.YES_OPTION) {
             try {
                 timeSlotDao.delete(selectedTimeSlotId);
-                refreshTable();
                 clearForm();
                 JOptionPane.showMessageDialog(this, "Time slot deleted successfully!");
             } catch (SQLException | ClassNotFoundException ex) {
@@ -190,18 +211,25 @@ public class TimeSlotPanel extends JPanel {
     }
 
     private void refreshTable() {
-        try {
-            tableModel.setRowCount(0);
-            for (TimeSlot timeSlot : timeSlotDao.getAll()) {
-                tableModel.addRow(new Object[]{
-                    timeSlot.getId(),
-                    timeSlot.getStartTime().format(timeFormatter),
-                    timeSlot.getEndTime().format(timeFormatter)
-                });
+        loader.load("timeslots", timeSlotDao::getAll, timeSlots -> {
+            List<Object[]> rows = new ArrayList<>(timeSlots.size());
+            for (TimeSlot timeSlot : timeSlots) {
+                rows.add(toRow(timeSlot));
             }
-        } catch (SQLException | ClassNotFoundException ex) {
-            JOptionPane.showMessageDialog(this, "Error loading time slots: " + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            BackgroundLoader.replaceRows(tableModel, rows);
+        }, "Error loading time slots");
+    }
+
+    private Object[] findRow(Long id) throws SQLException, ClassNotFoundException {
+        TimeSlot timeSlot = timeSlotDao.getById(id);
+        return timeSlot == null ? null : toRow(timeSlot);
+    }
+
+    private Object[] toRow(TimeSlot timeSlot) {
+        return new Object[]{
+            timeSlot.getId(),
+            timeSlot.getStartTime().format(timeFormatter),
+            timeSlot.getEndTime().format(timeFormatter)
+        };
     }
 } 
\ No newline at end of file
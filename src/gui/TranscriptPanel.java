@@ -0,0 +1,237 @@
+package gui;
+
+import dao.StudentDao;
+import dao.TranscriptDao;
+import model.CohortGpa;
+import model.Student;
+import model.TermGpa;
+import model.Transcript;
+import model.TranscriptEntry;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TranscriptPanel extends JPanel {
+    private final TranscriptDao transcriptDao;
+    private final StudentDao studentDao;
+    private final BackgroundLoader loader;
+    private DefaultTableModel deansListModel;
+    private DefaultTableModel cohortModel;
+    private DefaultTableModel entryModel;
+    private DefaultTableModel termModel;
+    private JComboBox<String> semesterComboBox;
+    private JTextField minGpaField;
+    private JTextField minCreditsField;
+    private SearchField<StudentItem> studentPicker;
+    private JLabel cumulativeLabel;
+    private static final String[] SEMESTERS = {
+        "First Semester", "Second Semester", "Third Semester", "Fourth Semester",
+        "Fifth Semester", "Sixth Semester", "Seventh Semester", "Eighth Semester"
+    };
+    private static final String DEFAULT_MIN_GPA = "3.5";
+    private static final String DEFAULT_MIN_CREDITS = "12";
+
+    public TranscriptPanel() throws SQLException, ClassNotFoundException {
+        transcriptDao = new TranscriptDao();
+        studentDao = new StudentDao();
+        loader = new BackgroundLoader(this);
+        setLayout(new BorderLayout(10, 10));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
+        splitPane.setDividerLocation(550);
+        add(splitPane, BorderLayout.CENTER);
+        add(loader.getBusyIndicator(), BorderLayout.SOUTH);
+
+        // Left panel - Dean's list and per-semester summary
+        JPanel leftPanel = new JPanel(new BorderLayout(5, 5));
+        leftPanel.setBorder(BorderFactory.createTitledBorder("Dean's List"));
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        semesterComboBox = new JComboBox<>(SEMESTERS);
+        minGpaField = new JTextField(DEFAULT_MIN_GPA, 4);
+        minCreditsField = new JTextField(DEFAULT_MIN_CREDITS, 4);
+        JButton showButton = new JButton("Show");
+        JButton rebuildButton = new JButton("Recompute GPAs");
+        rebuildButton.setToolTipText("Recompute every stored term GPA from the enrollments, e.g. after a bulk load outside the app");
+        filterPanel.add(new JLabel("Semester:"));
+        filterPanel.add(semesterComboBox);
+        filterPanel.add(new JLabel("Min GPA:"));
+        filterPanel.add(minGpaField);
+        filterPanel.add(new JLabel("Min Credits:"));
+        filterPanel.add(minCreditsField);
+        filterPanel.add(showButton);
+        filterPanel.add(rebuildButton);
+        leftPanel.add(filterPanel, BorderLayout.NORTH);
+
+        deansListModel = readOnlyModel(new String[]{"Student ID", "Name", "Credits", "GPA"});
+        JTable deansListTable = new JTable(deansListModel);
+        leftPanel.add(new JScrollPane(deansListTable), BorderLayout.CENTER);
+
+        cohortModel = readOnlyModel(new String[]{"Semester", "Students", "Average GPA", "On Dean's List"});
+        JTable cohortTable = new JTable(cohortModel);
+        JScrollPane cohortScrollPane = new JScrollPane(cohortTable);
+        cohortScrollPane.setPreferredSize(new Dimension(0, 180));
+        leftPanel.add(cohortScrollPane, BorderLayout.SOUTH);
+
+        splitPane.setLeftComponent(leftPanel);
+
+        // Right panel - One student's transcript
+        JPanel rightPanel = new JPanel(new BorderLayout(5, 5));
+        rightPanel.setBorder(BorderFactory.createTitledBorder("Student Transcript"));
+
+        JPanel studentPanel = new JPanel(new BorderLayout(5, 5));
+        studentPanel.add(new JLabel("Student:"), BorderLayout.WEST);
+        studentPicker = new SearchField<>(loader, "student-search", this::searchStudents);
+        studentPanel.add(studentPicker, BorderLayout.CENTER);
+        rightPanel.add(studentPanel, BorderLayout.NORTH);
+
+        entryModel = readOnlyModel(new String[]{"Semester", "Course", "Credits", "Grade", "Points"});
+        JTable entryTable = new JTable(entryModel);
+        rightPanel.add(new JScrollPane(entryTable), BorderLayout.CENTER);
+
+        JPanel summaryPanel = new JPanel(new BorderLayout(5, 5));
+        termModel = readOnlyModel(new String[]{"Semester", "Credits", "Quality Points", "GPA"});
+        JTable termTable = new JTable(termModel);
+        JScrollPane termScrollPane = new JScrollPane(termTable);
+        termScrollPane.setPreferredSize(new Dimension(0, 180));
+        summaryPanel.add(termScrollPane, BorderLayout.CENTER);
+        cumulativeLabel = new JLabel(" ");
+        summaryPanel.add(cumulativeLabel, BorderLayout.SOUTH);
+        rightPanel.add(summaryPanel, BorderLayout.SOUTH);
+
+        splitPane.setRightComponent(rightPanel);
+
+        // Add listeners
+        showButton.addActionListener(e -> refreshDeansList());
+        rebuildButton.addActionListener(e -> rebuildGpas());
+        semesterComboBox.addActionListener(e -> refreshDeansList());
+        studentPicker.addSelectionListener(this::showTranscript);
+
+        // Load initial data
+        refreshDeansList();
+    }
+
+    private void refreshDeansList() {
+        double minGpa;
+        double minCredits;
+        try {
+            minGpa = Double.parseDouble(minGpaField.getText().trim());
+            minCredits = Double.parseDouble(minCreditsField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Min GPA and min credits must be numbers",
+                "Validation Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        String semester = (String) semesterComboBox.getSelectedItem();
+        loader.loadLatest("deans-list", () -> {
+            List<Object[]> rows = new ArrayList<>();
+            transcriptDao.getDeansList(semester, minGpa, minCredits, term -> rows.add(new Object[]{
+                term.getStudentId(), term.getStudentName(), term.getCredits(), String.format("%.3f", term.getGpa())
+            }));
+            return rows;
+        }, rows -> BackgroundLoader.replaceRows(deansListModel, rows), "Error loading dean's list");
+        loader.loadLatest("cohorts", () -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (CohortGpa cohort : transcriptDao.getCohorts(minGpa, minCredits)) {
+                rows.add(new Object[]{
+                    cohort.getSemester(), cohort.getStudents(),
+                    String.format("%.3f", cohort.getAverageGpa()), cohort.getOnDeansList()
+                });
+            }
+            return rows;
+        }, rows -> BackgroundLoader.replaceRows(cohortModel, rows), "Error loading semester summary");
+    }
+
+    private void rebuildGpas() {
+        int confirm = JOptionPane.showConfirmDialog(this,
+            "Recompute the term GPA of every student from their enrollments?",
+            "Confirm Recompute",
+            JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) {
+            return;
+        }
+        loader.load("gpa-rebuild", transcriptDao::rebuild, rows -> {
+            refreshDeansList();
+            showTranscript(studentPicker.getSelection());
+            JOptionPane.showMessageDialog(this,
+                "Recomputed " + rows + " term GPAs",
+                "Success",
+                JOptionPane.INFORMATION_MESSAGE);
+        }, "Error recomputing GPAs");
+    }
+
+    private void showTranscript(StudentItem student) {
+        if (student == null) {
+            return;
+        }
+        loader.loadLatest("transcript", () -> transcriptDao.getTranscript(student.getId()), transcript -> {
+            List<Object[]> entries = new ArrayList<>();
+            for (TranscriptEntry entry : transcript.getEntries()) {
+                entries.add(new Object[]{
+                    entry.getSemester(), entry.getCourseName(), entry.getCredit(), entry.getGrade(),
+                    entry.getPoints() == null ? "-" : entry.getPoints()
+                });
+            }
+            BackgroundLoader.replaceRows(entryModel, entries);
+            List<Object[]> terms = new ArrayList<>();
+            for (TermGpa term : transcript.getTerms()) {
+                terms.add(new Object[]{
+                    term.getSemester(), term.getCredits(), term.getQualityPoints(), String.format("%.3f", term.getGpa())
+                });
+            }
+            BackgroundLoader.replaceRows(termModel, terms);
+            cumulativeLabel.setText(cumulativeText(transcript));
+        }, "Error loading transcript");
+    }
+
+    private static String cumulativeText(Transcript transcript) {
+        if (transcript.getCredits() == 0) {
+            return "No graded credits yet";
+        }
+        return String.format("Cumulative GPA %.3f over %s credits", transcript.getGpa(), transcript.getCredits());
+    }
+
+    private List<StudentItem> searchStudents(String term, int limit) throws SQLException, ClassNotFoundException {
+        List<StudentItem> items = new ArrayList<>();
+        for (Student student : studentDao.search(term, limit)) {
+            items.add(new StudentItem(student.getId(), student.getName(), student.getEmail()));
+        }
+        return items;
+    }
+
+    private static DefaultTableModel readOnlyModel(String[] columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    // Helper class for the student picker; the email tells apart students with the same name
+    private static class StudentItem {
+        private final Long id;
+        private final String name;
+        private final String email;
+
+        public StudentItem(Long id, String name, String email) {
+            this.id = id;
+            this.name = name;
+            this.email = email;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return email == null ? name : name + " <" + email + ">";
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package model;
+
+// GPA figures for everyone with graded credits in one semester
+public class CohortGpa {
+    private final String semester;
+    private final int students;
+    private final double averageGpa;
+    private final int onDeansList;
+
+    public CohortGpa(String semester, int students, double averageGpa, int onDeansList) {
+        this.semester = semester;
+        this.students = students;
+        this.averageGpa = averageGpa;
+        this.onDeansList = onDeansList;
+    }
+
+    public String getSemester() {
+        return semester;
+    }
+
+    public int getStudents() {
+        return students;
+    }
+
+    public double getAverageGpa() {
+        return averageGpa;
+    }
+
+    public int getOnDeansList() {
+        return onDeansList;
+    }
+}
@@ -0,0 +1,51 @@
+package model;
+
+// Read-only enrollment row joined with the student and course names for display
+public class EnrollmentDetail {
+    private final Long id;
+    private final Long studentId;
+    private final String studentName;
+    private final Long courseId;
+    private final String courseName;
+    private final String semester;
+    private final String grade;
+
+    public EnrollmentDetail(Long id, Long studentId, String studentName, Long courseId, String courseName,
+                            String semester, String grade) {
+        this.id = id;
+        this.studentId = studentId;
+        this.studentName = studentName;
+        this.courseId = courseId;
+        this.courseName = courseName;
+        this.semester = semester;
+        this.grade = grade;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public String getStudentName() {
+        return studentName;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public String getCourseName() {
+        return courseName;
+    }
+
+    public String getSemester() {
+        return semester;
+    }
+
+    public String getGrade() {
+        return grade;
+    }
+}
@@ -0,0 +1,78 @@
+package model;
+
+import java.time.LocalTime;
+
+// Read-only class schedule row joined with course, teacher, timeslot and room for display
+public class ScheduleDetail {
+    private final Long id;
+    private final Long courseId;
+    private final String courseName;
+    private final Long teacherId;
+    private final String teacherName;
+    private final Long timeslotId;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final Long roomId;
+    private final String roomNumber;
+    private final int roomCapacity;
+
+    public ScheduleDetail(Long id, Long courseId, String courseName, Long teacherId, String teacherName,
+                          Long timeslotId, LocalTime startTime, LocalTime endTime, Long roomId, String roomNumber,
+                          int roomCapacity) {
+        this.id = id;
+        this.courseId = courseId;
+        this.courseName = courseName;
+        this.teacherId = teacherId;
+        this.teacherName = teacherName;
+        this.timeslotId = timeslotId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.roomId = roomId;
+        this.roomNumber = roomNumber;
+        this.roomCapacity = roomCapacity;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getCourseId() {
+        return courseId;
+    }
+
+    public String getCourseName() {
+        return courseName;
+    }
+
+    public Long getTeacherId() {
+        return teacherId;
+    }
+
+    public String getTeacherName() {
+        return teacherName;
+    }
+
+    public Long getTimeslotId() {
+        return timeslotId;
+    }
+
+    public LocalTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalTime getEndTime() {
+        return endTime;
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public String getRoomNumber() {
+        return roomNumber;
+    }
+
+    public int getRoomCapacity() {
+        return roomCapacity;
+    }
+}
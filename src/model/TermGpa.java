@@ -0,0 +1,45 @@
+package model;
+
+// One student's credit-weighted GPA for one semester, as stored in student_term_gpa
+public class TermGpa {
+    private final Long studentId;
+    private final String studentName;
+    private final String semester;
+    private final double credits;
+    private final double qualityPoints;
+    private final double gpa;
+
+    public TermGpa(Long studentId, String studentName, String semester, double credits, double qualityPoints,
+                   double gpa) {
+        this.studentId = studentId;
+        this.studentName = studentName;
+        this.semester = semester;
+        this.credits = credits;
+        this.qualityPoints = qualityPoints;
+        this.gpa = gpa;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public String getStudentName() {
+        return studentName;
+    }
+
+    public String getSemester() {
+        return semester;
+    }
+
+    public double getCredits() {
+        return credits;
+    }
+
+    public double getQualityPoints() {
+        return qualityPoints;
+    }
+
+    public double getGpa() {
+        return gpa;
+    }
+}
@@ -0,0 +1,46 @@
+package model;
+
+import java.util.List;
+
+// A student's courses and term GPAs; the cumulative GPA weighs every term by its credits
+public class Transcript {
+    private final Long studentId;
+    private final List<TranscriptEntry> entries;
+    private final List<TermGpa> terms;
+
+    public Transcript(Long studentId, List<TranscriptEntry> entries, List<TermGpa> terms) {
+        this.studentId = studentId;
+        this.entries = entries;
+        this.terms = terms;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public List<TranscriptEntry> getEntries() {
+        return entries;
+    }
+
+    public List<TermGpa> getTerms() {
+        return terms;
+    }
+
+    public double getCredits() {
+        double credits = 0;
+        for (TermGpa term : terms) {
+            credits += term.getCredits();
+        }
+        return credits;
+    }
+
+    public double getGpa() {
+        double credits = 0;
+        double points = 0;
+        for (TermGpa term : terms) {
+            credits += term.getCredits();
+            points += term.getQualityPoints();
+        }
+        return credits > 0 ? points / credits : 0;
+    }
+}
@@ -0,0 +1,38 @@
+package model;
+
+// One course on a student's transcript; points is null for grades that do not count towards the GPA (I, W)
+public class TranscriptEntry {
+    private final String semester;
+    private final String courseName;
+    private final String credit;
+    private final String grade;
+    private final Double points;
+
+    public TranscriptEntry(String semester, String courseName, String credit, String grade, Double points) {
+        this.semester = semester;
+        this.courseName = courseName;
+        this.credit = credit;
+        this.grade = grade;
+        this.points = points;
+    }
+
+    public String getSemester() {
+        return semester;
+    }
+
+    public String getCourseName() {
+        return courseName;
+    }
+
+    public String getCredit() {
+        return credit;
+    }
+
+    public String getGrade() {
+        return grade;
+    }
+
+    public Double getPoints() {
+        return points;
+    }
+}
@@ -0,0 +1,56 @@
+package service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How many students each course has, per semester, kept as running totals so a
+ * room capacity check is a map lookup instead of a COUNT over enrollments. The
+ * totals are loaded once and then moved by each enrollment write (see
+ * EnrollmentDao). A course's size is its busiest semester, since a room has to
+ * seat the course whichever term it runs in. Safe to share between threads.
+ */
+public class EnrollmentCounts {
+    private final Map<Long, Map<String, Integer>> byCourse = new ConcurrentHashMap<>();
+
+    public void set(Long courseId, String semester, int students) {
+        byCourse.computeIfAbsent(courseId, id -> new ConcurrentHashMap<>()).put(semester, students);
+    }
+
+    // Moves a course's total for one semester by delta; totals that reach zero are dropped
+    public void add(Long courseId, String semester, int delta) {
+        byCourse.compute(courseId, (id, semesters) -> {
+            if (semesters == null) {
+                semesters = new ConcurrentHashMap<>();
+            }
+            semesters.compute(semester, (key, current) -> {
+                int students = (current == null ? 0 : current) + delta;
+                return students > 0 ? students : null;
+            });
+            return semesters.isEmpty() ? null : semesters;
+        });
+    }
+
+    public int studentsIn(Long courseId, String semester) {
+        Map<String, Integer> semesters = byCourse.get(courseId);
+        return semesters == null ? 0 : semesters.getOrDefault(semester, 0);
+    }
+
+    // Students in the course's busiest semester
+    public int studentsIn(Long courseId) {
+        Map<String, Integer> semesters = byCourse.get(courseId);
+        int most = 0;
+        if (semesters != null) {
+            for (int students : semesters.values()) {
+                most = Math.max(most, students);
+            }
+        }
+        return most;
+    }
+
+    // Seats each section needs when the course's students are shared evenly between its sections
+    public int seatsPerSection(Long courseId, int sections) {
+        int students = studentsIn(courseId);
+        return sections <= 1 ? students : (students + sections - 1) / sections;
+    }
+}
@@ -0,0 +1,115 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only interval tree over half-open ranges [start, end). The intervals are
+ * sorted by start once and the array is read as a balanced binary search tree,
+ * each node also holding the largest end in its subtree, so finding the k
+ * intervals that overlap a range costs O(log n + k) with no allocation beyond
+ * the result list. Rebuild it when the intervals change.
+ */
+public class IntervalTree<V> {
+    private final int[] starts;
+    private final int[] ends;
+    private final Object[] values;
+    // Largest end in the subtree rooted at each index
+    private final int[] maxEnds;
+
+    public static final class Interval<V> {
+        private final int start;
+        private final int end;
+        private final V value;
+
+        public Interval(int start, int end, V value) {
+            if (end <= start) {
+                throw new IllegalArgumentException("Interval must end after it starts: [" + start + ", " + end + ")");
+            }
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+
+    public IntervalTree(List<Interval<V>> intervals) {
+        List<Interval<V>> sorted = new ArrayList<>(intervals);
+        sorted.sort(Comparator.comparingInt(interval -> interval.start));
+        int n = sorted.size();
+        starts = new int[n];
+        ends = new int[n];
+        values = new Object[n];
+        maxEnds = new int[n];
+        for (int i = 0; i < n; i++) {
+            Interval<V> interval = sorted.get(i);
+            starts[i] = interval.start;
+            ends[i] = interval.end;
+            values[i] = interval.value;
+        }
+        buildMaxEnds(0, n - 1);
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public boolean overlapsAny(int start, int end) {
+        return any(0, starts.length - 1, start, end);
+    }
+
+    // Values whose interval shares at least one point with [start, end), in start order
+    public List<V> overlapping(int start, int end) {
+        List<V> found = new ArrayList<>();
+        collect(0, starts.length - 1, start, end, found);
+        return found;
+    }
+
+    private int buildMaxEnds(int lo, int hi) {
+        if (lo > hi) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        int max = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid - 1), buildMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private boolean any(int lo, int hi, int start, int end) {
+        if (lo > hi) {
+            return false;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] <= start) {
+            return false;
+        }
+        if (any(lo, mid - 1, start, end)) {
+            return true;
+        }
+        if (starts[mid] >= end) {
+            return false;
+        }
+        return ends[mid] > start || any(mid + 1, hi, start, end);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(int lo, int hi, int start, int end, List<V> found) {
+        if (lo > hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        // Everything below here ends before the range begins
+        if (maxEnds[mid] <= start) {
+            return;
+        }
+        collect(lo, mid - 1, start, end, found);
+        // This node and everything to its right begin after the range ends
+        if (starts[mid] >= end) {
+            return;
+        }
+        if (ends[mid] > start) {
+            found.add((V) values[mid]);
+        }
+        collect(mid + 1, hi, start, end, found);
+    }
+}
@@ -0,0 +1,115 @@
+package service;
+
+import model.ScheduleDetail;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the class schedule for clash checks. Schedules are grouped
+ * by room and by teacher, and each group is an {@link IntervalTree} over the
+ * times of day its classes occupy, so a check compares time ranges rather than
+ * timeslot ids: a custom 09:00-10:30 slot clashes with 09:45-11:15 even though
+ * they are different rows. Instances are immutable snapshots; ClassScheduleDao
+ * builds a new one whenever its cached copy of class_schedules is reloaded.
+ * Schedules whose time slot does not end after it starts, which can predate the
+ * timeslots check, are left out of the index and listed by {@link #getInvalid}.
+ */
+public class ScheduleConflicts {
+    private final List<ScheduleDetail> schedules;
+    private final Map<Long, IntervalTree<ScheduleDetail>> byRoom;
+    private final Map<Long, IntervalTree<ScheduleDetail>> byTeacher;
+    private final IntervalTree<ScheduleDetail> byTime;
+    private final Map<Long, List<ScheduleDetail>> byCourse = new HashMap<>();
+    private final List<ScheduleDetail> invalid = new ArrayList<>();
+
+    public ScheduleConflicts(List<ScheduleDetail> schedules) {
+        this.schedules = schedules;
+        Map<Long, List<IntervalTree.Interval<ScheduleDetail>>> rooms = new HashMap<>();
+        Map<Long, List<IntervalTree.Interval<ScheduleDetail>>> teachers = new HashMap<>();
+        List<IntervalTree.Interval<ScheduleDetail>> all = new ArrayList<>(schedules.size());
+        for (ScheduleDetail schedule : schedules) {
+            if (!schedule.getStartTime().isBefore(schedule.getEndTime())) {
+                invalid.add(schedule);
+                continue;
+            }
+            IntervalTree.Interval<ScheduleDetail> interval = new IntervalTree.Interval<>(
+                secondOfDay(schedule.getStartTime()), secondOfDay(schedule.getEndTime()), schedule);
+            rooms.computeIfAbsent(schedule.getRoomId(), id -> new ArrayList<>()).add(interval);
+            teachers.computeIfAbsent(schedule.getTeacherId(), id -> new ArrayList<>()).add(interval);
+            all.add(interval);
+            byCourse.computeIfAbsent(schedule.getCourseId(), id -> new ArrayList<>()).add(schedule);
+        }
+        byRoom = buildTrees(rooms);
+        byTeacher = buildTrees(teachers);
+        byTime = new IntervalTree<>(all);
+    }
+
+    // Whether this index was built from exactly this list, so callers can tell when it is stale
+    public boolean isBuiltFrom(List<ScheduleDetail> list) {
+        return schedules == list;
+    }
+
+    public int size() {
+        return schedules.size();
+    }
+
+    // Schedules left out of the clash checks because their time slot does not end after it starts
+    public List<ScheduleDetail> getInvalid() {
+        return Collections.unmodifiableList(invalid);
+    }
+
+    // Classes already in the room at an overlapping time, other than the schedule being edited
+    public List<ScheduleDetail> roomConflicts(Long roomId, LocalTime start, LocalTime end, Long excludeScheduleId) {
+        return find(byRoom.get(roomId), start, end, excludeScheduleId);
+    }
+
+    // Classes the teacher already gives at an overlapping time, other than the schedule being edited
+    public List<ScheduleDetail> teacherConflicts(Long teacherId, LocalTime start, LocalTime end, Long excludeScheduleId) {
+        return find(byTeacher.get(teacherId), start, end, excludeScheduleId);
+    }
+
+    // How many times the course is scheduled, not counting the schedule being edited
+    public int sectionsOf(Long courseId, Long excludeScheduleId) {
+        int sections = 0;
+        for (ScheduleDetail schedule : byCourse.getOrDefault(courseId, Collections.emptyList())) {
+            if (!schedule.getId().equals(excludeScheduleId)) {
+                sections++;
+            }
+        }
+        return sections;
+    }
+
+    // Every class that runs at some point between start and end
+    public List<ScheduleDetail> overlapping(LocalTime start, LocalTime end) {
+        return find(byTime, start, end, null);
+    }
+
+    private static List<ScheduleDetail> find(IntervalTree<ScheduleDetail> tree, LocalTime start, LocalTime end,
+                                             Long excludeScheduleId) {
+        // An empty or inverted range overlaps nothing; the schedule form rejects such slots before checking
+        if (tree == null || !start.isBefore(end)) {
+            return Collections.emptyList();
+        }
+        List<ScheduleDetail> found = tree.overlapping(secondOfDay(start), secondOfDay(end));
+        if (excludeScheduleId != null) {
+            found.removeIf(schedule -> excludeScheduleId.equals(schedule.getId()));
+        }
+        return found;
+    }
+
+    private static Map<Long, IntervalTree<ScheduleDetail>> buildTrees(
+            Map<Long, List<IntervalTree.Interval<ScheduleDetail>>> groups) {
+        Map<Long, IntervalTree<ScheduleDetail>> trees = new HashMap<>(groups.size() * 2);
+        groups.forEach((id, intervals) -> trees.put(id, new IntervalTree<>(intervals)));
+        return trees;
+    }
+
+    private static int secondOfDay(LocalTime time) {
+        return time.toSecondOfDay();
+    }
+}
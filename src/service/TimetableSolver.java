@@ -0,0 +1,627 @@
+package service;
+
+import model.Room;
+import model.TimeSlot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Builds a whole term timetable: every section gets a timeslot and a room such
+ * that the room seats its enrollment and no room or teacher has two classes at
+ * overlapping times, with as many sections as possible in one of their preferred
+ * slots. The hard rules are never broken; a section that cannot be fitted is left
+ * unplaced instead. Each search starts from a greedy placement (largest sections
+ * first, smallest room that fits) and then repairs it by local search: a section
+ * is forced into its least contested position, the classes it displaces are
+ * re-placed wherever they fit, and the move is undone if the timetable got worse.
+ * Independent searches with different seeds run on a fork/join pool, one per
+ * worker, and the best timetable wins; a search that reaches the best possible
+ * score stops the others.
+ */
+public class TimetableSolver {
+    // A section recently moved cannot be displaced again for this many iterations, so moves do not just undo each other
+    private static final int TABU_TENURE = 10;
+
+    public static final class Section {
+        private final Long scheduleId;
+        private final Long courseId;
+        private final Long teacherId;
+        private final int enrollment;
+        private final Set<Long> preferredTimeSlotIds;
+
+        // scheduleId is the class_schedules row this section came from, or null for a new section
+        public Section(Long scheduleId, Long courseId, Long teacherId, int enrollment,
+                       Collection<Long> preferredTimeSlotIds) {
+            this.scheduleId = scheduleId;
+            this.courseId = courseId;
+            this.teacherId = teacherId;
+            this.enrollment = enrollment;
+            this.preferredTimeSlotIds = Set.copyOf(preferredTimeSlotIds);
+        }
+
+        public Long getScheduleId() {
+            return scheduleId;
+        }
+
+        public Long getCourseId() {
+            return courseId;
+        }
+
+        public Long getTeacherId() {
+            return teacherId;
+        }
+
+        public int getEnrollment() {
+            return enrollment;
+        }
+
+        // Empty when the section has no preference, in which case every slot counts as preferred
+        public Set<Long> getPreferredTimeSlotIds() {
+            return preferredTimeSlotIds;
+        }
+    }
+
+    public static final class Placement {
+        private final Section section;
+        private final TimeSlot timeSlot;
+        private final Room room;
+
+        private Placement(Section section, TimeSlot timeSlot, Room room) {
+            this.section = section;
+            this.timeSlot = timeSlot;
+            this.room = room;
+        }
+
+        public Section getSection() {
+            return section;
+        }
+
+        public TimeSlot getTimeSlot() {
+            return timeSlot;
+        }
+
+        public Room getRoom() {
+            return room;
+        }
+    }
+
+    public static final class Timetable {
+        private final List<Placement> placements;
+        private final List<Section> unplaced;
+        private final int preferenceMisses;
+
+        private Timetable(List<Placement> placements, List<Section> unplaced, int preferenceMisses) {
+            this.placements = placements;
+            this.unplaced = unplaced;
+            this.preferenceMisses = preferenceMisses;
+        }
+
+        public List<Placement> getPlacements() {
+            return placements;
+        }
+
+        // Sections with no room big enough, or none free at a time their teacher is free
+        public List<Section> getUnplaced() {
+            return unplaced;
+        }
+
+        // Placed sections that ended up outside their preferred slots
+        public int getPreferenceMisses() {
+            return preferenceMisses;
+        }
+
+        public boolean isComplete() {
+            return unplaced.isEmpty();
+        }
+    }
+
+    private final List<Room> rooms;
+    private final List<TimeSlot> timeSlots;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int iterationsPerSection = 50;
+    private long seed = 1;
+
+    public TimetableSolver(List<Room> rooms, List<TimeSlot> timeSlots) {
+        for (TimeSlot timeSlot : timeSlots) {
+            if (!timeSlot.getStartTime().isBefore(timeSlot.getEndTime())) {
+                throw new IllegalArgumentException("Time slot must end after it starts: " + timeSlot);
+            }
+        }
+        this.rooms = new ArrayList<>(rooms);
+        this.rooms.sort(Comparator.comparingInt(Room::getCapacity));
+        this.timeSlots = new ArrayList<>(timeSlots);
+    }
+
+    public TimetableSolver workers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed: " + workers);
+        }
+        this.workers = workers;
+        return this;
+    }
+
+    // Upper bound on the repair moves each search makes, per section; searches also stop early once they stall
+    public TimetableSolver iterationsPerSection(int iterationsPerSection) {
+        this.iterationsPerSection = iterationsPerSection;
+        return this;
+    }
+
+    public TimetableSolver seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public Timetable solve(List<Section> sections) {
+        Problem problem = new Problem(sections);
+        AtomicBoolean optimal = new AtomicBoolean();
+        List<Search> searches = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            searches.add(new Search(problem, (long) iterationsPerSection * sections.size(),
+                new SplittableRandom(seed * 31 + i), optimal));
+        }
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(searches);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        Search best = searches.get(0);
+        for (Search search : searches) {
+            if (search.bestCost < best.bestCost) {
+                best = search;
+            }
+        }
+        return problem.toTimetable(best.bestSlot, best.bestRoom);
+    }
+
+    // The sections, rooms and slots as dense int indexes, shared read-only by every search
+    private final class Problem {
+        private final Section[] sections;
+        private final int sectionCount;
+        private final int roomCount;
+        private final int slotCount;
+        private final int[] teacher;
+        private final int teacherCount;
+        // First room, in capacity order, that seats the section; roomCount if none does
+        private final int[] minRoom;
+        private final boolean[][] preferred;
+        // For each slot, the slots that share some time with it, itself included
+        private final int[][] overlapping;
+
+        private Problem(List<Section> sectionList) {
+            sections = sectionList.toArray(new Section[0]);
+            sectionCount = sections.length;
+            roomCount = rooms.size();
+            slotCount = timeSlots.size();
+
+            Map<Long, Integer> teacherIndex = new HashMap<>();
+            Map<Long, Integer> slotIndex = new HashMap<>();
+            for (int t = 0; t < slotCount; t++) {
+                slotIndex.put(timeSlots.get(t).getId(), t);
+            }
+            teacher = new int[sectionCount];
+            minRoom = new int[sectionCount];
+            preferred = new boolean[sectionCount][slotCount];
+            for (int s = 0; s < sectionCount; s++) {
+                Section section = sections[s];
+                teacher[s] = teacherIndex.computeIfAbsent(section.getTeacherId(), id -> teacherIndex.size());
+                int r = 0;
+                while (r < roomCount && rooms.get(r).getCapacity() < section.getEnrollment()) {
+                    r++;
+                }
+                minRoom[s] = r;
+                boolean anyKnown = false;
+                for (Long slotId : section.getPreferredTimeSlotIds()) {
+                    Integer t = slotIndex.get(slotId);
+                    if (t != null) {
+                        preferred[s][t] = true;
+                        anyKnown = true;
+                    }
+                }
+                if (!anyKnown) {
+                    Arrays.fill(preferred[s], true);
+                }
+            }
+            teacherCount = teacherIndex.size();
+
+            overlapping = new int[slotCount][];
+            for (int t = 0; t < slotCount; t++) {
+                TimeSlot slot = timeSlots.get(t);
+                int[] shared = new int[slotCount];
+                int count = 0;
+                for (int u = 0; u < slotCount; u++) {
+                    TimeSlot other = timeSlots.get(u);
+                    if (slot.getStartTime().isBefore(other.getEndTime())
+                            && other.getStartTime().isBefore(slot.getEndTime())) {
+                        shared[count++] = u;
+                    }
+                }
+                overlapping[t] = Arrays.copyOf(shared, count);
+            }
+        }
+
+        private boolean canPlace(int s) {
+            return minRoom[s] < roomCount && slotCount > 0;
+        }
+
+        private Timetable toTimetable(int[] slotOf, int[] roomOf) {
+            List<Placement> placements = new ArrayList<>(sectionCount);
+            List<Section> unplaced = new ArrayList<>();
+            int misses = 0;
+            for (int s = 0; s < sectionCount; s++) {
+                if (slotOf[s] < 0) {
+                    unplaced.add(sections[s]);
+                } else {
+                    placements.add(new Placement(sections[s], timeSlots.get(slotOf[s]), rooms.get(roomOf[s])));
+                    if (!preferred[s][slotOf[s]]) {
+                        misses++;
+                    }
+                }
+            }
+            return new Timetable(Collections.unmodifiableList(placements), Collections.unmodifiableList(unplaced),
+                misses);
+        }
+    }
+
+    // Set of section indexes with constant-time add, remove and random pick
+    private static final class IndexSet {
+        private final int[] items;
+        private final int[] positions;
+        private int size;
+
+        private IndexSet(int capacity) {
+            items = new int[capacity];
+            positions = new int[capacity];
+            Arrays.fill(positions, -1);
+        }
+
+        private void add(int item) {
+            if (positions[item] < 0) {
+                positions[item] = size;
+                items[size++] = item;
+            }
+        }
+
+        private void remove(int item) {
+            int position = positions[item];
+            if (position >= 0) {
+                int last = items[--size];
+                items[position] = last;
+                positions[last] = position;
+                positions[item] = -1;
+            }
+        }
+
+        private int pick(SplittableRandom random) {
+            return items[random.nextInt(size)];
+        }
+    }
+
+    private static final class Search extends RecursiveAction {
+        private final Problem problem;
+        private final long iterations;
+        private final SplittableRandom random;
+        private final AtomicBoolean optimal;
+        private final int[] slotOf;
+        private final int[] roomOf;
+        // Section holding each room, and each teacher, in exactly that slot; -1 when free
+        private final int[][] roomAt;
+        private final int[][] teacherAt;
+        private final IndexSet unplaced;
+        private final IndexSet missed;
+        private final int[] tabuUntil;
+        // Where each changed section was before the current move, so a rejected move can be rolled back
+        private int[] journal = new int[48];
+        private int journalSize;
+        private final List<Integer> displaced = new ArrayList<>();
+        private int iteration;
+        private int[] bestSlot;
+        private int[] bestRoom;
+        private long bestCost = Long.MAX_VALUE;
+
+        private Search(Problem problem, long iterations, SplittableRandom random, AtomicBoolean optimal) {
+            this.problem = problem;
+            this.iterations = iterations;
+            this.random = random;
+            this.optimal = optimal;
+            int n = problem.sectionCount;
+            slotOf = new int[n];
+            roomOf = new int[n];
+            Arrays.fill(slotOf, -1);
+            Arrays.fill(roomOf, -1);
+            roomAt = new int[problem.roomCount][problem.slotCount];
+            teacherAt = new int[problem.teacherCount][problem.slotCount];
+            for (int[] row : roomAt) {
+                Arrays.fill(row, -1);
+            }
+            for (int[] row : teacherAt) {
+                Arrays.fill(row, -1);
+            }
+            unplaced = new IndexSet(n);
+            missed = new IndexSet(n);
+            tabuUntil = new int[n];
+        }
+
+        @Override
+        protected void compute() {
+            construct();
+            saveIfBest();
+            // Give up once a long run of moves has not beaten the best timetable
+            int stallLimit = Math.max(1_000, 5 * problem.sectionCount);
+            int lastImprovement = 0;
+            for (iteration = 1; iteration <= iterations && !optimal.get(); iteration++) {
+                if (bestCost == 0) {
+                    optimal.set(true);
+                    break;
+                }
+                if (iteration - lastImprovement > stallLimit) {
+                    break;
+                }
+                if (step() && saveIfBest()) {
+                    lastImprovement = iteration;
+                }
+            }
+        }
+
+        // Largest sections first, since they have the fewest rooms to choose from; ties in random order
+        private void construct() {
+            Integer[] order = new Integer[problem.sectionCount];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Integer swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            Arrays.sort(order, Comparator.comparingInt(s -> -problem.minRoom[s]));
+            for (int s : order) {
+                if (!problem.canPlace(s)) {
+                    continue;
+                }
+                int position = findFree(s);
+                if (position < 0) {
+                    unplaced.add(s);
+                } else {
+                    doPlace(s, position / problem.roomCount, position % problem.roomCount);
+                }
+            }
+        }
+
+        // One repair move; false if there was nothing left to improve
+        private boolean step() {
+            boolean placing = unplaced.size > 0;
+            if (!placing && missed.size == 0) {
+                return false;
+            }
+            int s = placing ? unplaced.pick(random) : missed.pick(random);
+            int position = leastContested(s, !placing);
+            if (position < 0) {
+                return true;
+            }
+            long before = cost();
+            journalSize = 0;
+            displaced.clear();
+            int t = position / problem.roomCount;
+            int r = position % problem.roomCount;
+            collectConflicts(s, t, r, displaced);
+            for (int other : displaced) {
+                unplace(other);
+            }
+            if (slotOf[s] >= 0) {
+                unplace(s);
+            }
+            place(s, t, r);
+            for (int other : displaced) {
+                int free = findFree(other);
+                if (free >= 0) {
+                    place(other, free / problem.roomCount, free % problem.roomCount);
+                }
+            }
+            if (cost() > before) {
+                undo();
+            } else {
+                tabuUntil[s] = iteration + TABU_TENURE;
+            }
+            return true;
+        }
+
+        // Free position (slot * roomCount + room) for s, preferring its preferred slots and then the smallest room; -1 if none
+        private int findFree(int s) {
+            int best = -1;
+            int bestScore = Integer.MAX_VALUE;
+            int offset = random.nextInt(problem.slotCount);
+            for (int i = 0; i < problem.slotCount; i++) {
+                int t = (i + offset) % problem.slotCount;
+                if (teacherBusy(s, t)) {
+                    continue;
+                }
+                for (int r = problem.minRoom[s]; r < problem.roomCount; r++) {
+                    if (roomFree(s, t, r)) {
+                        int score = (problem.preferred[s][t] ? 0 : problem.roomCount) + r;
+                        if (score < bestScore) {
+                            bestScore = score;
+                            best = t * problem.roomCount + r;
+                        }
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+
+        // Position that displaces the fewest classes, none of them recently moved; preferred slots only if onlyPreferred
+        private int leastContested(int s, boolean onlyPreferred) {
+            int best = -1;
+            int bestScore = Integer.MAX_VALUE;
+            int ties = 0;
+            for (int t = 0; t < problem.slotCount; t++) {
+                if (t == slotOf[s] || (onlyPreferred && !problem.preferred[s][t])) {
+                    continue;
+                }
+                int teacherClashes = clashes(problem.teacher[s], teacherAt, s, t);
+                if (teacherClashes < 0) {
+                    continue;
+                }
+                for (int r = problem.minRoom[s]; r < problem.roomCount; r++) {
+                    int roomClashes = clashes(r, roomAt, s, t);
+                    if (roomClashes < 0) {
+                        continue;
+                    }
+                    int score = (teacherClashes + roomClashes) * 2 + (problem.preferred[s][t] ? 0 : 1);
+                    // Equally good positions are chosen between at random, so repeated moves explore
+                    if (score < bestScore) {
+                        bestScore = score;
+                        best = t * problem.roomCount + r;
+                        ties = 1;
+                    } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                        best = t * problem.roomCount + r;
+                    }
+                    if (roomClashes == 0) {
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+
+        // Classes the owner (a room or a teacher) holds at times overlapping t, or -1 if one of them is tabu
+        private int clashes(int owner, int[][] holderAt, int s, int t) {
+            int count = 0;
+            for (int u : problem.overlapping[t]) {
+                int other = holderAt[owner][u];
+                if (other >= 0 && other != s) {
+                    if (tabuUntil[other] > iteration) {
+                        return -1;
+                    }
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void collectConflicts(int s, int t, int r, List<Integer> into) {
+            for (int u : problem.overlapping[t]) {
+                int inRoom = roomAt[r][u];
+                if (inRoom >= 0 && inRoom != s && !into.contains(inRoom)) {
+                    into.add(inRoom);
+                }
+                int forTeacher = teacherAt[problem.teacher[s]][u];
+                if (forTeacher >= 0 && forTeacher != s && !into.contains(forTeacher)) {
+                    into.add(forTeacher);
+                }
+            }
+        }
+
+        private boolean teacherBusy(int s, int t) {
+            for (int u : problem.overlapping[t]) {
+                int other = teacherAt[problem.teacher[s]][u];
+                if (other >= 0 && other != s) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean roomFree(int s, int t, int r) {
+            for (int u : problem.overlapping[t]) {
+                int other = roomAt[r][u];
+                if (other >= 0 && other != s) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Unplaced sections dominate; preference misses only break ties between equally complete timetables
+        private long cost() {
+            return (long) unplaced.size * (problem.sectionCount + 1) + missed.size;
+        }
+
+        private boolean saveIfBest() {
+            long cost = cost();
+            if (cost >= bestCost) {
+                return false;
+            }
+            bestCost = cost;
+            bestSlot = slotOf.clone();
+            bestRoom = roomOf.clone();
+            return true;
+        }
+
+        private void place(int s, int t, int r) {
+            record(s);
+            doPlace(s, t, r);
+        }
+
+        private void unplace(int s) {
+            record(s);
+            doUnplace(s);
+            unplaced.add(s);
+        }
+
+        private void record(int s) {
+            if (journalSize + 3 > journal.length) {
+                journal = Arrays.copyOf(journal, journal.length * 2);
+            }
+            journal[journalSize++] = s;
+            journal[journalSize++] = slotOf[s];
+            journal[journalSize++] = roomOf[s];
+        }
+
+        // Replays the journal backwards, so each section ends where it was before the move
+        private void undo() {
+            while (journalSize > 0) {
+                int r = journal[--journalSize];
+                int t = journal[--journalSize];
+                int s = journal[--journalSize];
+                if (slotOf[s] >= 0) {
+                    doUnplace(s);
+                }
+                if (t >= 0) {
+                    doPlace(s, t, r);
+                } else {
+                    unplaced.add(s);
+                }
+            }
+        }
+
+        private void doPlace(int s, int t, int r) {
+            slotOf[s] = t;
+            roomOf[s] = r;
+            roomAt[r][t] = s;
+            teacherAt[problem.teacher[s]][t] = s;
+            unplaced.remove(s);
+            if (!problem.preferred[s][t]) {
+                missed.add(s);
+            }
+        }
+
+        private void doUnplace(int s) {
+            roomAt[roomOf[s]][slotOf[s]] = -1;
+            teacherAt[problem.teacher[s]][slotOf[s]] = -1;
+            slotOf[s] = -1;
+            roomOf[s] = -1;
+            missed.remove(s);
+        }
+    }
+}
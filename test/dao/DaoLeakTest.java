@@ -0,0 +1,187 @@
+package dao;
+
+import database.DatabaseConnection;
+import database.DatabaseInitializer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import model.ClassSchedule;
+import model.Courses;
+import model.Department;
+import model.Enrollment;
+import model.Room;
+import model.Student;
+import model.Teacher;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Calls each DAO 10,000 times against a throwaway Postgres, through hits, misses
+ * and statements the server rejects, then closes the pool and checks that no
+ * server backend is left open. A connection a DAO forgot to close is never
+ * returned to the pool, so it would still show up in pg_stat_activity.
+ */
+class DaoLeakTest {
+    private static final int CALLS = 10_000;
+    private static final long BACKEND_EXIT_MILLIS = 5_000;
+
+    private static EmbeddedPostgres postgres;
+    private static String url;
+    private static Department department;
+    private static Courses course;
+    private static Student student;
+    private static Teacher teacher;
+    private static Enrollment enrollment;
+    private static Room room;
+    private static Long timeSlotId;
+
+    @FunctionalInterface
+    private interface DaoCall {
+        void call() throws SQLException, ClassNotFoundException;
+    }
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        url = postgres.getJdbcUrl("postgres", "postgres");
+        System.setProperty("cms.db.url", url);
+        System.setProperty("cms.db.username", "postgres");
+        System.setProperty("cms.db.password", "postgres");
+        DatabaseInitializer.initialize();
+
+        department = new DepartmentDao().save(new Department("Leak Test"));
+        course = new CourseDao().addCourse(new Courses("Leak Test 101", "3", department.getId()));
+        student = new StudentDao().save(new Student("Leak Test", LocalDate.of(2000, 1, 1), "leak@test.edu"));
+        teacher = new TeacherDao().addTeacher(new Teacher("Leak Test", "leak.teacher@test.edu"));
+        enrollment = new EnrollmentDao().save(new Enrollment(student.getId(), course.getId(), "Fall 2024", "A"));
+        room = new RoomDao().getAll().get(0);
+        timeSlotId = new TimeSlotDao().getAll().get(0).getId();
+        DatabaseConnection.shutdown();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        DatabaseConnection.shutdown();
+        postgres.close();
+    }
+
+    @Test
+    void studentDao() throws Exception {
+        StudentDao dao = new StudentDao();
+        hammer(() -> {
+            assertNotNull(dao.findById(student.getId()));
+            assertNull(dao.findById(-1L));
+            assertTrue(dao.existsByEmail(student.getEmail()));
+        });
+    }
+
+    @Test
+    void courseDao() throws Exception {
+        CourseDao dao = new CourseDao();
+        hammer(() -> {
+            assertNotNull(dao.getCourseById(course.getId()));
+            assertNull(dao.getCourseByName("No Such Course"));
+            assertThrows(SQLException.class, () -> dao.addCourse(new Courses("Orphan", "3", -1L)));
+        });
+    }
+
+    @Test
+    void departmentDao() throws Exception {
+        DepartmentDao dao = new DepartmentDao();
+        hammer(() -> {
+            assertNotNull(dao.findDepartmentById(department.getId()));
+            assertNull(dao.findDepartmentByName("No Such Department"));
+            assertThrows(SQLException.class, () -> dao.save(new Department(department.getName())));
+        });
+    }
+
+    @Test
+    void teacherDao() throws Exception {
+        TeacherDao dao = new TeacherDao();
+        hammer(() -> {
+            assertNotNull(dao.getTeacherById(teacher.getId()));
+            assertNull(dao.getTeacherByEmail("nobody@test.edu"));
+            dao.search("Leak", 5);
+        });
+    }
+
+    @Test
+    void enrollmentDao() throws Exception {
+        EnrollmentDao dao = new EnrollmentDao();
+        hammer(() -> {
+            assertNotNull(dao.getDetailById(enrollment.getId()));
+            assertTrue(dao.existsEnrollment(student.getId(), course.getId(), enrollment.getSemester()));
+            assertThrows(SQLException.class, () -> dao.save(new Enrollment(-1L, course.getId(), "Fall 2024", "A")));
+        });
+    }
+
+    @Test
+    void roomAndTimeSlotDaos() throws Exception {
+        RoomDao rooms = new RoomDao();
+        TimeSlotDao timeSlots = new TimeSlotDao();
+        hammer(() -> {
+            assertNotNull(rooms.getById(room.getId()));
+            assertNull(rooms.update(new Room(-1L, "None", 1)));
+            assertNotNull(timeSlots.getById(timeSlotId));
+        });
+    }
+
+    @Test
+    void classScheduleDao() throws Exception {
+        ClassScheduleDao dao = new ClassScheduleDao();
+        hammer(() -> {
+            dao.getConflicts();
+            assertThrows(SQLException.class,
+                () -> dao.save(new ClassSchedule(null, -1L, teacher.getId(), timeSlotId, room.getId())));
+        });
+    }
+
+    @Test
+    void transcriptDao() throws Exception {
+        TranscriptDao dao = new TranscriptDao();
+        hammer(() -> assertEquals(1, dao.getTranscript(student.getId()).getEntries().size()));
+    }
+
+    private static void hammer(DaoCall call) throws Exception {
+        for (int i = 0; i < CALLS; i++) {
+            call.call();
+        }
+        assertEquals(0, DatabaseConnection.getPool().getActiveCount(), "connections still borrowed");
+        // Closing the pool closes only the connections that came back to it
+        DatabaseConnection.shutdown();
+        assertEquals(0, openBackends(), "server backends left open");
+    }
+
+    // Client backends other than this check's own; closed ones take a moment to exit
+    private static int openBackends() throws SQLException, InterruptedException {
+        String sql = "SELECT count(*) FROM pg_stat_activity " +
+                "WHERE backend_type = 'client backend' AND pid <> pg_backend_pid()";
+        long deadline = System.currentTimeMillis() + BACKEND_EXIT_MILLIS;
+        try (Connection conn = DriverManager.getConnection(url, "postgres", "postgres");
+             Statement stmt = conn.createStatement()) {
+            while (true) {
+                int open;
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    rs.next();
+                    open = rs.getInt(1);
+                }
+                if (open == 0 || System.currentTimeMillis() > deadline) {
+                    return open;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
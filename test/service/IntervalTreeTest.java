@@ -0,0 +1,77 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntervalTreeTest {
+    private static final int DAY = 24 * 60 * 60;
+
+    // Random trees and queries checked against a scan of every interval
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            int n = random.nextInt(60);
+            // Short days make shared starts, shared ends and touching intervals common
+            int day = round % 2 == 0 ? 50 : DAY;
+            List<IntervalTree.Interval<Integer>> intervals = new ArrayList<>();
+            List<int[]> ranges = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                int start = random.nextInt(day);
+                int end = start + 1 + random.nextInt(day / 4);
+                intervals.add(new IntervalTree.Interval<>(start, end, i));
+                ranges.add(new int[]{start, end, i});
+            }
+            IntervalTree<Integer> tree = new IntervalTree<>(intervals);
+            assertEquals(n, tree.size());
+
+            // The tree reports overlaps in start order, keeping the given order among equal starts
+            ranges.sort(Comparator.comparingInt(range -> range[0]));
+            for (int query = 0; query < 50; query++) {
+                int start = random.nextInt(day + 10) - 5;
+                int end = start + 1 + random.nextInt(day / 3);
+                List<Integer> expected = new ArrayList<>();
+                for (int[] range : ranges) {
+                    if (range[0] < end && start < range[1]) {
+                        expected.add(range[2]);
+                    }
+                }
+                assertEquals(expected, tree.overlapping(start, end), "overlapping [" + start + ", " + end + ")");
+                assertEquals(!expected.isEmpty(), tree.overlapsAny(start, end), "overlapsAny [" + start + ", " + end + ")");
+            }
+        }
+    }
+
+    @Test
+    void touchingIntervalsDoNotOverlap() {
+        IntervalTree<String> tree = new IntervalTree<>(List.of(
+            new IntervalTree.Interval<>(9 * 3600, 10 * 3600, "nine"),
+            new IntervalTree.Interval<>(11 * 3600, 12 * 3600, "eleven")));
+        assertFalse(tree.overlapsAny(10 * 3600, 11 * 3600));
+        assertEquals(List.of("nine"), tree.overlapping(9 * 3600 + 1800, 10 * 3600 + 1800));
+        assertTrue(tree.overlapping(0, DAY).containsAll(List.of("nine", "eleven")));
+    }
+
+    @Test
+    void emptyTreeOverlapsNothing() {
+        IntervalTree<String> tree = new IntervalTree<>(List.of());
+        assertEquals(0, tree.size());
+        assertFalse(tree.overlapsAny(0, DAY));
+        assertTrue(tree.overlapping(0, DAY).isEmpty());
+    }
+
+    @Test
+    void rejectsEmptyIntervals() {
+        assertThrows(IllegalArgumentException.class, () -> new IntervalTree.Interval<>(10, 10, "empty"));
+        assertThrows(IllegalArgumentException.class, () -> new IntervalTree.Interval<>(10, 5, "inverted"));
+    }
+}